@@ -0,0 +1,172 @@
+package com.example.demo.Components;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Раскладка заказов по сборным грузам с ограничениями по весу и по сумме (bin packing).
+ * Эвристика best-fit decreasing: заказы идут по убыванию веса, каждый кладётся в груз с наименьшим
+ * достаточным остатком веса (TreeMap по остатку), при этом проверяется и остаток по сумме.
+ * Большая очередь режется на шарды, которые упаковываются параллельно; недогруженные грузы
+ * всех шардов затем переупаковываются вместе. Веса — в граммах, суммы — в копейках.
+ */
+@Component
+public class BatchPlanner {
+    static final int SHARD_SIZE = 10_000;
+    // Груз шарда, заполненный по весу меньше чем на столько процентов, уходит в общую доупаковку
+    private static final int REPACK_FILL_PERCENT = 90;
+    // Сколько подходящих по весу грузов проверяется на остаток по сумме, прежде чем открыть новый
+    private static final int MAX_PRICE_PROBES = 64;
+
+    private static final Comparator<Candidate> HEAVIEST_FIRST = Comparator
+            .comparingLong(Candidate::getWeight).reversed()
+            .thenComparing(Comparator.comparingLong(Candidate::getPrice).reversed())
+            .thenComparingLong(Candidate::getOrderId);
+
+    public Plan plan(List<Candidate> candidates, long maxWeight, long maxPrice) {
+        Plan plan = new Plan();
+        List<Candidate> fitting = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            if (candidate.getWeight() > maxWeight || candidate.getPrice() > maxPrice) {
+                plan.oversized.add(candidate.getOrderId());
+            } else {
+                fitting.add(candidate);
+            }
+        }
+        fitting.sort(HEAVIEST_FIRST);
+
+        if (fitting.size() <= SHARD_SIZE) {
+            plan.bins.addAll(pack(fitting, maxWeight, maxPrice));
+        } else {
+            // Раздача по кругу сохраняет в каждом шарде и порядок, и распределение весов
+            int shards = (fitting.size() + SHARD_SIZE - 1) / SHARD_SIZE;
+            List<List<Candidate>> shardInputs = new ArrayList<>(shards);
+            for (int s = 0; s < shards; s++) {
+                shardInputs.add(new ArrayList<>(fitting.size() / shards + 1));
+            }
+            for (int i = 0; i < fitting.size(); i++) {
+                shardInputs.get(i % shards).add(fitting.get(i));
+            }
+            List<List<Bin>> packed = IntStream.range(0, shards).parallel()
+                    .mapToObj(s -> pack(shardInputs.get(s), maxWeight, maxPrice))
+                    .collect(Collectors.toList());
+
+            List<Candidate> leftovers = new ArrayList<>();
+            for (List<Bin> shardBins : packed) {
+                for (Bin bin : shardBins) {
+                    if (isFilled(bin, maxWeight, maxPrice)) {
+                        plan.bins.add(bin);
+                    } else {
+                        leftovers.addAll(bin.candidates);
+                    }
+                }
+            }
+            leftovers.sort(HEAVIEST_FIRST);
+            plan.bins.addAll(pack(leftovers, maxWeight, maxPrice));
+        }
+        plan.bins.sort(Comparator.comparingLong(Bin::getWeight).reversed());
+        return plan;
+    }
+
+    private static boolean isFilled(Bin bin, long maxWeight, long maxPrice) {
+        return bin.weight * 100 >= maxWeight * REPACK_FILL_PERCENT
+                || (maxPrice != Long.MAX_VALUE && bin.price * 100 >= maxPrice * REPACK_FILL_PERCENT);
+    }
+
+    // Best-fit по весу для уже отсортированных по убыванию заказов
+    List<Bin> pack(List<Candidate> sorted, long maxWeight, long maxPrice) {
+        // Минимальная сумма среди ещё не разложенных заказов: груз с меньшим остатком по сумме уже ничего не примет
+        long[] cheapestRemaining = new long[sorted.size() + 1];
+        cheapestRemaining[sorted.size()] = Long.MAX_VALUE;
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            cheapestRemaining[i] = Math.min(cheapestRemaining[i + 1], sorted.get(i).getPrice());
+        }
+
+        List<Bin> bins = new ArrayList<>();
+        TreeMap<Long, ArrayDeque<Bin>> byRemaining = new TreeMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            Candidate candidate = sorted.get(i);
+            Bin target = null;
+            int probes = 0;
+            for (Map.Entry<Long, ArrayDeque<Bin>> entry = byRemaining.ceilingEntry(candidate.getWeight());
+                 entry != null && target == null && probes < MAX_PRICE_PROBES;
+                 entry = byRemaining.higherEntry(entry.getKey())) {
+                Iterator<Bin> iterator = entry.getValue().iterator();
+                while (iterator.hasNext()) {
+                    Bin bin = iterator.next();
+                    long priceLeft = maxPrice - bin.price;
+                    if (priceLeft >= candidate.getPrice()) {
+                        target = bin;
+                        break;
+                    }
+                    if (priceLeft < cheapestRemaining[i]) {
+                        // Заполнен по сумме окончательно — убираем, чтобы не тратить на него проверки
+                        iterator.remove();
+                        continue;
+                    }
+                    if (++probes >= MAX_PRICE_PROBES) {
+                        break;
+                    }
+                }
+                if (entry.getValue().isEmpty()) {
+                    byRemaining.remove(entry.getKey());
+                }
+            }
+            if (target == null) {
+                target = new Bin();
+                bins.add(target);
+            } else {
+                long key = maxWeight - target.weight;
+                ArrayDeque<Bin> sameRemaining = byRemaining.get(key);
+                sameRemaining.remove(target);
+                if (sameRemaining.isEmpty()) {
+                    byRemaining.remove(key);
+                }
+            }
+            target.add(candidate);
+            long remaining = maxWeight - target.weight;
+            // Груз, заполненный до предела по весу или по сумме, больше не рассматривается
+            if (remaining > 0 && target.price < maxPrice) {
+                byRemaining.computeIfAbsent(remaining, k -> new ArrayDeque<>()).add(target);
+            }
+        }
+        return bins;
+    }
+
+    @Getter
+    public static class Candidate {
+        private final long orderId;
+        private final long weight;
+        private final long price;
+
+        public Candidate(long orderId, long weight, long price) {
+            this.orderId = orderId;
+            this.weight = weight;
+            this.price = price;
+        }
+    }
+
+    @Getter
+    public static class Bin {
+        private final List<Candidate> candidates = new ArrayList<>();
+        private long weight;
+        private long price;
+
+        void add(Candidate candidate) {
+            candidates.add(candidate);
+            weight += candidate.getWeight();
+            price += candidate.getPrice();
+        }
+    }
+
+    @Getter
+    public static class Plan {
+        private final List<Bin> bins = new ArrayList<>();
+        // Заказы, которые в одиночку превышают ограничение по весу или сумме
+        private final List<Long> oversized = new ArrayList<>();
+    }
+}
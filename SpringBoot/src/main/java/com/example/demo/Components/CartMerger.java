@@ -0,0 +1,61 @@
+package com.example.demo.Components;
+
+import com.example.demo.Entities.Product;
+import com.example.demo.Services.CartStoreService;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Слияние пачки товаров (массовое добавление из расширения браузера) с корзиной.
+ * Дубликаты внутри пачки и уже лежащие в корзине товары отсекаются по хэшу productId
+ * за один проход, без сравнения каждого товара с каждой позицией.
+ */
+@Component
+public class CartMerger {
+
+    // Уникальные товары пачки в исходном порядке; при повторе id остаётся первое вхождение
+    public Map<String, Product> dedupe(Collection<Product> products) {
+        Map<String, Product> unique = new LinkedHashMap<>(products.size() * 2);
+        for (Product product : products) {
+            unique.putIfAbsent(product.getId(), product);
+        }
+        return unique;
+    }
+
+    // Добавляет в корзину отсутствующие товары с количеством 1; возвращает число добавленных позиций
+    public int addMissing(Map<String, CartStoreService.CartLine> cart, Collection<Product> products) {
+        int added = 0;
+        for (Product product : products) {
+            if (!cart.containsKey(product.getId())) {
+                cart.put(product.getId(), CartStoreService.toLine(product, 1));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Позиции изменившихся товаров, уже лежащие в корзине, получают новые цену, название и картинку
+    public int refreshChanged(Map<String, CartStoreService.CartLine> cart, Collection<Product> products, Set<String> changedIds) {
+        int refreshed = 0;
+        for (Product product : products) {
+            CartStoreService.CartLine line = changedIds.contains(product.getId()) ? cart.get(product.getId()) : null;
+            if (line != null) {
+                line.setPrice(product.getPrice());
+                line.setProductName(product.getName());
+                line.setImageUrl(product.getImageUrl());
+                refreshed++;
+            }
+        }
+        return refreshed;
+    }
+
+    // Изменились ли данные товара, присланные клиентом, относительно сохранённых
+    public boolean differs(Product stored, Product incoming) {
+        return !Objects.equals(stored.getName(), incoming.getName())
+                || !Objects.equals(stored.getUrl(), incoming.getUrl())
+                || !Objects.equals(stored.getPrice(), incoming.getPrice())
+                || !Objects.equals(stored.getImageUrl(), incoming.getImageUrl())
+                || !Objects.equals(stored.getDescription(), incoming.getDescription());
+    }
+}
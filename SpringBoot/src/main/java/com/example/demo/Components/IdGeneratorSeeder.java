@@ -0,0 +1,47 @@
+package com.example.demo.Components;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Поднимает счётчики id_generator выше уже существующих id (таблицы раньше жили на AUTO_INCREMENT).
+ * Hibernate с pooled-оптимизатором выдаёт диапазон (next_val - 50, next_val], поэтому
+ * счётчик ставится не ниже max(id) + 50 + 1. Значение только увеличивается, так что
+ * повторный запуск и параллельно работающие экземпляры ничего не ломают.
+ */
+@Component
+@Lazy(false)
+public class IdGeneratorSeeder {
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorSeeder.class);
+    private static final int ALLOCATION_SIZE = 50;
+    private static final List<String> TABLES = List.of(
+            "orders", "order_items", "cart_items", "notifications", "chat_messages", "batch_cargos");
+
+    // Зависимость от EntityManagerFactory гарантирует, что схема уже обновлена Hibernate
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void seed() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS id_generator (" +
+                "sequence_name VARCHAR(255) NOT NULL PRIMARY KEY, next_val BIGINT)");
+        for (String table : TABLES) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            long seed = (maxId != null ? maxId : 0) + ALLOCATION_SIZE + 1;
+            jdbcTemplate.update("INSERT INTO id_generator (sequence_name, next_val) VALUES (?, ?) " +
+                    "ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val))", table, seed);
+            logger.info("id_generator[{}] seeded to at least {}", table, seed);
+        }
+    }
+}
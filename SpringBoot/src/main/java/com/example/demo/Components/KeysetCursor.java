@@ -0,0 +1,54 @@
+package com.example.demo.Components;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор для keyset-пагинации по паре (dateCreated, id).
+ * Клиент получает его как строку и передаёт обратно без изменений.
+ */
+public class KeysetCursor {
+
+    // Начальная позиция: строго больше любой реальной пары (dateCreated, id) при сортировке DESC
+    public static final KeysetCursor START = new KeysetCursor(Timestamp.valueOf("9999-12-31 23:59:59"), Long.MAX_VALUE);
+
+    private final Timestamp dateCreated;
+    private final Long id;
+
+    public KeysetCursor(Timestamp dateCreated, Long id) {
+        this.dateCreated = dateCreated;
+        this.id = id;
+    }
+
+    public Timestamp getDateCreated() {
+        return dateCreated;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = dateCreated.getTime() + ":" + dateCreated.getNanos() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Пустая строка означает первую страницу. Некорректный курсор — IllegalArgumentException.
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            Timestamp dateCreated = new Timestamp(Long.parseLong(parts[0]));
+            dateCreated.setNanos(Integer.parseInt(parts[1]));
+            return new KeysetCursor(dateCreated, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo.Components;
+
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Расчёт итоговой цены заказа без обращения к сущностям и без float-арифметики.
+ * Суммы — в копейках (минимальных единицах валюты), проценты — в базисных пунктах (1% = 100 bps),
+ * округление процентов — половина вверх. Входные и выходные объекты можно переиспользовать
+ * между вызовами, так что пакетный расчёт не создаёт мусора.
+ */
+@Component
+public class PricingEngine {
+    public static final int INSURANCE_BPS = 500;
+    public static final int PROMO_NONE = 0;
+    public static final int PROMO_PERCENTAGE = 1;
+    public static final int PROMO_FIXED = 2;
+
+    public PricingResult price(PricingInput input) {
+        PricingResult result = new PricingResult();
+        price(input, result);
+        return result;
+    }
+
+    public void price(PricingInput input, PricingResult result) {
+        long subtotal = 0;
+        for (int i = 0; i < input.itemCount; i++) {
+            subtotal += input.unitPrices[i] * input.quantities[i];
+        }
+
+        // Скидка пользователя; если её нет, остаётся сумма, уже записанная в заказе
+        long userDiscount = input.currentUserDiscount;
+        boolean userDiscountRecalculated = false;
+        if (input.userDiscountBps > 0) {
+            userDiscount = percentOf(subtotal, input.userDiscountBps);
+            userDiscountRecalculated = true;
+        }
+
+        long promoDiscount = input.currentPromoDiscount;
+        boolean promoExpired = false;
+        if (input.promoType != PROMO_NONE) {
+            if (!input.promoValid) {
+                promoExpired = true;
+                promoDiscount = 0;
+            } else if (input.promoType == PROMO_PERCENTAGE) {
+                promoDiscount = percentOf(subtotal, (int) input.promoValue);
+            } else {
+                promoDiscount = input.promoValue;
+            }
+        }
+
+        long insuranceCost = input.insurance ? percentOf(subtotal, INSURANCE_BPS) : input.currentInsuranceCost;
+
+        result.subtotal = subtotal;
+        result.userDiscount = userDiscount;
+        result.promoDiscount = promoDiscount;
+        result.insuranceCost = insuranceCost;
+        result.total = subtotal - (userDiscount + promoDiscount) + insuranceCost;
+        result.userDiscountRecalculated = userDiscountRecalculated;
+        result.promoExpired = promoExpired;
+    }
+
+    static long percentOf(long amount, int bps) {
+        long scaled = amount * bps;
+        return scaled >= 0 ? (scaled + 5_000) / 10_000 : -((-scaled + 5_000) / 10_000);
+    }
+
+    public static long toMinor(Float amount) {
+        return amount != null ? Math.round(amount * 100.0d) : 0L;
+    }
+
+    public static float fromMinor(long minor) {
+        return minor / 100.0f;
+    }
+
+    public static int toBps(float percent) {
+        return Math.round(percent * 100.0f);
+    }
+
+    public static class PricingInput {
+        private long[] unitPrices;
+        private int[] quantities;
+        private int itemCount;
+        private int userDiscountBps;
+        private int promoType = PROMO_NONE;
+        // bps для PROMO_PERCENTAGE, копейки для PROMO_FIXED
+        private long promoValue;
+        private boolean promoValid;
+        private boolean insurance;
+        // Суммы, уже сохранённые в заказе: применяются, если соответствующее правило не сработало
+        private long currentUserDiscount;
+        private long currentPromoDiscount;
+        private long currentInsuranceCost;
+
+        public PricingInput(int capacity) {
+            this.unitPrices = new long[Math.max(capacity, 1)];
+            this.quantities = new int[Math.max(capacity, 1)];
+        }
+
+        // Сброс для повторного использования объекта
+        public PricingInput reset() {
+            itemCount = 0;
+            userDiscountBps = 0;
+            promoType = PROMO_NONE;
+            promoValue = 0;
+            promoValid = false;
+            insurance = false;
+            currentUserDiscount = 0;
+            currentPromoDiscount = 0;
+            currentInsuranceCost = 0;
+            return this;
+        }
+
+        public PricingInput addItem(long unitPrice, int quantity) {
+            if (itemCount == unitPrices.length) {
+                unitPrices = Arrays.copyOf(unitPrices, itemCount * 2);
+                quantities = Arrays.copyOf(quantities, itemCount * 2);
+            }
+            unitPrices[itemCount] = unitPrice;
+            quantities[itemCount] = quantity;
+            itemCount++;
+            return this;
+        }
+
+        public PricingInput userDiscountBps(int userDiscountBps) {
+            this.userDiscountBps = userDiscountBps;
+            return this;
+        }
+
+        public PricingInput promo(int promoType, long promoValue, boolean promoValid) {
+            this.promoType = promoType;
+            this.promoValue = promoValue;
+            this.promoValid = promoValid;
+            return this;
+        }
+
+        public PricingInput insurance(boolean insurance) {
+            this.insurance = insurance;
+            return this;
+        }
+
+        public PricingInput currentAmounts(long userDiscount, long promoDiscount, long insuranceCost) {
+            this.currentUserDiscount = userDiscount;
+            this.currentPromoDiscount = promoDiscount;
+            this.currentInsuranceCost = insuranceCost;
+            return this;
+        }
+    }
+
+    @Getter
+    public static class PricingResult {
+        private long subtotal;
+        private long userDiscount;
+        private long promoDiscount;
+        private long insuranceCost;
+        private long total;
+        private boolean userDiscountRecalculated;
+        private boolean promoExpired;
+
+        public boolean isNegative() {
+            return total < 0;
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package com.example.demo.Components;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс товаров в памяти: токены названия и описания -> отсортированные списки документов.
+ * Токенизация общая для русского и английского: нижний регистр, ё -> е, лёгкое отсечение окончаний.
+ * Каждое слово запроса ищется по точной основе и по префиксу, результаты пересекаются начиная
+ * с самого редкого слова. Подстрока из середины слова не находится, в отличие от прежнего LIKE '%…%':
+ * «phone» не найдёт «iPhone», «iph» — найдёт. Цена, продажи и флаги (проверен, в каталоге) лежат в параллельных массивах,
+ * поэтому фильтры и сортировка не трогают БД. Изменённый текст товара получает новый документ,
+ * старый помечается удалённым; когда удалённых становится больше живых, индекс уплотняется.
+ */
+public class ProductSearchIndex {
+    public static final String SORT_PRICE_ASC = "price_asc";
+    public static final String SORT_PRICE_DESC = "price_desc";
+    public static final String SORT_SALES_DESC = "sales_desc";
+
+    private static final byte LIVE = 1;
+    private static final byte VERIFIED = 2;
+    private static final byte IN_CATALOG = 4;
+    private static final byte FIELD_NAME = 1;
+    private static final byte FIELD_DESCRIPTION = 2;
+
+    private static final int MAX_QUERY_TOKENS = 8;
+    private static final int MAX_DESCRIPTION_TOKENS = 100;
+    // Сколько терминов словаря раскрывает одно слово запроса по префиксу
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_COMPACT_DEAD = 10_000;
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_FACTOR = 0.5f;
+    // Поиск упирается в процессор: параллельных поисков больше, чем ядер, не нужно, и рабочих массивов
+    // размером с индекс держится не больше, чем ядер, сколько бы потоков ни было у Tomcat
+    private static final int MAX_SCRATCH = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ых", "их",
+            "ой", "ей", "ий", "ый", "ая", "яя", "ое", "ее", "ые", "ие", "ов", "ев",
+            "ах", "ях", "ам", "ям", "ом", "ем", "а", "я", "о", "е", "ы", "и", "у", "ю", "ь"
+    };
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Scratch> scratchPool = new ArrayBlockingQueue<>(MAX_SCRATCH);
+    private final AtomicInteger scratchCreated = new AtomicInteger();
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Integer> docByProduct = new HashMap<>();
+    private String[] productIds = new String[1024];
+    private float[] prices = new float[1024];
+    private int[] sales = new int[1024];
+    private int[] textHashes = new int[1024];
+    private byte[] flags = new byte[1024];
+    private int docCount;
+    private int liveCount;
+
+    public void upsert(Doc doc) {
+        lock.writeLock().lock();
+        try {
+            int textHash = Objects.hash(doc.getName(), doc.getDescription());
+            Integer existing = docByProduct.get(doc.getProductId());
+            if (existing != null && textHashes[existing] == textHash) {
+                // Текст не изменился: достаточно обновить атрибуты на месте
+                setAttributes(existing, doc);
+                return;
+            }
+            if (existing != null) {
+                kill(existing);
+            }
+            int docId = allocate(doc, textHash);
+            Map<String, Byte> tokens = new LinkedHashMap<>();
+            for (String token : tokenize(doc.getName())) {
+                tokens.merge(token, FIELD_NAME, (a, b) -> (byte) (a | b));
+            }
+            int descriptionTokens = 0;
+            for (String token : tokenize(doc.getDescription())) {
+                if (descriptionTokens >= MAX_DESCRIPTION_TOKENS) {
+                    break;
+                }
+                if (tokens.merge(token, FIELD_DESCRIPTION, (a, b) -> (byte) (a | b)) == FIELD_DESCRIPTION) {
+                    descriptionTokens++;
+                }
+            }
+            for (Map.Entry<String, Byte> entry : tokens.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> new Postings()).add(docId, entry.getValue());
+            }
+            if (docCount - liveCount > Math.max(MIN_COMPACT_DEAD, liveCount)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = docByProduct.remove(productId);
+            if (existing != null) {
+                kill(existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Result search(Query query) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query.getText())));
+        if (tokens.size() > MAX_QUERY_TOKENS) {
+            tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+        }
+        // Рабочие массивы берутся до блокировки: ожидание свободных не задерживает запись в индекс
+        Scratch s = acquireScratch();
+        try {
+            lock.readLock().lock();
+            try {
+                s.ensure(docCount);
+                Filter filter = new Filter(query);
+                int found = tokens.isEmpty() ? scanAll(filter, s) : matchTokens(tokens, filter, s);
+                return page(query, s, found);
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            scratchPool.offer(s);
+        }
+    }
+
+    private Scratch acquireScratch() {
+        Scratch s = scratchPool.poll();
+        if (s != null) {
+            return s;
+        }
+        if (scratchCreated.incrementAndGet() <= MAX_SCRATCH) {
+            return new Scratch();
+        }
+        scratchCreated.decrementAndGet();
+        try {
+            return scratchPool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Поиск прерван", e);
+        }
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                current.append(c == 'ё' ? 'е' : c);
+            } else if (current.length() > 0) {
+                if (current.length() >= 2) {
+                    tokens.add(stem(current.toString()));
+                }
+                current.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    // Отсечение окончаний: «кроссовки» и «кроссовка» дают одну основу, «shoes» — «shoe»
+    static String stem(String token) {
+        if (token.length() <= 4) {
+            return token;
+        }
+        char first = token.charAt(0);
+        if (first >= 'а' && first <= 'я') {
+            for (String ending : RUSSIAN_ENDINGS) {
+                if (token.endsWith(ending) && token.length() - ending.length() >= 3) {
+                    return token.substring(0, token.length() - ending.length());
+                }
+            }
+            return token;
+        }
+        if (token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    private int scanAll(Filter filter, Scratch s) {
+        int[] candidates = s.candidates;
+        int found = 0;
+        // Запись без ветвления: на полном проходе по индексу непредсказуемый if стоит дороже записи
+        for (int doc = 0, count = docCount; doc < count; doc++) {
+            candidates[found] = doc;
+            found += filter.passes(doc) ? 1 : 0;
+        }
+        return found;
+    }
+
+    // Слова запроса от самого редкого: первое задаёт кандидатов, остальные только сужают их
+    private int matchTokens(List<String> tokens, Filter filter, Scratch s) {
+        List<List<Expansion>> expansions = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            List<Expansion> expanded = expand(token);
+            if (expanded.isEmpty()) {
+                return 0;
+            }
+            expansions.add(expanded);
+        }
+        expansions.sort(Comparator.comparingLong(list -> list.stream().mapToLong(e -> e.postings.size).sum()));
+
+        int epoch = s.nextEpoch();
+        int touched = 0;
+        for (int t = 0; t < expansions.size(); t++) {
+            for (Expansion expansion : expansions.get(t)) {
+                Postings postings = expansion.postings;
+                float idf = (float) Math.log(1.0 + (double) Math.max(liveCount, 1) / postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    // Удалённые документы отсекает фильтр в конце: здесь лишнее чтение flags
+                    if (s.epochs[doc] != epoch) {
+                        if (t > 0) {
+                            continue;
+                        }
+                        s.epochs[doc] = epoch;
+                        s.matched[doc] = 0;
+                        s.scores[doc] = 0;
+                        s.touched[touched++] = doc;
+                    }
+                    // Слово засчитывается документу один раз: точная основа идёт раньше префиксов
+                    if (s.matched[doc] == t) {
+                        s.matched[doc] = (byte) (t + 1);
+                        byte fields = postings.fields[i];
+                        float weight = ((fields & FIELD_NAME) != 0 ? NAME_WEIGHT : 0)
+                                + ((fields & FIELD_DESCRIPTION) != 0 ? DESCRIPTION_WEIGHT : 0);
+                        s.scores[doc] += idf * weight * expansion.factor;
+                    }
+                }
+            }
+        }
+
+        int found = 0;
+        for (int i = 0; i < touched; i++) {
+            int doc = s.touched[i];
+            if (s.matched[doc] == expansions.size() && filter.passes(doc)) {
+                s.candidates[found++] = doc;
+            }
+        }
+        return found;
+    }
+
+    private List<Expansion> expand(String token) {
+        List<Expansion> expanded = new ArrayList<>();
+        Postings exact = terms.get(token);
+        if (exact != null) {
+            expanded.add(new Expansion(exact, 1.0f));
+        }
+        for (Map.Entry<String, Postings> entry : terms.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+            if (expanded.size() >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            expanded.add(new Expansion(entry.getValue(), PREFIX_FACTOR));
+        }
+        return expanded;
+    }
+
+    // Условия запроса, разобранные один раз: в цикле по документам нет распаковки Float
+    private class Filter {
+        // Массивы не меняются, пока поиск держит блокировку чтения
+        private final byte[] docFlags = flags;
+        private final float[] docPrices = prices;
+        private final byte required;
+        private final float minPrice;
+        private final float maxPrice;
+        private final boolean priceFiltered;
+
+        Filter(Query query) {
+            required = (byte) (LIVE | (query.isVerifiedOnly() ? VERIFIED : 0) | (query.isCatalogOnly() ? IN_CATALOG : 0));
+            minPrice = query.getMinPrice() != null ? query.getMinPrice() : Float.NEGATIVE_INFINITY;
+            maxPrice = query.getMaxPrice() != null ? query.getMaxPrice() : Float.POSITIVE_INFINITY;
+            priceFiltered = query.getMinPrice() != null || query.getMaxPrice() != null;
+        }
+
+        boolean passes(int doc) {
+            // Товар без цены (NaN) не проходит ни один ценовой фильтр
+            return (docFlags[doc] & required) == required
+                    & (!priceFiltered | (docPrices[doc] >= minPrice & docPrices[doc] <= maxPrice));
+        }
+    }
+
+    // Нужны только первые offset + limit документов: частичная сортировка кучей ограниченного размера
+    private Result page(Query query, Scratch s, int found) {
+        int from = Math.max(0, query.getOffset());
+        int to = (int) Math.min((long) from + Math.max(0, query.getLimit()), found);
+        List<String> ids = new ArrayList<>(Math.max(0, to - from));
+        if (from >= to) {
+            return new Result(ids, found);
+        }
+        DocOrder order = order(query, s);
+        int[] top;
+        if (order == null) {
+            // Без сортировки и без текста — порядок добавления, кандидаты уже упорядочены
+            top = s.candidates;
+        } else {
+            // Вершина кучи — худший из отобранных; новый кандидат вытесняет его, только если лучше
+            int[] heap = new int[to];
+            int size = 0;
+            for (int i = 0; i < found; i++) {
+                int doc = s.candidates[i];
+                if (size < to) {
+                    heap[size] = doc;
+                    siftUp(heap, size++, order);
+                } else if (order.compare(doc, heap[0]) < 0) {
+                    heap[0] = doc;
+                    siftDown(heap, size, order);
+                }
+            }
+            top = new int[size];
+            while (size > 0) {
+                top[size - 1] = heap[0];
+                heap[0] = heap[--size];
+                siftDown(heap, size, order);
+            }
+        }
+        for (int i = from; i < to; i++) {
+            ids.add(productIds[top[i]]);
+        }
+        return new Result(ids, found);
+    }
+
+    private DocOrder order(Query query, Scratch s) {
+        DocOrder primary;
+        if (SORT_PRICE_ASC.equals(query.getSort())) {
+            primary = (a, b) -> Float.compare(priceOrMax(a), priceOrMax(b));
+        } else if (SORT_PRICE_DESC.equals(query.getSort())) {
+            primary = (a, b) -> Float.compare(priceOrMin(b), priceOrMin(a));
+        } else if (SORT_SALES_DESC.equals(query.getSort())) {
+            primary = (a, b) -> Integer.compare(sales[b], sales[a]);
+        } else if (query.getText() != null && !tokenize(query.getText()).isEmpty()) {
+            primary = (a, b) -> Float.compare(s.scores[b], s.scores[a]);
+        } else {
+            return null;
+        }
+        return (a, b) -> {
+            int result = primary.compare(a, b);
+            return result != 0 ? result : Integer.compare(a, b);
+        };
+    }
+
+    private float priceOrMax(int doc) {
+        return Float.isNaN(prices[doc]) ? Float.MAX_VALUE : prices[doc];
+    }
+
+    private float priceOrMin(int doc) {
+        return Float.isNaN(prices[doc]) ? -Float.MAX_VALUE : prices[doc];
+    }
+
+    // Куча с худшим документом в вершине (order.compare > 0 — хуже)
+    private static void siftUp(int[] heap, int index, DocOrder order) {
+        int doc = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (order.compare(doc, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = doc;
+    }
+
+    private static void siftDown(int[] heap, int size, DocOrder order) {
+        if (size == 0) {
+            return;
+        }
+        int doc = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && order.compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (order.compare(doc, heap[child]) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = doc;
+    }
+
+    private int allocate(Doc doc, int textHash) {
+        if (docCount == productIds.length) {
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            sales = Arrays.copyOf(sales, capacity);
+            textHashes = Arrays.copyOf(textHashes, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        int docId = docCount++;
+        productIds[docId] = doc.getProductId();
+        textHashes[docId] = textHash;
+        flags[docId] = LIVE;
+        setAttributes(docId, doc);
+        docByProduct.put(doc.getProductId(), docId);
+        liveCount++;
+        return docId;
+    }
+
+    private void setAttributes(int docId, Doc doc) {
+        prices[docId] = doc.getPrice() != null ? doc.getPrice() : Float.NaN;
+        sales[docId] = doc.getSalesCount() != null ? doc.getSalesCount() : 0;
+        flags[docId] = (byte) (LIVE | (doc.isVerified() ? VERIFIED : 0) | (doc.isInCatalog() ? IN_CATALOG : 0));
+    }
+
+    private void kill(int docId) {
+        if ((flags[docId] & LIVE) != 0) {
+            flags[docId] = 0;
+            liveCount--;
+        }
+    }
+
+    // Перенумерация живых документов с сохранением порядка; пустые списки терминов удаляются
+    private void compact() {
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if ((flags[doc] & LIVE) != 0) {
+                remap[doc] = next;
+                productIds[next] = productIds[doc];
+                prices[next] = prices[doc];
+                sales[next] = sales[doc];
+                textHashes[next] = textHashes[doc];
+                flags[next] = flags[doc];
+                docByProduct.put(productIds[next], next);
+                next++;
+            } else {
+                remap[doc] = -1;
+            }
+        }
+        Arrays.fill(productIds, next, docCount, null);
+        Arrays.fill(flags, next, docCount, (byte) 0);
+        docCount = next;
+        terms.values().removeIf(postings -> postings.remap(remap) == 0);
+    }
+
+    private interface DocOrder {
+        int compare(int a, int b);
+    }
+
+    private static class Postings {
+        private int[] docs = new int[4];
+        private byte[] fields = new byte[4];
+        private int size;
+
+        void add(int doc, byte field) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            docs[size] = doc;
+            fields[size] = field;
+            size++;
+        }
+
+        int remap(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    fields[kept] = fields[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Expansion {
+        private final Postings postings;
+        private final float factor;
+    }
+
+    // Рабочие массивы одного поиска: выделяются один раз на экземпляр пула и растут вместе с индексом
+    private static class Scratch {
+        private int[] epochs = new int[0];
+        private byte[] matched = new byte[0];
+        private float[] scores = new float[0];
+        private int[] touched = new int[0];
+        private int[] candidates = new int[0];
+        private int epoch;
+
+        void ensure(int docs) {
+            if (epochs.length < docs) {
+                int capacity = Math.max(docs, epochs.length * 2);
+                epochs = Arrays.copyOf(epochs, capacity);
+                matched = Arrays.copyOf(matched, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+                touched = Arrays.copyOf(touched, capacity);
+                candidates = Arrays.copyOf(candidates, capacity);
+            }
+        }
+
+        int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(epochs, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Doc {
+        private String productId;
+        private String name;
+        private String description;
+        private Float price;
+        private Integer salesCount;
+        private boolean verified;
+        private boolean inCatalog;
+    }
+
+    @Data
+    public static class Query {
+        private String text;
+        private Float minPrice;
+        private Float maxPrice;
+        private boolean verifiedOnly;
+        private boolean catalogOnly;
+        private String sort;
+        private int offset;
+        private int limit = 20;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        private List<String> productIds;
+        private long total;
+    }
+}
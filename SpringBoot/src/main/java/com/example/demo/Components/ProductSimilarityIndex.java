@@ -0,0 +1,418 @@
+package com.example.demo.Components;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс похожих товаров: MinHash-сигнатуры названий и LSH-бакеты по полосам сигнатуры.
+ * Название раскладывается на символьные триграммы (с границами слов), поэтому «кроссовки» и «кроссовка»
+ * остаются близкими без морфологии. Сигнатура из 48 минимумов делится на 16 полос по 3 значения;
+ * товары с совпавшей полосой становятся кандидатами, а доля совпавших минимумов — оценкой
+ * сходства Жаккара. Порог, на котором кандидат находится с вероятностью 1/2, — около 0.4.
+ * Бакеты — двусвязные цепочки внутри массивов, без объекта на запись: около 450 байт на товар
+ * плюс нормализованное название, по которому upsert и similar узнают, что сигнатура не устарела.
+ */
+public class ProductSimilarityIndex {
+    public static final float MIN_SIMILARITY = 0.2f;
+
+    private static final int SIGNATURE_SIZE = 48;
+    private static final int BANDS = 16;
+    private static final int ROWS = SIGNATURE_SIZE / BANDS;
+    // Огромные бакеты (десятки тысяч «Кроссовки Nike») просматриваются только с начала — с новых товаров
+    private static final int MAX_BAND_VISITS = 64;
+    private static final int MAX_CANDIDATES = 500;
+    private static final byte LIVE = 1;
+    private static final byte VERIFIED = 2;
+    // Как в ProductSearchIndex: рабочих массивов размером с индекс не больше, чем ядер, сколько бы ни было потоков
+    private static final int MAX_SCRATCH = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final long[] HASH_A = new long[SIGNATURE_SIZE];
+    private static final long[] HASH_B = new long[SIGNATURE_SIZE];
+
+    static {
+        // Фиксированное зерно: сигнатуры воспроизводимы между перезапусками и в тестах
+        SplittableRandom random = new SplittableRandom(0x5EED_CA7A_1060L);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            HASH_A[i] = random.nextLong() | 1L;
+            HASH_B[i] = random.nextLong();
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Scratch> scratchPool = new ArrayBlockingQueue<>(MAX_SCRATCH);
+    private final AtomicInteger scratchCreated = new AtomicInteger();
+
+    private final Map<String, Integer> docByProduct = new HashMap<>();
+    private final Deque<Integer> freeDocs = new ArrayDeque<>();
+    private String[] productIds = new String[1024];
+    private String[] names = new String[1024];
+    private byte[] flags = new byte[1024];
+    private int[] signatures = new int[1024 * SIGNATURE_SIZE];
+    // Запись бакета = doc * BANDS + band: ключ полосы и соседние записи в той же цепочке
+    private int[] bandKeys = new int[1024 * BANDS];
+    private int[] next = new int[1024 * BANDS];
+    private int[] previous = new int[1024 * BANDS];
+    private int[] heads = emptyHeads(1024 * BANDS);
+    private int docCount;
+    private int liveCount;
+
+    public void upsert(String productId, String name, boolean verified) {
+        String normalized = normalize(name);
+        int[] signature = signature(normalized);
+        lock.writeLock().lock();
+        try {
+            Integer existing = docByProduct.get(productId);
+            if (existing != null && normalized.equals(names[existing])) {
+                // Название не изменилось: сигнатура та же, меняется только статус
+                flags[existing] = (byte) (LIVE | (verified ? VERIFIED : 0));
+                return;
+            }
+            if (existing != null) {
+                release(existing);
+            }
+            if (signature == null) {
+                // В названии нет ни одной буквы или цифры — сравнивать не с чем
+                return;
+            }
+            int doc = allocate();
+            docByProduct.put(productId, doc);
+            productIds[doc] = productId;
+            names[doc] = normalized;
+            flags[doc] = (byte) (LIVE | (verified ? VERIFIED : 0));
+            System.arraycopy(signature, 0, signatures, doc * SIGNATURE_SIZE, SIGNATURE_SIZE);
+            link(doc);
+            liveCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = docByProduct.get(productId);
+            if (existing != null) {
+                release(existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Проверенные товары, похожие на productId, по убыванию оценки сходства (не ниже MIN_SIMILARITY).
+     * Если товара нет в индексе или его название изменилось, сигнатура считается по переданному name.
+     */
+    public List<Match> similar(String productId, String name, int limit) {
+        String normalized = normalize(name);
+        // Рабочий массив берётся до блокировки: ожидание свободного не задерживает запись в индекс
+        Scratch s = acquireScratch();
+        try {
+            lock.readLock().lock();
+            try {
+                Integer self = docByProduct.get(productId);
+                int[] source;
+                int offset;
+                if (self != null && normalized.equals(names[self])) {
+                    source = signatures;
+                    offset = self * SIGNATURE_SIZE;
+                } else {
+                    int[] computed = signature(normalized);
+                    if (computed == null) {
+                        return List.of();
+                    }
+                    source = computed;
+                    offset = 0;
+                }
+                int selfDoc = self == null ? -1 : self;
+
+                s.ensure(docCount);
+                int epoch = s.nextEpoch();
+                int[] topDocs = new int[Math.max(0, limit)];
+                float[] topScores = new float[topDocs.length];
+                int topSize = 0;
+                int examined = 0;
+
+                for (int band = 0; band < BANDS && examined < MAX_CANDIDATES; band++) {
+                    int key = bandKey(source, offset, band);
+                    int visits = 0;
+                    for (int entry = heads[key & (heads.length - 1)];
+                         entry >= 0 && visits < MAX_BAND_VISITS && examined < MAX_CANDIDATES; entry = next[entry]) {
+                        visits++;
+                        if (bandKeys[entry] != key || entry % BANDS != band) {
+                            continue;
+                        }
+                        int doc = entry / BANDS;
+                        if (doc == selfDoc || s.epochs[doc] == epoch || (flags[doc] & VERIFIED) == 0) {
+                            continue;
+                        }
+                        s.epochs[doc] = epoch;
+                        examined++;
+
+                        float score = estimate(source, offset, doc);
+                        if (score < MIN_SIMILARITY || topDocs.length == 0) {
+                            continue;
+                        }
+                        if (topSize == topDocs.length && score <= topScores[topSize - 1]) {
+                            continue;
+                        }
+                        // Вставка в короткий отсортированный список: limit — единицы
+                        int position = topSize < topDocs.length ? topSize++ : topSize - 1;
+                        while (position > 0 && topScores[position - 1] < score) {
+                            topDocs[position] = topDocs[position - 1];
+                            topScores[position] = topScores[position - 1];
+                            position--;
+                        }
+                        topDocs[position] = doc;
+                        topScores[position] = score;
+                    }
+                }
+
+                List<Match> matches = new ArrayList<>(topSize);
+                for (int i = 0; i < topSize; i++) {
+                    matches.add(new Match(productIds[topDocs[i]], topScores[i]));
+                }
+                return matches;
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            scratchPool.offer(s);
+        }
+    }
+
+    // Точное сходство Жаккара по триграммам — для ответа, пока индекс не построен
+    public static float jaccard(String first, String second) {
+        Set<Long> a = shingles(first);
+        Set<Long> b = shingles(second);
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0f;
+        }
+        int common = 0;
+        for (Long shingle : a) {
+            if (b.contains(shingle)) {
+                common++;
+            }
+        }
+        return (float) common / (a.size() + b.size() - common);
+    }
+
+    // Сигнатура по уже нормализованному названию
+    private static int[] signature(String normalized) {
+        Set<Long> shingles = triGrams(normalized);
+        if (shingles.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (Long shingle : shingles) {
+            long base = mix(shingle);
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                // Multiply-shift поверх перемешанного значения: независимые хэш-функции за одно умножение
+                int h = (int) ((HASH_A[i] * base + HASH_B[i]) >>> 33);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    // Триграммы нормализованного названия: « кро», «рос», ..., «ки » — с пробелами на границах слов
+    static Set<Long> shingles(String name) {
+        return triGrams(normalize(name));
+    }
+
+    /**
+     * Название в нижнем регистре, «ё» как «е», любые не буквы и не цифры схлопнуты в один пробел,
+     * с пробелами по краям. Названия с одинаковой нормальной формой дают одну и ту же сигнатуру;
+     * для названия без букв и цифр — пустая строка.
+     */
+    static String normalize(String name) {
+        if (name == null || name.isEmpty()) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(name.length() + 2).append(' ');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                normalized.append(c == 'ё' ? 'е' : c);
+            } else if (normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        if (normalized.length() == 1) {
+            return "";
+        }
+        if (normalized.charAt(normalized.length() - 1) != ' ') {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+
+    private static Set<Long> triGrams(String normalized) {
+        Set<Long> shingles = new HashSet<>();
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            shingles.add(((long) normalized.charAt(i) << 32) | ((long) normalized.charAt(i + 1) << 16) | normalized.charAt(i + 2));
+        }
+        return shingles;
+    }
+
+    private float estimate(int[] source, int offset, int doc) {
+        int base = doc * SIGNATURE_SIZE;
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            equal += source[offset + i] == signatures[base + i] ? 1 : 0;
+        }
+        return (float) equal / SIGNATURE_SIZE;
+    }
+
+    private Scratch acquireScratch() {
+        Scratch s = scratchPool.poll();
+        if (s != null) {
+            return s;
+        }
+        if (scratchCreated.incrementAndGet() <= MAX_SCRATCH) {
+            return new Scratch();
+        }
+        scratchCreated.decrementAndGet();
+        try {
+            return scratchPool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Поиск похожих товаров прерван", e);
+        }
+    }
+
+    private int allocate() {
+        if (!freeDocs.isEmpty()) {
+            return freeDocs.pop();
+        }
+        if (docCount == productIds.length) {
+            grow(productIds.length * 2);
+        }
+        return docCount++;
+    }
+
+    private void release(int doc) {
+        unlink(doc);
+        docByProduct.remove(productIds[doc]);
+        productIds[doc] = null;
+        names[doc] = null;
+        flags[doc] = 0;
+        liveCount--;
+        freeDocs.push(doc);
+    }
+
+    private void grow(int capacity) {
+        productIds = Arrays.copyOf(productIds, capacity);
+        names = Arrays.copyOf(names, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        signatures = Arrays.copyOf(signatures, capacity * SIGNATURE_SIZE);
+        bandKeys = Arrays.copyOf(bandKeys, capacity * BANDS);
+        next = Arrays.copyOf(next, capacity * BANDS);
+        previous = Arrays.copyOf(previous, capacity * BANDS);
+        // Таблица цепочек растёт вместе с числом записей, живые товары перелинковываются
+        heads = emptyHeads(capacity * BANDS);
+        for (int doc = 0; doc < docCount; doc++) {
+            if ((flags[doc] & LIVE) != 0) {
+                link(doc);
+            }
+        }
+    }
+
+    private void link(int doc) {
+        int offset = doc * SIGNATURE_SIZE;
+        for (int band = 0; band < BANDS; band++) {
+            int entry = doc * BANDS + band;
+            int key = bandKey(signatures, offset, band);
+            int slot = key & (heads.length - 1);
+            bandKeys[entry] = key;
+            next[entry] = heads[slot];
+            previous[entry] = -1;
+            if (heads[slot] >= 0) {
+                previous[heads[slot]] = entry;
+            }
+            heads[slot] = entry;
+        }
+    }
+
+    private void unlink(int doc) {
+        for (int band = 0; band < BANDS; band++) {
+            int entry = doc * BANDS + band;
+            if (previous[entry] >= 0) {
+                next[previous[entry]] = next[entry];
+            } else {
+                heads[bandKeys[entry] & (heads.length - 1)] = next[entry];
+            }
+            if (next[entry] >= 0) {
+                previous[next[entry]] = previous[entry];
+            }
+        }
+    }
+
+    private static int bandKey(int[] signature, int offset, int band) {
+        long h = band * 0x9E3779B97F4A7C15L;
+        for (int row = 0; row < ROWS; row++) {
+            h = (h ^ signature[offset + band * ROWS + row]) * 0xBF58476D1CE4E5B9L;
+        }
+        return (int) (mix(h) >>> 32);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static int[] emptyHeads(int entries) {
+        int[] heads = new int[Integer.highestOneBit(Math.max(2, entries - 1)) << 1];
+        Arrays.fill(heads, -1);
+        return heads;
+    }
+
+    // Метки просмотренных кандидатов одного поиска: выделяются один раз на экземпляр пула и растут вместе с индексом
+    private static class Scratch {
+        private int[] epochs = new int[0];
+        private int epoch;
+
+        void ensure(int docs) {
+            if (epochs.length < docs) {
+                epochs = Arrays.copyOf(epochs, Math.max(docs, epochs.length * 2));
+            }
+        }
+
+        int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(epochs, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Match {
+        private String productId;
+        private float similarity;
+    }
+}
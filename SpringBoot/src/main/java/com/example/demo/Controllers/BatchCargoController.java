@@ -1,30 +1,48 @@
 package com.example.demo.Controllers;
 
 import com.example.demo.Components.ContextHolder;
+import com.example.demo.Components.PricingEngine;
+import com.example.demo.DTO.BatchCargoItemRow;
 import com.example.demo.Entities.BatchCargo;
 import com.example.demo.Entities.Order;
 import com.example.demo.Entities.OrderItem;
 import com.example.demo.Entities.User;
+import com.example.demo.POJO.BatchCargoOrdersChangedEvent;
+import com.example.demo.POJO.OrderChangedEvent;
 import com.example.demo.Repositories.BatchCargoRepository;
 import com.example.demo.Repositories.OrderItemRepository;
 import com.example.demo.Repositories.OrderRepository;
+import com.example.demo.Repositories.OrderSummaryRepository;
+import com.example.demo.Repositories.UserBatchMembershipRepository;
 import com.example.demo.Repositories.UserRepository;
+import com.example.demo.Services.BatchCargoStatsService;
+import com.example.demo.Services.BatchNotificationDispatcher;
+import com.example.demo.Services.BatchPlanningService;
+import com.example.demo.Services.BulkItemStatusService;
 import com.example.demo.Services.NotificationService;
+import com.example.demo.Services.PurchaseProgressService;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.http.ResponseEntity;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.reactive.function.client.WebClient;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -40,11 +58,28 @@ public class BatchCargoController {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private JavaMailSender mailSender;
-    @Autowired
     private NotificationService notificationService;
+    @Autowired
+    private BatchNotificationDispatcher notificationDispatcher;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private OrderSummaryRepository orderSummaryRepository;
+    @Autowired
+    private PurchaseProgressService purchaseProgressService;
+    @Autowired
+    private BulkItemStatusService bulkItemStatusService;
+    @Autowired
+    private BatchPlanningService batchPlanningService;
+    @Autowired
+    private UserBatchMembershipRepository membershipRepository;
+    @Autowired
+    private BatchCargoStatsService batchCargoStatsService;
     private final WebClient webClient;
 
+    private static final int ASSIGN_CHUNK_SIZE = 500;
+    private static final Set<String> DEPARTURE_SORT_FIELDS = Set.of("creationDate", "purchaseDate", "status", "id");
+
     @Autowired
     public BatchCargoController(WebClient.Builder webClientBuilder) {
         this.webClient = webClientBuilder.baseUrl("http://localhost:8080/api").build();
@@ -71,16 +106,23 @@ public class BatchCargoController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "creationDate,desc") String sort) {
         String userEmail = ContextHolder.getCurrentUserEmail();
-        User user = userRepository.findByEmail(userEmail).orElse(null);
-        if (user == null) {
+        if (userEmail == null) {
             return ResponseEntity.status(403).body(new PagedResponse<>(List.of(), page, size, 0, 0, true));
         }
         String[] sortParams = sort.split(",");
         String sortField = sortParams[0];
         Sort.Direction sortDirection = sortParams.length > 1 && sortParams[1].equalsIgnoreCase("desc")
                 ? Sort.Direction.DESC : Sort.Direction.ASC;
-        Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sortField));
-        Page<BatchCargo> batchPage = batchCargoRepository.findByUser(user, pageable);
+        if (!DEPARTURE_SORT_FIELDS.contains(sortField)) {
+            return ResponseEntity.badRequest().body(new PagedResponse<>(List.of(), page, size, 0, 0, true));
+        }
+        // Сортировка по дате создания идёт по индексу (user_email, creation_date, batch_id) таблицы членства.
+        // Поле из запроса — только из белого списка; пути с алиасами join уходят в ORDER BY как есть (JpaSort.unsafe)
+        Sort order = "creationDate".equals(sortField)
+                ? JpaSort.unsafe(sortDirection, "m.creationDate", "m.batchId")
+                : JpaSort.unsafe(sortDirection, "b." + sortField, "b.id");
+        Pageable pageable = PageRequest.of(page, size, order);
+        Page<BatchCargo> batchPage = membershipRepository.findBatchCargosByUserEmail(userEmail, pageable);
         List<BatchCargoDTO> batchDTOs = batchPage.getContent().stream()
                 .map(this::mapToBatchCargoDTO)
                 .collect(Collectors.toList());
@@ -104,61 +146,76 @@ public class BatchCargoController {
         batchCargo.setStatus("UNFINISHED");
         batchCargo.setPhotoUrl(request.getPhotoUrl());
         batchCargo.setDescription(request.getDescription());
-        batchCargo = batchCargoRepository.save(batchCargo);
-        BatchCargo finalBatchCargo = batchCargo;
-        // Convert purchaseDate to LocalDate for date-only comparison
-        java.time.LocalDate purchaseLocalDate = finalBatchCargo.getPurchaseDate()
-                .toInstant()
-                .atZone(java.time.ZoneId.systemDefault())
-                .toLocalDate();
-        List<Order> eligibleOrders = orderRepository.findByStatus("VERIFIED").stream()
-                .filter(order -> order.getDateCreated() != null && finalBatchCargo.getPurchaseDate() != null)
-                .filter(order -> {
-                    // Convert order's dateCreated to LocalDate
-                    java.time.LocalDate orderLocalDate = order.getDateCreated()
-                            .toInstant()
-                            .atZone(java.time.ZoneId.systemDefault())
-                            .toLocalDate();
-                    // Compare dates only (ignore time)
-                    return !orderLocalDate.isAfter(purchaseLocalDate);
-                })
-                .filter(order -> order.getBatchCargo() == null)
-                .collect(Collectors.toList());
-        for (Order order : eligibleOrders) {
-            order.setBatchCargo(batchCargo);
-            boolean allItemsProcessed = order.getItems().stream().allMatch(i ->
-                    "PURCHASED".equals(i.getPurchaseStatus()) || "NOT_PURCHASED".equals(i.getPurchaseStatus()));
-            if (allItemsProcessed) {
-                order.setStatus("PROCESSED");
-            } else {
-                for (OrderItem item : order.getItems()) {
-                    if (item.getPurchaseStatus() == null || "PENDING".equals(item.getPurchaseStatus())) {
-                        item.setPurchaseStatus("PENDING");
-                        orderItemRepository.save(item);
-                    }
-                }
+        // saveAndFlush: id нужен в БД до массового UPDATE orders
+        batchCargo = batchCargoRepository.saveAndFlush(batchCargo);
+
+        int assigned = 0;
+        String dispatchJobId = null;
+        if (request.getOrderIds() != null && !request.getOrderIds().isEmpty()) {
+            // Состав из плана /plan: заказы, которые успели уйти в другой груз, пропускаются
+            List<Long> orderIds = request.getOrderIds();
+            for (int from = 0; from < orderIds.size(); from += ASSIGN_CHUNK_SIZE) {
+                assigned += orderRepository.assignOrdersToBatchCargo(batchCargo.getId(),
+                        orderIds.subList(from, Math.min(from + ASSIGN_CHUNK_SIZE, orderIds.size())));
             }
-            orderRepository.save(order);
+        } else {
+            // Все заказы, созданные по дату закупки включительно (дата — в часовом поясе сервера, как и раньше)
+            LocalDate purchaseLocalDate = batchCargo.getPurchaseDate()
+                    .toInstant()
+                    .atZone(ZoneId.systemDefault())
+                    .toLocalDate();
+            Timestamp cutoff = Timestamp.valueOf(purchaseLocalDate.plusDays(1).atStartOfDay());
+
+            // Назначение груза пачками по индексу (status, batch_cargo_id, date_created), без загрузки заказов в память
+            int updated;
+            do {
+                updated = orderRepository.assignToBatchCargo(batchCargo.getId(), cutoff, ASSIGN_CHUNK_SIZE);
+                assigned += updated;
+            } while (updated == ASSIGN_CHUNK_SIZE);
         }
-        boolean allOrdersProcessed = eligibleOrders.stream().allMatch(o -> "PROCESSED".equals(o.getStatus()));
-        if (allOrdersProcessed && !eligibleOrders.isEmpty()) {
-            batchCargo.setStatus("FINISHED");
-            batchCargoRepository.save(batchCargo);
-            for (Order order : eligibleOrders) {
-                User user = userRepository.findByEmail(order.getUser().getEmail()).orElse(null);
-                if (user != null) {
-                    notificationService.sendUserNotification(
-                            user,
-                            String.format("Сборный груз #%d завершён и готов к отправке.", batchCargo.getId()),
-                            batchCargo.getId(),
-                            "BATCH_UPDATE"
-                    );
-                } else {
-                    System.err.println("User not found for email: " + order.getUser().getEmail());
-                }
+
+        if (assigned > 0) {
+            membershipRepository.addBatchMembers(batchCargo.getId());
+            // Заказы, у которых все позиции уже выкуплены или отклонены, сразу переходят в PROCESSED
+            orderRepository.markProcessedInBatchCargo(batchCargo.getId());
+            orderSummaryRepository.syncBatchCargoOrders(batchCargo.getId());
+            eventPublisher.publishEvent(new BatchCargoOrdersChangedEvent(batchCargo.getId()));
+
+            // Заводим счётчики выкупа; дальше их ведёт markItemStatus
+            if (purchaseProgressService.recountBatch(batchCargo.getId()) == 0) {
+                batchCargo.setStatus("FINISHED");
+                batchCargoRepository.save(batchCargo);
+                dispatchJobId = notificationDispatcher.schedule(
+                        batchCargo.getId(),
+                        String.format("Сборный груз #%d завершён и готов к отправке.", batchCargo.getId()),
+                        "BATCH_UPDATE", null, null);
             }
         }
-        return ResponseEntity.ok(mapToBatchCargoDTO(batchCargo));
+        batchCargoStatsService.recompute(batchCargo.getId());
+        BatchCargoDTO dto = mapToBatchCargoDTO(batchCargo);
+        dto.setDispatchJobId(dispatchJobId);
+        return ResponseEntity.ok(dto);
+    }
+
+    // Предпросмотр раскладки очереди VERIFIED-заказов по грузам с ограничением веса (кг) и суммы.
+    // Ограничения сравниваются в граммах и копейках: вес меньше грамма (и NaN) округлился бы до нуля,
+    // и все заказы ушли бы в oversized
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/plan")
+    public ResponseEntity<?> planBatchCargos(@RequestBody PlanRequest request) {
+        if (request.getMaxWeight() == null || BatchPlanningService.toGrams(request.getMaxWeight()) <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Укажите максимальный вес груза", "status", 400));
+        }
+        if (request.getMaxPrice() != null && PricingEngine.toMinor(request.getMaxPrice()) <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Максимальная сумма должна быть больше нуля", "status", 400));
+        }
+        Timestamp createdBefore = null;
+        if (request.getPurchaseDate() != null) {
+            LocalDate purchaseLocalDate = request.getPurchaseDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            createdBefore = Timestamp.valueOf(purchaseLocalDate.plusDays(1).atStartOfDay());
+        }
+        BatchPlanningService.PlanResult plan = batchPlanningService.plan(request.getMaxWeight(), request.getMaxPrice(), createdBefore);
+        return ResponseEntity.ok(plan);
     }
 
     @GetMapping("/usr/{id}")
@@ -200,6 +257,44 @@ public class BatchCargoController {
         return ResponseEntity.ok(dto);
     }
 
+    // Постраничная карточка груза для администратора: фильтры по статусу выкупа позиций и по клиенту
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/{id}/orders")
+    @Transactional(readOnly = true)
+    public ResponseEntity<BatchCargoPageDTO> getBatchCargoOrdersPage(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String purchaseStatus,
+            @RequestParam(required = false) String userEmail) {
+        BatchCargo batchCargo = batchCargoRepository.findById(id).orElse(null);
+        if (batchCargo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        BatchCargoSummaryDTO summary = summarizeBatchCargo(id, null);
+        return ResponseEntity.ok(buildBatchCargoPage(batchCargo, summary, userEmail, purchaseStatus, page, size));
+    }
+
+    // То же для клиента: только его заказы, шапка тоже по ним
+    @GetMapping("/usr/{id}/orders")
+    @Transactional(readOnly = true)
+    public ResponseEntity<BatchCargoPageDTO> getUserBatchCargoOrdersPage(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String purchaseStatus) {
+        String userEmail = ContextHolder.getCurrentUserEmail();
+        BatchCargo batchCargo = batchCargoRepository.findById(id).orElse(null);
+        if (batchCargo == null || userEmail == null) {
+            return ResponseEntity.notFound().build();
+        }
+        BatchCargoSummaryDTO summary = summarizeBatchCargo(id, userEmail);
+        if (summary.getOrderCount() == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(buildBatchCargoPage(batchCargo, summary, userEmail, purchaseStatus, page, size));
+    }
+
     @PutMapping("/{id}")
     @Transactional
     public ResponseEntity<BatchCargoDTO> updateBatchCargo(@PathVariable Long id, @RequestBody UpdateBatchCargoRequest request) {
@@ -211,22 +306,14 @@ public class BatchCargoController {
             batch.setPhotoUrl(request.getPhotoUrl());
             batch.setDescription(request.getDescription());
             BatchCargo savedBatch = batchCargoRepository.save(batch);
+            BatchCargoDTO dto = mapToBatchCargoDTO(savedBatch);
             if ("REFUSED".equals(request.getStatus())) {
-                for (Order order : batch.getOrders()) {
-                    User user = userRepository.findByEmail(order.getUser().getEmail()).orElse(null);
-                    if (user != null) {
-                        notificationService.sendUserNotification(
-                                user,
-                                String.format("Сборный груз #%d был отклонён. Причина: %s", id, request.getReasonRefusal()),
-                                id,
-                                "BATCH_UPDATE"
-                        );
-                    } else {
-                        System.err.println("User not found for email: " + order.getUser().getEmail());
-                    }
-                }
+                dto.setDispatchJobId(notificationDispatcher.schedule(
+                        id,
+                        String.format("Сборный груз #%d был отклонён. Причина: %s", id, request.getReasonRefusal()),
+                        "BATCH_UPDATE", null, null));
             }
-            return ResponseEntity.ok(mapToBatchCargoDTO(savedBatch));
+            return ResponseEntity.ok(dto);
         } catch (RuntimeException e) {
             System.err.println("Batch not found for id " + id + ": " + e.getMessage());
             return ResponseEntity.status(404).body(null);
@@ -247,29 +334,14 @@ public class BatchCargoController {
             }
             batch.setStatus("ARRIVED_IN_MINSK");
             BatchCargo savedBatch = batchCargoRepository.save(batch);
-            for (Order order : batch.getOrders()) {
-                User user = userRepository.findByEmail(order.getUser().getEmail()).orElse(null);
-                if (user != null) {
-                    notificationService.sendUserNotification(
-                            user,
-                            String.format("Сборный груз #%d пришел в Минск и уже на Европочте.", id),
-                            id,
-                            "BATCH_UPDATE"
-                    );
-                } else {
-                    System.err.println("User not found for email: " + order.getUser().getEmail());
-                }
-                try {
-                    SimpleMailMessage message = new SimpleMailMessage();
-                    message.setTo(order.getUser().getEmail());
-                    message.setSubject("Сборный груз прибыл в Минск");
-                    message.setText("Ваш груз из сборного груза прибыл в Минск и уже на Европочте.");
-                    mailSender.send(message);
-                } catch (Exception mailError) {
-                    System.err.println("Failed to send arrived in Minsk email to " + order.getUser().getEmail() + ": " + mailError.getMessage());
-                }
-            }
-            return ResponseEntity.ok(mapToBatchCargoDTO(savedBatch));
+            BatchCargoDTO dto = mapToBatchCargoDTO(savedBatch);
+            dto.setDispatchJobId(notificationDispatcher.schedule(
+                    id,
+                    String.format("Сборный груз #%d пришел в Минск и уже на Европочте.", id),
+                    "BATCH_UPDATE",
+                    "Сборный груз прибыл в Минск",
+                    "Ваш груз из сборного груза прибыл в Минск и уже на Европочте."));
+            return ResponseEntity.ok(dto);
         } catch (RuntimeException e) {
             System.err.println("Batch not found for id " + id + ": " + e.getMessage());
             return ResponseEntity.status(404).body(null);
@@ -290,29 +362,14 @@ public class BatchCargoController {
             }
             batch.setStatus("COMPLETED");
             BatchCargo savedBatch = batchCargoRepository.save(batch);
-            for (Order order : batch.getOrders()) {
-                User user = userRepository.findByEmail(order.getUser().getEmail()).orElse(null);
-                if (user != null) {
-                    notificationService.sendUserNotification(
-                            user,
-                            String.format("Груз #%d доставлен, нужно его забрать.", id),
-                            id,
-                            "BATCH_UPDATE"
-                    );
-                } else {
-                    System.err.println("User not found for email: " + order.getUser().getEmail());
-                }
-                try {
-                    SimpleMailMessage message = new SimpleMailMessage();
-                    message.setTo(order.getUser().getEmail());
-                    message.setSubject("Груз доставлен");
-                    message.setText("Ваш груз из сборного груза доставлен. Нужно его забрать.");
-                    mailSender.send(message);
-                } catch (Exception mailError) {
-                    System.err.println("Failed to send delivered email to " + order.getUser().getEmail() + ": " + mailError.getMessage());
-                }
-            }
-            return ResponseEntity.ok(mapToBatchCargoDTO(savedBatch));
+            BatchCargoDTO dto = mapToBatchCargoDTO(savedBatch);
+            dto.setDispatchJobId(notificationDispatcher.schedule(
+                    id,
+                    String.format("Груз #%d доставлен, нужно его забрать.", id),
+                    "BATCH_UPDATE",
+                    "Груз доставлен",
+                    "Ваш груз из сборного груза доставлен. Нужно его забрать."));
+            return ResponseEntity.ok(dto);
         } catch (RuntimeException e) {
             System.err.println("Batch not found for id " + id + ": " + e.getMessage());
             return ResponseEntity.status(404).body(null);
@@ -335,7 +392,10 @@ public class BatchCargoController {
                     order.setStatus("VERIFIED");
                 }
                 orderRepository.save(order);
+                eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
             }
+            membershipRepository.deleteByBatch(id);
+            batchCargoStatsService.delete(id);
             batchCargoRepository.delete(batch);
             return ResponseEntity.ok().build();
         } catch (RuntimeException e) {
@@ -347,10 +407,60 @@ public class BatchCargoController {
         }
     }
 
+    // Панель операций: число грузов по статусам и предрасчитанные показатели каждого груза
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/stats")
+    public ResponseEntity<BatchCargoStatsService.Dashboard> getBatchCargoStats(@RequestParam(required = false) String status) {
+        List<String> statuses = status != null && !status.isBlank()
+                ? List.of(status.split(","))
+                : BatchCargoStatsService.ACTIVE_STATUSES;
+        return ResponseEntity.ok(batchCargoStatsService.getDashboard(statuses));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<?> rebuildBatchCargoStats() {
+        int batches = batchCargoStatsService.rebuild();
+        return ResponseEntity.ok(Map.of("count", batches, "message", "Показатели грузов пересчитаны"));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/dispatch-jobs")
+    public ResponseEntity<List<BatchNotificationDispatcher.DispatchJob>> getDispatchJobs() {
+        return ResponseEntity.ok(notificationDispatcher.getJobs());
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/dispatch-jobs/{jobId}")
+    public ResponseEntity<BatchNotificationDispatcher.DispatchJob> getDispatchJob(@PathVariable String jobId) {
+        BatchNotificationDispatcher.DispatchJob job = notificationDispatcher.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    // Отметка выкупа пачкой: одна транзакция и один запрос вместо тысяч вызовов /items/{itemId}
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/items/bulk")
+    public ResponseEntity<?> markItemStatusBulk(@RequestBody List<BulkItemStatusService.ItemStatusChange> request) {
+        if (request == null || request.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Список позиций пуст", "status", 400));
+        }
+        if (request.size() > BulkItemStatusService.MAX_ITEMS) {
+            return ResponseEntity.badRequest().body(Map.of("message",
+                    "Не более " + BulkItemStatusService.MAX_ITEMS + " позиций за запрос", "status", 400));
+        }
+        BulkItemStatusService.BulkItemStatusResult result = bulkItemStatusService.apply(request);
+        return ResponseEntity.ok(result);
+    }
+
     @PutMapping("/items/{itemId}")
     @Transactional
     public ResponseEntity<Void> markItemStatus(@PathVariable Long itemId, @RequestBody ItemStatusRequest request) {
-        OrderItem item = orderItemRepository.findById(itemId).orElse(null);
+        // Блокировка строки до конца транзакции, как в BulkItemStatusService.lockItems: иначе два
+        // одновременных запроса оба сочтут позицию невыкупленной и дважды уменьшат счётчики выкупа
+        OrderItem item = orderItemRepository.findForUpdate(itemId).orElse(null);
         if (item == null) {
             return ResponseEntity.notFound().build();
         }
@@ -358,6 +468,9 @@ public class BatchCargoController {
         if (!List.of("PURCHASED", "NOT_PURCHASED").contains(status)) {
             return ResponseEntity.badRequest().body(null);
         }
+        String previousStatus = item.getPurchaseStatus();
+        boolean wasPending = !"PURCHASED".equals(previousStatus) && !"NOT_PURCHASED".equals(previousStatus);
+        long refundMinor = 0;
         item.setPurchaseStatus(status);
         if ("NOT_PURCHASED".equals(status)) {
             item.setPurchaseRefusalReason(request.getPurchaseRefusalReason());
@@ -366,6 +479,7 @@ public class BatchCargoController {
                 User user = order.getUser();
                 user.setBalance(user.getBalance() + item.getPriceAtTime() * item.getQuantity());
                 userRepository.save(user);
+                refundMinor = PricingEngine.toMinor(item.getPriceAtTime() * item.getQuantity());
             }
             User notificationUser = order.getUser();
             String productName = item.getProduct() != null ? item.getProduct().getName() :
@@ -378,29 +492,32 @@ public class BatchCargoController {
                     "ORDER_UPDATE"
             );
         }
-        orderItemRepository.save(item);
+        orderItemRepository.saveAndFlush(item);
+        BatchCargo itemBatch = item.getOrder().getBatchCargo();
+        if (itemBatch != null) {
+            BatchCargoStatsService.StatsDelta delta = new BatchCargoStatsService.StatsDelta();
+            float supplierPrice = item.getSupplierPrice() != null ? item.getSupplierPrice() : 0.0f;
+            delta.itemChanged(previousStatus, status, PricingEngine.toMinor(supplierPrice * item.getQuantity()), refundMinor);
+            batchCargoStatsService.apply(Map.of(itemBatch.getId(), delta));
+        }
+        if (!wasPending) {
+            // Смена PURCHASED <-> NOT_PURCHASED не влияет на готовность заказа
+            return ResponseEntity.ok().build();
+        }
+        // Счётчики вместо перечитывания всех позиций заказа и всех заказов груза
         Order order = item.getOrder();
-        boolean allItemsProcessed = order.getItems().stream().allMatch(i ->
-                "PURCHASED".equals(i.getPurchaseStatus()) || "NOT_PURCHASED".equals(i.getPurchaseStatus()));
-        if (allItemsProcessed) {
+        if (purchaseProgressService.onItemCompleted(order)) {
             order.setStatus("PROCESSED");
-            orderRepository.save(order);
+            orderRepository.saveAndFlush(order);
+            eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
             BatchCargo batch = order.getBatchCargo();
-            if (batch != null) {
-                boolean allOrdersProcessed = batch.getOrders().stream().allMatch(o -> "PROCESSED".equals(o.getStatus()));
-                if (allOrdersProcessed) {
-                    batch.setStatus("FINISHED");
-                    batchCargoRepository.save(batch);
-                    for (Order o : batch.getOrders()) {
-                        User user = o.getUser();
-                        notificationService.sendUserNotification(
-                                user,
-                                String.format("Сборный груз #%d завершён и готов к отправке.", batch.getId()),
-                                batch.getId(),
-                                "BATCH_UPDATE"
-                        );
-                    }
-                }
+            if (batch != null && purchaseProgressService.onOrderProcessed(batch) && "UNFINISHED".equals(batch.getStatus())) {
+                batch.setStatus("FINISHED");
+                batchCargoRepository.save(batch);
+                notificationDispatcher.schedule(
+                        batch.getId(),
+                        String.format("Сборный груз #%d завершён и готов к отправке.", batch.getId()),
+                        "BATCH_UPDATE", null, null);
             }
         }
         return ResponseEntity.ok().build();
@@ -417,6 +534,101 @@ public class BatchCargoController {
         return dto;
     }
 
+    private BatchCargoSummaryDTO summarizeBatchCargo(Long batchId, String userEmail) {
+        BatchCargoSummaryDTO summary = new BatchCargoSummaryDTO();
+        Map<String, Long> ordersByStatus = new LinkedHashMap<>();
+        long orderCount = 0;
+        double totalWeight = 0;
+        for (Object[] row : orderRepository.summarizeBatchCargoOrders(batchId, userEmail)) {
+            long count = ((Number) row[1]).longValue();
+            ordersByStatus.put((String) row[0], count);
+            orderCount += count;
+            totalWeight += ((Number) row[2]).doubleValue();
+        }
+        Map<String, Long> itemsByPurchaseStatus = new LinkedHashMap<>();
+        for (Object[] row : orderRepository.summarizeBatchCargoItems(batchId, userEmail)) {
+            itemsByPurchaseStatus.put(row[0] != null ? (String) row[0] : "PENDING", ((Number) row[1]).longValue());
+        }
+        summary.setOrderCount(orderCount);
+        summary.setOrdersByStatus(ordersByStatus);
+        summary.setItemsByPurchaseStatus(itemsByPurchaseStatus);
+        summary.setTotalWeight((float) totalWeight);
+        return summary;
+    }
+
+    private BatchCargoPageDTO buildBatchCargoPage(BatchCargo batchCargo, BatchCargoSummaryDTO summary, String userEmail,
+                                                  String purchaseStatus, int page, int size) {
+        String statusFilter = purchaseStatus != null && !purchaseStatus.isBlank() && !"ALL".equals(purchaseStatus) ? purchaseStatus : null;
+        String userFilter = userEmail != null && !userEmail.isBlank() ? userEmail : null;
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, 100)));
+        Page<Long> idPage = orderRepository.findIdsByBatchCargo(batchCargo.getId(), userFilter, statusFilter, pageable);
+
+        Map<Long, OrderDTO> orders = new LinkedHashMap<>();
+        if (!idPage.isEmpty()) {
+            for (BatchCargoItemRow row : orderRepository.findBatchCargoItemRows(idPage.getContent(), statusFilter)) {
+                OrderDTO orderDTO = orders.computeIfAbsent(row.getOrderId(), orderId -> mapRowToOrderDTO(row));
+                if (row.getItemId() != null) {
+                    orderDTO.getItems().add(mapRowToOrderItemDTO(row));
+                }
+            }
+        }
+
+        BatchCargoPageDTO dto = new BatchCargoPageDTO();
+        dto.setId(batchCargo.getId());
+        dto.setCreationDate(batchCargo.getCreationDate());
+        dto.setPurchaseDate(batchCargo.getPurchaseDate());
+        dto.setStatus(batchCargo.getStatus());
+        dto.setReasonRefusal(batchCargo.getReasonRefusal());
+        dto.setPhotoUrl(batchCargo.getPhotoUrl());
+        dto.setDescription(batchCargo.getDescription());
+        dto.setSummary(summary);
+        dto.setOrders(new PagedResponse<>(
+                List.copyOf(orders.values()),
+                idPage.getNumber(),
+                idPage.getSize(),
+                idPage.getTotalElements(),
+                idPage.getTotalPages(),
+                idPage.isLast()
+        ));
+        return dto;
+    }
+
+    private OrderDTO mapRowToOrderDTO(BatchCargoItemRow row) {
+        OrderDTO dto = new OrderDTO();
+        dto.setId(row.getOrderId());
+        dto.setOrderNumber(row.getOrderNumber());
+        dto.setDateCreated(row.getDateCreated());
+        dto.setStatus(row.getStatus());
+        dto.setTotalClientPrice(row.getTotalClientPrice());
+        dto.setDeliveryAddress(row.getDeliveryAddress());
+        dto.setReasonRefusal(row.getReasonRefusal());
+        dto.setUserEmail(row.getUserEmail());
+        dto.setItems(new ArrayList<>());
+        return dto;
+    }
+
+    private OrderItemDTO mapRowToOrderItemDTO(BatchCargoItemRow row) {
+        OrderItemDTO itemDTO = new OrderItemDTO();
+        itemDTO.setId(row.getItemId());
+        itemDTO.setQuantity(row.getQuantity());
+        itemDTO.setPriceAtTime(row.getPriceAtTime());
+        itemDTO.setSupplierPrice(row.getSupplierPrice());
+        itemDTO.setPurchaseStatus(row.getPurchaseStatus() != null ? row.getPurchaseStatus() : "PENDING");
+        itemDTO.setPurchaseRefusalReason(row.getPurchaseRefusalReason());
+        itemDTO.setTrackingNumber(row.getTrackingNumber());
+        boolean isSelfPickup = row.getTotalClientPrice() != null && row.getTotalClientPrice() == 0;
+        if (isSelfPickup || row.getProductId() == null) {
+            itemDTO.setProductName(row.getTrackingNumber() != null ? "Self-Pickup: " + row.getTrackingNumber() : "Unknown");
+        } else {
+            itemDTO.setProductId(row.getProductId());
+            itemDTO.setProductName(row.getProductName());
+            itemDTO.setUrl(row.getUrl());
+            itemDTO.setImageUrl(row.getImageUrl() != null ? row.getImageUrl() : "https://placehold.co/128x128?text=No+Image");
+            itemDTO.setDescription(row.getDescription());
+        }
+        return itemDTO;
+    }
+
     private OrderDTO mapToOrderDTO(Order order) {
         OrderDTO dto = new OrderDTO();
         dto.setId(order.getId());
@@ -474,6 +686,8 @@ public class BatchCargoController {
         private String status;
         private String photoUrl;
         private String description;
+        // Задание рассылки клиентам, если изменение статуса её запустило
+        private String dispatchJobId;
     }
 
     @Data
@@ -481,6 +695,16 @@ public class BatchCargoController {
         private Date purchaseDate;
         private String photoUrl;
         private String description;
+        // Необязательный состав груза из /plan; без него берутся все заказы по дату закупки
+        private List<Long> orderIds;
+    }
+
+    @Data
+    static class PlanRequest {
+        private Float maxWeight;
+        private Float maxPrice;
+        // Только заказы, созданные по эту дату включительно
+        private Date purchaseDate;
     }
 
     @Data
@@ -495,6 +719,27 @@ public class BatchCargoController {
         private List<OrderDTO> orders;
     }
 
+    @Data
+    static class BatchCargoSummaryDTO {
+        private long orderCount;
+        private Map<String, Long> ordersByStatus;
+        private Map<String, Long> itemsByPurchaseStatus;
+        private Float totalWeight;
+    }
+
+    @Data
+    static class BatchCargoPageDTO {
+        private Long id;
+        private Timestamp creationDate;
+        private Timestamp purchaseDate;
+        private String status;
+        private String reasonRefusal;
+        private String photoUrl;
+        private String description;
+        private BatchCargoSummaryDTO summary;
+        private PagedResponse<OrderDTO> orders;
+    }
+
     @Data
     static class UpdateBatchCargoRequest {
         private String photoUrl;
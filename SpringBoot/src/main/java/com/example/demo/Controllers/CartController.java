@@ -1,30 +1,32 @@
 package com.example.demo.Controllers;
 
+import com.example.demo.Components.CartMerger;
 import com.example.demo.DTO.CartItemDTO;
 import com.example.demo.Entities.*;
-import com.example.demo.Repositories.CartRepository;
+import com.example.demo.POJO.OrderChangedEvent;
+import com.example.demo.POJO.ProductChangedEvent;
 import com.example.demo.Repositories.OrderRepository;
 import com.example.demo.Repositories.ProductRepository;
 import com.example.demo.Repositories.PromocodeRepository;
 import com.example.demo.Repositories.UserRepository;
+import com.example.demo.Services.CartStoreService;
 import com.example.demo.Services.UserService;
+import jakarta.persistence.EntityManager;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import java.sql.Timestamp;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
-
-    @Autowired
-    private CartRepository cartRepository;
+    private static final int MAX_PATCH_OPERATIONS = 500;
+    private static final int MAX_BULK_PRODUCTS = 2000;
 
     @Autowired
     private ProductRepository productRepository;
@@ -41,173 +43,345 @@ public class CartController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CartStoreService cartStore;
+
+    @Autowired
+    private CartMerger cartMerger;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // ETag — версия корзины: опрос без изменений получает 304 после чтения одного поля в Redis
     @GetMapping
-    @Transactional(readOnly = true)
-    public ResponseEntity<List<CartItemDTO>> getCart() {
+    public ResponseEntity<List<CartItemDTO>> getCart(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         String userEmail = userService.getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
         }
-        Cart cart = cartRepository.findById(userEmail).orElseGet(() -> {
-            Cart newCart = new Cart();
-            newCart.setUserEmail(userEmail);
-            return cartRepository.save(newCart);
-        });
-        List<CartItemDTO> cartItems = cart.getItems().stream()
-                .map(item -> {
-                    CartItemDTO dto = new CartItemDTO();
-                    dto.setId(item.getId());
-                    dto.setImageUrl(item.getProduct().getImageUrl());
-                    dto.setProductId(item.getProduct().getId());
-                    dto.setProductName(item.getProduct().getName());
-                    dto.setPrice(item.getProduct().getPrice());
-                    dto.setQuantity(item.getQuantity());
-                    return dto;
-                })
+        if (ifNoneMatch != null) {
+            Long version = cartStore.getVersion(userEmail);
+            if (version != null && matchesETag(ifNoneMatch, cartETag(version))) {
+                return ResponseEntity.status(304).eTag(cartETag(version)).build();
+            }
+        }
+        CartStoreService.CartState cart = reprice(userEmail, cartStore.getCart(userEmail));
+        return ResponseEntity.ok().eTag(cartETag(cart.getVersion())).body(toDTOs(cart.getLines()));
+    }
+
+    // Позиция хранит снимок товара на момент добавления. Полное чтение сверяет его с MySQL: изменившиеся
+    // позиции обновляются, позиции удалённых товаров убираются — в Redis с новой версией, т.е. с новым ETag
+    private CartStoreService.CartState reprice(String userEmail, CartStoreService.CartState cart) {
+        if (cart.getLines().isEmpty()) {
+            return cart;
+        }
+        Set<String> checked = cart.getLines().stream()
+                .map(CartStoreService.CartLine::getProductId)
+                .collect(Collectors.toSet());
+        Map<String, Product> products = productRepository.findAllById(checked).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+        if (cart.getLines().stream().noneMatch(line -> isStale(line, products.get(line.getProductId())))) {
+            return cart;
+        }
+        try {
+            return cartStore.apply(userEmail, cart.getVersion(), lines -> refreshLines(lines, checked, products));
+        } catch (CartStoreService.VersionConflictException e) {
+            // Корзину изменили параллельно: отдаём сверенный снимок, Redis обновит следующее чтение
+            Map<String, CartStoreService.CartLine> lines = new LinkedHashMap<>();
+            cart.getLines().forEach(line -> lines.put(line.getProductId(), line));
+            refreshLines(lines, checked, products);
+            return new CartStoreService.CartState(cart.getVersion(), new ArrayList<>(lines.values()));
+        }
+    }
+
+    private boolean isStale(CartStoreService.CartLine line, Product product) {
+        return product == null
+                || !Objects.equals(line.getPrice(), product.getPrice())
+                || !Objects.equals(line.getProductName(), product.getName())
+                || !Objects.equals(line.getImageUrl(), product.getImageUrl());
+    }
+
+    // Позиции, добавленные после чтения товаров (не из checked), не трогаются
+    private void refreshLines(Map<String, CartStoreService.CartLine> lines, Set<String> checked, Map<String, Product> products) {
+        Iterator<CartStoreService.CartLine> iterator = lines.values().iterator();
+        while (iterator.hasNext()) {
+            CartStoreService.CartLine line = iterator.next();
+            if (!checked.contains(line.getProductId())) {
+                continue;
+            }
+            Product product = products.get(line.getProductId());
+            if (product == null) {
+                iterator.remove();
+                continue;
+            }
+            line.setPrice(product.getPrice());
+            line.setProductName(product.getName());
+            line.setImageUrl(product.getImageUrl());
+        }
+    }
+
+    // Точечные изменения корзины: add / remove / set. В ответе только затронутые позиции и новая версия
+    @PatchMapping
+    public ResponseEntity<?> patchCart(@RequestBody CartPatchRequest request) {
+        String userEmail = userService.getCurrentUserEmail();
+        if (userEmail == null) {
+            return ResponseEntity.status(403).body(null);
+        }
+        if (request.getOperations() == null || request.getOperations().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Список операций пуст", "status", 400));
+        }
+        if (request.getOperations().size() > MAX_PATCH_OPERATIONS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Не более " + MAX_PATCH_OPERATIONS + " операций за запрос", "status", 400));
+        }
+        for (CartOperation operation : request.getOperations()) {
+            if (operation.getProductId() == null || !List.of("add", "remove", "set").contains(operation.getOp())) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Некорректная операция: " + operation.getOp(), "status", 400));
+            }
+        }
+
+        // Товары для новых позиций читаются из MySQL одним запросом до изменения корзины
+        Set<String> inCart = cartStore.getLines(userEmail).stream()
+                .map(CartStoreService.CartLine::getProductId)
+                .collect(Collectors.toSet());
+        List<String> missingIds = request.getOperations().stream()
+                .filter(operation -> !operation.getOp().equals("remove"))
+                .map(CartOperation::getProductId)
+                .filter(productId -> !inCart.contains(productId))
+                .distinct()
                 .collect(Collectors.toList());
-        return ResponseEntity.ok(cartItems);
+        Map<String, Product> newProducts = productRepository.findAllById(missingIds).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+
+        Set<String> touched = new LinkedHashSet<>();
+        CartStoreService.CartState cart;
+        try {
+            cart = cartStore.apply(userEmail, request.getVersion(), lines -> {
+                touched.clear();
+                for (CartOperation operation : request.getOperations()) {
+                    touched.add(operation.getProductId());
+                    applyOperation(lines, operation, newProducts);
+                }
+            });
+        } catch (CartStoreService.VersionConflictException e) {
+            return ResponseEntity.status(409)
+                    .eTag(cartETag(e.getCurrentVersion()))
+                    .body(Map.of("message", e.getMessage(), "status", 409, "version", e.getCurrentVersion()));
+        }
+
+        Map<String, CartStoreService.CartLine> byProduct = cart.getLines().stream()
+                .collect(Collectors.toMap(CartStoreService.CartLine::getProductId, line -> line));
+        CartPatchResponse response = new CartPatchResponse();
+        response.setVersion(cart.getVersion());
+        response.setUpdated(toDTOs(touched.stream()
+                .map(byProduct::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())));
+        response.setRemoved(touched.stream()
+                .filter(productId -> !byProduct.containsKey(productId))
+                .collect(Collectors.toList()));
+        return ResponseEntity.ok().eTag(cartETag(cart.getVersion())).body(response);
+    }
+
+    private void applyOperation(Map<String, CartStoreService.CartLine> lines, CartOperation operation,
+                                Map<String, Product> newProducts) {
+        String productId = operation.getProductId();
+        if (operation.getOp().equals("remove")) {
+            lines.remove(productId);
+            return;
+        }
+        int quantity = operation.getQuantity() != null ? operation.getQuantity() : 1;
+        if (operation.getOp().equals("set") && quantity <= 0) {
+            lines.remove(productId);
+            return;
+        }
+        CartStoreService.CartLine line = lines.get(productId);
+        if (line == null) {
+            Product product = newProducts.computeIfAbsent(productId, id -> productRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Продукт с ID " + id + " не найден")));
+            lines.put(productId, CartStoreService.toLine(product, Math.max(1, quantity)));
+        } else if (operation.getOp().equals("add")) {
+            line.setQuantity(Math.max(1, line.getQuantity() + quantity));
+        } else {
+            line.setQuantity(quantity);
+        }
+    }
+
+    private String cartETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private boolean matchesETag(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    // Пачка товаров из расширения браузера: один findAllById, вставка новых товаров пачками,
+    // обновление только изменившихся и одна запись корзины в Redis
     @PostMapping("/bulk-add")
     @Transactional
-    public ResponseEntity<List<CartItemDTO>> addBulkToCart(@RequestBody List<Product> products) {
+    public ResponseEntity<?> addBulkToCart(@RequestBody List<Product> products) {
         String userEmail = userService.getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
         }
+        if (products == null || products.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Список товаров пуст", "status", 400));
+        }
+        if (products.size() > MAX_BULK_PRODUCTS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Не более " + MAX_BULK_PRODUCTS + " товаров за запрос", "status", 400));
+        }
+        if (products.stream().anyMatch(product -> product.getId() == null)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "У каждого товара должен быть id", "status", 400));
+        }
 
-        Cart cart = cartRepository.findById(userEmail).orElseGet(() -> {
-            Cart newCart = new Cart();
-            newCart.setUserEmail(userEmail);
-            return cartRepository.save(newCart);
-        });
-
-        List<Product> savedProducts = products.stream().map(product -> {
-            product.setStatus("PENDING");
-            product.setLastUpdated(new Timestamp(System.currentTimeMillis()));
-            return productRepository.save(product);
-        }).collect(Collectors.toList());
-
-        for (Product product : savedProducts) {
-            if (!cart.getItems().stream().anyMatch(item -> item.getProduct().getId().equals(product.getId()))) {
-                CartItem cartItem = new CartItem();
-                cartItem.setCart(cart);
-                cartItem.setProduct(product);
-                cartItem.setQuantity(1);
-                cart.getItems().add(cartItem);
+        Map<String, Product> incoming = cartMerger.dedupe(products);
+        Map<String, Product> stored = productRepository.findAllById(incoming.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Product> cartProducts = new ArrayList<>(incoming.size());
+        List<String> changedIds = new ArrayList<>();
+        int created = 0;
+        int refreshed = 0;
+        for (Product product : incoming.values()) {
+            Product existing = stored.get(product.getId());
+            if (existing == null) {
+                // persist, а не save: для товара с заданным id save делает лишний SELECT перед INSERT
+                product.setStatus("PENDING");
+                product.setLastUpdated(now);
+                entityManager.persist(product);
+                cartProducts.add(product);
+                changedIds.add(product.getId());
+                created++;
+            } else {
+                // Неизменившийся товар не трогаем: статус проверенного товара сохраняется
+                if (cartMerger.differs(existing, product)) {
+                    existing.setName(product.getName());
+                    existing.setUrl(product.getUrl());
+                    existing.setPrice(product.getPrice());
+                    existing.setImageUrl(product.getImageUrl());
+                    existing.setDescription(product.getDescription());
+                    existing.setStatus("PENDING");
+                    existing.setLastUpdated(now);
+                    changedIds.add(existing.getId());
+                    refreshed++;
+                }
+                cartProducts.add(existing);
             }
         }
-        cartRepository.save(cart);
+        // Ошибки вставки всплывают до записи в Redis: корзина не сошлётся на несохранённый товар
+        entityManager.flush();
+        if (!changedIds.isEmpty()) {
+            eventPublisher.publishEvent(new ProductChangedEvent(changedIds));
+        }
 
-        List<CartItemDTO> cartItems = cart.getItems().stream()
-                .map(item -> {
-                    CartItemDTO dto = new CartItemDTO();
-                    dto.setId(item.getId());
-                    dto.setProductId(item.getProduct().getId());
-                    dto.setProductName(item.getProduct().getName());
-                    dto.setPrice(item.getProduct().getPrice());
-                    dto.setQuantity(item.getQuantity());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(cartItems);
+        // Одна запись корзины: новые позиции и обновлённые цены уже лежащих в ней изменившихся товаров
+        Set<String> changed = new HashSet<>(changedIds);
+        int[] added = {0};
+        CartStoreService.CartState cart = cartStore.apply(userEmail, null, lines -> {
+            cartMerger.refreshChanged(lines, cartProducts, changed);
+            added[0] = cartMerger.addMissing(lines, cartProducts);
+        });
+
+        BulkAddResponse response = new BulkAddResponse();
+        response.setVersion(cart.getVersion());
+        response.setAdded(added[0]);
+        response.setAlreadyInCart(cartProducts.size() - added[0]);
+        response.setCreatedProducts(created);
+        response.setUpdatedProducts(refreshed);
+        response.setCartSize(cart.getLines().size());
+        return ResponseEntity.ok().eTag(cartETag(cart.getVersion())).body(response);
     }
 
     @PutMapping
-    @Transactional
     public ResponseEntity<?> updateCart(@RequestBody List<CartItemRequest> items) {
         String userEmail = userService.getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
         }
 
-        Cart cart = cartRepository.findById(userEmail).orElseGet(() -> {
-            Cart newCart = new Cart();
-            newCart.setUserEmail(userEmail);
-            return cartRepository.save(newCart);
-        });
-
         if (items == null || items.isEmpty()) {
-            return ResponseEntity.ok(cart.getItems().stream()
-                    .map(item -> {
-                        CartItemDTO dto = new CartItemDTO();
-                        dto.setId(item.getId());
-                        dto.setProductId(item.getProduct().getId());
-                        dto.setProductName(item.getProduct().getName());
-                        dto.setPrice(item.getProduct().getPrice());
-                        dto.setQuantity(item.getQuantity());
-                        return dto;
-                    })
-                    .collect(Collectors.toList()));
+            return ResponseEntity.ok(toDTOs(cartStore.getLines(userEmail)));
         }
-
-        Map<String, CartItem> existingItems = cart.getItems().stream()
-                .collect(Collectors.toMap(item -> item.getProduct().getId(), item -> item));
-
-        for (CartItemRequest request : items) {
-            if (request.getProductId() == null) {
-                return ResponseEntity.badRequest().body(null);
-            }
-            CartItem cartItem = existingItems.get(request.getProductId());
-            if (cartItem == null) {
-                cartItem = new CartItem();
-                cartItem.setCart(cart);
-                cartItem.setProduct(productRepository.findById(request.getProductId())
-                        .orElseThrow(() -> new RuntimeException("Продукт с ID " + request.getProductId() + " не найден")));
-                cart.getItems().add(cartItem);
-            }
-            cartItem.setQuantity(request.getQuantity() != null ? Math.max(1, request.getQuantity()) : 1);
-            existingItems.remove(request.getProductId());
+        if (items.stream().anyMatch(request -> request.getProductId() == null)) {
+            return ResponseEntity.badRequest().body(null);
         }
 
-        cartRepository.save(cart);
+        // Из MySQL читаются только товары, которых ещё нет в корзине
+        Set<String> inCart = cartStore.getLines(userEmail).stream()
+                .map(CartStoreService.CartLine::getProductId)
+                .collect(Collectors.toSet());
+        List<String> missingIds = items.stream()
+                .map(CartItemRequest::getProductId)
+                .filter(productId -> !inCart.contains(productId))
+                .distinct()
+                .collect(Collectors.toList());
+        Map<String, Product> newProducts = productRepository.findAllById(missingIds).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+
+        cartStore.update(userEmail, cart -> {
+            for (CartItemRequest request : items) {
+                int quantity = request.getQuantity() != null ? Math.max(1, request.getQuantity()) : 1;
+                CartStoreService.CartLine line = cart.get(request.getProductId());
+                if (line == null) {
+                    Product product = newProducts.computeIfAbsent(request.getProductId(), productId ->
+                            productRepository.findById(productId)
+                                    .orElseThrow(() -> new RuntimeException("Продукт с ID " + productId + " не найден")));
+                    line = CartStoreService.toLine(product, quantity);
+                    cart.put(product.getId(), line);
+                }
+                line.setQuantity(quantity);
+            }
+        });
 
         return ResponseEntity.ok().build();
     }
 
     @DeleteMapping("/remove/{productId}")
-    @Transactional
     public ResponseEntity<List<CartItemDTO>> removeFromCart(@PathVariable String productId) {
         String userEmail = userService.getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
         }
 
-        Cart cart = cartRepository.findById(userEmail).orElseThrow(() -> new RuntimeException("Корзина не найдена"));
-        cart.getItems().removeIf(item -> item.getProduct().getId().equals(productId));
-        cartRepository.save(cart);
-
-        List<CartItemDTO> cartItems = cart.getItems().stream()
-                .map(item -> {
-                    CartItemDTO dto = new CartItemDTO();
-                    dto.setId(item.getId());
-                    dto.setProductId(item.getProduct().getId());
-                    dto.setProductName(item.getProduct().getName());
-                    dto.setPrice(item.getProduct().getPrice());
-                    dto.setQuantity(item.getQuantity());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(cartItems);
+        return ResponseEntity.ok(toDTOs(cartStore.update(userEmail, cart -> cart.remove(productId))));
     }
 
     @DeleteMapping("/clear")
-    @Transactional
     public ResponseEntity<Void> clearCart() {
         String userEmail = userService.getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).build();
         }
 
-        Cart cart = cartRepository.findById(userEmail).orElseThrow(() -> new RuntimeException("Корзина не найдена"));
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        cartStore.update(userEmail, Map::clear);
         return ResponseEntity.ok().build();
     }
 
-
-
-
+    private List<CartItemDTO> toDTOs(List<CartStoreService.CartLine> lines) {
+        return lines.stream()
+                .map(line -> {
+                    CartItemDTO dto = new CartItemDTO();
+                    dto.setImageUrl(line.getImageUrl());
+                    dto.setProductId(line.getProductId());
+                    dto.setProductName(line.getProductName());
+                    dto.setPrice(line.getPrice());
+                    dto.setQuantity(line.getQuantity());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
 
     @PostMapping("/submit-order")
     @Transactional
@@ -218,12 +392,24 @@ public class CartController {
         }
 
         try {
-            // Step 1: Get the cart
-            Cart cart = cartRepository.findById(userEmail)
-                    .orElseThrow(() -> new RuntimeException("Корзина не найдена"));
-            if (cart.getItems().isEmpty()) {
+            // Step 1: Get the cart (Redis — видны все только что сделанные изменения), цены — из MySQL
+            CartStoreService.CartState cart = cartStore.getCart(userEmail);
+            List<CartStoreService.CartLine> cartLines = cart.getLines();
+            if (cartLines.isEmpty()) {
                 return ResponseEntity.badRequest().body(new OrderResponse("Корзина пуста"));
             }
+            Map<String, Product> products = productRepository.findAllById(cartLines.stream()
+                            .map(CartStoreService.CartLine::getProductId)
+                            .collect(Collectors.toList())).stream()
+                    .collect(Collectors.toMap(Product::getId, product -> product));
+            if (products.size() < cartLines.size()) {
+                return ResponseEntity.badRequest().body(new OrderResponse("Некоторых товаров из корзины больше нет в каталоге"));
+            }
+            // Заказ считается по ценам MySQL; если корзина показывала другие, пользователь сначала видит новые
+            if (cartLines.stream().anyMatch(line -> !Objects.equals(line.getPrice(), products.get(line.getProductId()).getPrice()))) {
+                reprice(userEmail, cart);
+                return ResponseEntity.status(409).body(new OrderResponse("Цены товаров в корзине изменились, проверьте корзину"));
+            }
 
             // Step 2: Validate delivery address
             String deliveryAddress = request.getDeliveryAddress();
@@ -244,8 +430,8 @@ public class CartController {
             order.setStatus("PENDING");
 
             // Calculate total price before discounts
-            float totalClientPrice = (float) cart.getItems().stream()
-                    .mapToDouble(item -> item.getProduct().getPrice() * item.getQuantity())
+            float totalClientPrice = (float) cartLines.stream()
+                    .mapToDouble(line -> products.get(line.getProductId()).getPrice() * line.getQuantity())
                     .sum();
             float userDiscountAmount = 0.0f;
             float promocodeDiscountAmount = 0.0f;
@@ -291,19 +477,21 @@ public class CartController {
             order.setDeliveryAddress(deliveryAddress);
 
             // Step 5: Create and link OrderItems
-            List<OrderItem> orderItems = cart.getItems().stream()
-                    .map(cartItem -> {
+            List<OrderItem> orderItems = cartLines.stream()
+                    .map(line -> {
+                        Product product = products.get(line.getProductId());
                         OrderItem orderItem = new OrderItem();
                         orderItem.setOrder(order);
-                        orderItem.setProduct(cartItem.getProduct());
-                        orderItem.setQuantity(cartItem.getQuantity());
-                        orderItem.setPriceAtTime(cartItem.getProduct().getPrice());
+                        orderItem.setProduct(product);
+                        orderItem.setQuantity(line.getQuantity());
+                        orderItem.setPriceAtTime(product.getPrice());
                         return orderItem;
                     })
                     .collect(Collectors.toList());
 
             order.setItems(orderItems);
             orderRepository.save(order);
+            eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
 
             // Step 6: Update product statuses to VERIFIED
             List<Product> productsToUpdate = order.getItems().stream()
@@ -314,10 +502,10 @@ public class CartController {
                     })
                     .collect(Collectors.toList());
             productRepository.saveAll(productsToUpdate);
+            eventPublisher.publishEvent(new ProductChangedEvent(new ArrayList<>(products.keySet())));
 
-            // Step 7: Clear the cart
-            cart.getItems().clear();
-            cartRepository.save(cart);
+            // Step 7: Clear the cart — после коммита, чтобы откат заказа не потерял корзину
+            cartStore.removeAfterCommit(userEmail, products.keySet());
 
             // Step 8: Prepare response
             OrderResponse response = new OrderResponse();
@@ -343,6 +531,37 @@ class CartItemRequest {
     private Double price;
 }
 
+@Data
+class CartPatchRequest {
+    // Версия корзины, от которой считались изменения; null — применить к текущей
+    private Long version;
+    private List<CartOperation> operations;
+}
+
+@Data
+class CartOperation {
+    private String op;
+    private String productId;
+    private Integer quantity;
+}
+
+@Data
+class CartPatchResponse {
+    private long version;
+    private List<CartItemDTO> updated;
+    private List<String> removed;
+}
+
+@Data
+class BulkAddResponse {
+    private long version;
+    private int added;
+    private int alreadyInCart;
+    private int createdProducts;
+    private int updatedProducts;
+    private int cartSize;
+}
+
 @Data
 class SubmitOrderRequest {
     private String deliveryAddress;
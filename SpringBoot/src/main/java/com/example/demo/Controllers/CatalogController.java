@@ -1,8 +1,10 @@
 package com.example.demo.Controllers;
 
+import com.example.demo.Components.ProductSearchIndex;
 import com.example.demo.Entities.Catalog;
 import com.example.demo.Entities.Product;
 import com.example.demo.Repositories.CatalogRepository;
+import com.example.demo.Services.ProductSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -26,6 +28,9 @@ public class CatalogController {
     @Autowired
     private CatalogRepository catalogRepository;
 
+    @Autowired
+    private ProductSearchService productSearchService;
+
     @GetMapping
     public ResponseEntity<?> getCatalog(
             @RequestParam(defaultValue = "0") int page,
@@ -35,6 +40,19 @@ public class CatalogController {
             @RequestParam(required = false) Float maxPrice,
             @RequestParam(required = false) String sortBy) {
 
+        // Поиск по индексу в памяти с ранжированием; пока индекс строится после старта — прежние запросы к БД
+        if (productSearchService.isReady()) {
+            ProductSearchIndex.Query query = new ProductSearchIndex.Query();
+            query.setText(searchTerm);
+            query.setMinPrice(minPrice);
+            query.setMaxPrice(maxPrice);
+            query.setSort(sortBy);
+            query.setCatalogOnly(true);
+            query.setOffset(page * size);
+            query.setLimit(size);
+            return ResponseEntity.ok(productSearchService.search(query));
+        }
+
         // Настройка пагинации и сортировки
         Pageable pageable = PageRequest.of(page, size);
         if (sortBy != null) {
@@ -11,7 +11,6 @@ import com.example.demo.Services.ChatService;
 import lombok.Data;
 import nonapi.io.github.classgraph.json.JSONUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -36,7 +35,6 @@ public class ChatController {
 
     private final ChatService chatService;
     private final SimpMessagingTemplate messagingTemplate;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
 
 
 
@@ -46,10 +44,9 @@ public class ChatController {
     @Autowired
     private TicketRepository ticketRepository;
 
-    public ChatController(ChatService chatService, SimpMessagingTemplate messagingTemplate, KafkaTemplate<String, Object> kafkaTemplate) {
+    public ChatController(ChatService chatService, SimpMessagingTemplate messagingTemplate) {
         this.chatService = chatService;
         this.messagingTemplate = messagingTemplate;
-        this.kafkaTemplate = kafkaTemplate;
     }
 
 
@@ -81,17 +78,9 @@ public class ChatController {
         message.setMessage(dto.getMessage());
         message.setTicket(ticket);
 
-        ChatMessage saved = chatService.saveMessage(message);
-        SupportMessageEvent event = new SupportMessageEvent(receiver, ticketId, sender.getUsername());
-        kafkaTemplate.send("support", event.getUser().getEmail(), event)
-                .whenComplete((result, ex) -> {
-                    if (ex == null) {
-                        System.out.println("Событие отправлено в Kafka: ticketId=" + ticketId +
-                                ", receiver=" + receiver.getEmail());
-                    } else {
-                        System.err.println("Ошибка отправки в Kafka: " + ex.getMessage());
-                    }
-                });
+        // Сообщение и событие для Kafka сохраняются одной транзакцией (outbox)
+        ChatMessage saved = chatService.saveMessageWithEvent(message,
+                new SupportMessageEvent(receiver, ticketId, sender.getUsername()));
         // Рассылаем в topic тикета (оба участника подписаны)
         messagingTemplate.convertAndSend("/topic/ticket/" + ticketId, saved);
     }
@@ -0,0 +1,88 @@
+package com.example.demo.Controllers;
+
+import com.example.demo.Services.OrderExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/admin/export")
+public class ExportController {
+
+    @Autowired
+    private OrderExportService orderExportService;
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/orders")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return export(OrderExportService.Source.ORDERS, "orders", format, gzip, status, from, to);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/order-history")
+    public ResponseEntity<?> exportOrderHistory(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return export(OrderExportService.Source.HISTORY, "order-history", format, gzip, status, from, to);
+    }
+
+    private ResponseEntity<?> export(OrderExportService.Source source, String fileName, String format, boolean gzip,
+                                     String status, LocalDate from, LocalDate to) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Формат должен быть ndjson или csv", "status", 400));
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Дата начала позже даты окончания", "status", 400));
+        }
+        List<String> statuses = status == null || status.equals("ALL") ? List.of() :
+                Arrays.stream(status.split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = gzip ? new GZIPOutputStream(outputStream, 64 * 1024) : outputStream;
+            if (csv) {
+                orderExportService.exportCsv(source, statuses, from, to, out);
+            } else {
+                orderExportService.exportNdjson(source, statuses, from, to, out);
+            }
+            if (out instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) out).finish();
+            }
+            out.flush();
+        };
+
+        String extension = csv ? ".csv" : ".ndjson";
+        MediaType contentType = csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/x-ndjson");
+        if (gzip) {
+            extension += ".gz";
+            contentType = MediaType.parseMediaType("application/gzip");
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + extension + "\"")
+                .contentType(contentType)
+                .body(body);
+    }
+}
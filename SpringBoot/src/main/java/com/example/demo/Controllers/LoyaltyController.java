@@ -9,11 +9,11 @@ import com.example.demo.Entities.QuestConditionType;
 import com.example.demo.POJO.QuestEvent;
 import com.example.demo.Repositories.QuestProgressRepository;
 import com.example.demo.Repositories.QuestRepository;
+import com.example.demo.Services.OutboxService;
 import com.example.demo.Services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -35,7 +35,7 @@ public class LoyaltyController {
     private QuestRepository questRepository;
 
     @Autowired
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private OutboxService outboxService;
 
     @Autowired
     private QuestProgressRepository questProgressRepository;
@@ -164,7 +164,7 @@ public class LoyaltyController {
         userService.saveUser(user);
         userService.saveUser(referrer);
         QuestEvent questEvent = new QuestEvent(referrer.getEmail(), QuestConditionType.INVITE);
-        kafkaTemplate.send("quest", questEvent.getUserEmail(), questEvent);
+        outboxService.enqueue("quest", questEvent.getUserEmail(), questEvent);
         logger.info("Referral activated for user: " + email + ", referrer: " + referrer.getEmail());
 
         return ResponseEntity.ok("Referral activated successfully");
@@ -0,0 +1,31 @@
+package com.example.demo.Controllers;
+
+import com.example.demo.Services.OrderArchiveService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/archive")
+public class OrderArchiveController {
+
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/status")
+    public ResponseEntity<OrderArchiveService.ArchiveStatus> getStatus() {
+        return ResponseEntity.ok(orderArchiveService.getStatus());
+    }
+
+    // Внеочередной запуск архиватора, не дожидаясь расписания
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/run")
+    public ResponseEntity<?> run() {
+        orderArchiveService.archivePending();
+        return ResponseEntity.ok(Map.of("message", "Архивация выполнена"));
+    }
+}
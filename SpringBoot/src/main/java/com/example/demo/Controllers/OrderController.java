@@ -1,26 +1,39 @@
 package com.example.demo.Controllers;
 
+import com.example.demo.Components.KeysetCursor;
+import com.example.demo.Components.PricingEngine;
 import com.example.demo.Entities.*;
+import com.example.demo.POJO.OrderChangedEvent;
 import com.example.demo.POJO.OrderStatusEvent;
+import com.example.demo.POJO.ProductChangedEvent;
 import com.example.demo.Repositories.*;
+import com.example.demo.Services.BatchCargoStatsService;
+import com.example.demo.Services.CartStoreService;
+import com.example.demo.Services.IdempotencyService;
 import com.example.demo.Services.NotificationService;
+import com.example.demo.Services.OrderArchiveService;
+import com.example.demo.Services.OutboxService;
+import com.example.demo.Services.PricingService;
+import com.example.demo.Services.PurchaseProgressService;
+import com.example.demo.Services.SelfPickupImportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 import lombok.Data;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @RestController
@@ -30,9 +43,6 @@ public class OrderController {
     @Autowired
     private OrderRepository orderRepository;
 
-    @Autowired
-    private CartRepository cartRepository;
-
     @Autowired
     private ProductRepository productRepository;
 
@@ -48,24 +58,62 @@ public class OrderController {
     @Autowired
     private NotificationService notificationService;
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
 
-    public OrderController(KafkaTemplate<String, Object> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
-    }
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private PricingService pricingService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private PurchaseProgressService purchaseProgressService;
+
+    @Autowired
+    private BatchCargoStatsService batchCargoStatsService;
+
+    @Autowired
+    private SelfPickupImportService selfPickupImportService;
+
+    @Autowired
+    private CartStoreService cartStore;
 
+    // Транзакция открывается только при реальном выполнении: повтор по Idempotency-Key не трогает MySQL
     @PostMapping("/orders")
-    @Transactional
-    public ResponseEntity<OrderDTO> createOrder(@RequestBody CreateOrderRequest request) {
+    public ResponseEntity<OrderDTO> createOrder(@RequestBody CreateOrderRequest request,
+                                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         String userEmail = getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
         }
+        return idempotencyService.execute("create-order", userEmail, idempotencyKey, request, OrderDTO.class,
+                () -> transactionTemplate.execute(status -> doCreateOrder(userEmail, request)));
+    }
 
-        Cart cart = cartRepository.findById(userEmail)
-                .orElseThrow(() -> new RuntimeException("Корзина не найдена"));
-
-        if (cart.getItems().isEmpty()) {
+    private ResponseEntity<OrderDTO> doCreateOrder(String userEmail, CreateOrderRequest request) {
+        // Корзина читается из Redis: в заказ попадает всё, что пользователь успел в неё записать
+        List<CartStoreService.CartLine> cartLines = cartStore.getLines(userEmail);
+        if (cartLines.isEmpty()) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        Map<String, Product> products = productRepository.findAllById(cartLines.stream()
+                        .map(CartStoreService.CartLine::getProductId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+        if (products.size() < cartLines.size()) {
             return ResponseEntity.badRequest().body(null);
         }
 
@@ -77,21 +125,22 @@ public class OrderController {
         order.setOrderNumber(UUID.randomUUID().toString());
         order.setDateCreated(new Timestamp(System.currentTimeMillis()));
         order.setStatus("PENDING");
-        order.setTotalClientPrice((float) cart.getItems().stream()
-                .mapToDouble(item -> item.getProduct().getPrice() * item.getQuantity())
+        order.setTotalClientPrice((float) cartLines.stream()
+                .mapToDouble(line -> products.get(line.getProductId()).getPrice() * line.getQuantity())
                 .sum());
         order.setDeliveryAddress(request.getDeliveryAddress());
         order.setDiscountType(request.getDiscountType());
         order.setDiscountValue(request.getDiscountValue());
         order.setInsurance(request.getInsurance() != null ? request.getInsurance() : false);
 
-        List<OrderItem> orderItems = cart.getItems().stream()
-                .map(cartItem -> {
+        List<OrderItem> orderItems = cartLines.stream()
+                .map(line -> {
+                    Product product = products.get(line.getProductId());
                     OrderItem orderItem = new OrderItem();
                     orderItem.setOrder(order);
-                    orderItem.setProduct(cartItem.getProduct());
-                    orderItem.setQuantity(cartItem.getQuantity());
-                    orderItem.setPriceAtTime(cartItem.getProduct().getPrice());
+                    orderItem.setProduct(product);
+                    orderItem.setQuantity(line.getQuantity());
+                    orderItem.setPriceAtTime(product.getPrice());
                     orderItem.setPurchaseStatus("PENDING");
                     return orderItem;
                 })
@@ -99,9 +148,9 @@ public class OrderController {
 
         order.setItems(orderItems);
         orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
 
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        cartStore.removeAfterCommit(userEmail, products.keySet());
 
         OrderDTO orderDTO = mapToOrderDTO(order);
         return ResponseEntity.ok(orderDTO);
@@ -115,7 +164,7 @@ public class OrderController {
             return ResponseEntity.status(403).body(null);
         }
 
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findDetailedById(id)
                 .orElseThrow(() -> new RuntimeException("Заказ с ID " + id + " не найден"));
 
         boolean isAdmin = SecurityContextHolder.getContext().getAuthentication()
@@ -133,17 +182,23 @@ public class OrderController {
 
     @GetMapping("/orders")
     @Transactional(readOnly = true)
-    public ResponseEntity<PagedResponse<OrderDTO>> getOrders(
+    public ResponseEntity<?> getOrders(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "dateCreated,desc") String sort,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor) {
 
         String userEmail = getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
         }
 
+        // Курсорный режим (cursor= для первой страницы): сортировка всегда dateCreated,id DESC, без count(*)
+        if (cursor != null) {
+            return getOrdersByCursor(userEmail, cursor, size, status);
+        }
+
         String[] sortParams = sort.split(",");
         String sortField = sortParams[0];
         Sort.Direction sortDirection = sortParams.length > 1 && sortParams[1].equalsIgnoreCase("desc")
@@ -179,6 +234,7 @@ public class OrderController {
             }
         }
 
+        prefetchItems(orderPage.getContent());
         List<OrderDTO> orderDTOs = orderPage.getContent().stream()
                 .map(this::mapToOrderDTO)
                 .collect(Collectors.toList());
@@ -195,6 +251,55 @@ public class OrderController {
         return ResponseEntity.ok(response);
     }
 
+    private ResponseEntity<?> getOrdersByCursor(String userEmail, String cursor, int size, String status) {
+        KeysetCursor position;
+        try {
+            position = KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Некорректный курсор", 400));
+        }
+        int limit = Math.max(1, Math.min(size, 100));
+        // Запрашиваем на одну запись больше, чтобы узнать, есть ли следующая страница
+        Pageable pageable = PageRequest.ofSize(limit + 1);
+
+        boolean isAdmin = SecurityContextHolder.getContext().getAuthentication()
+                .getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+
+        List<Order> orders;
+        if (status != null && !status.equals("ALL")) {
+            List<String> statuses = List.of(status.split(","));
+            if (!isAdmin) {
+                orders = statuses.size() > 1
+                        ? orderRepository.findKeysetByUserEmailAndStatusNotIn(userEmail, statuses, position.getDateCreated(), position.getId(), pageable)
+                        : orderRepository.findKeysetByUserEmailAndStatusIn(userEmail, statuses, position.getDateCreated(), position.getId(), pageable);
+            } else {
+                orders = orderRepository.findKeysetByStatusIn(statuses, position.getDateCreated(), position.getId(), pageable);
+            }
+        } else {
+            List<String> finished = List.of("REFUSED", "RECEIVED");
+            if (!isAdmin) {
+                orders = orderRepository.findKeysetByUserEmailAndStatusNotIn(userEmail, finished, position.getDateCreated(), position.getId(), pageable);
+            } else {
+                orders = orderRepository.findKeysetByStatusNotIn(finished, position.getDateCreated(), position.getId(), pageable);
+            }
+        }
+
+        boolean last = orders.size() <= limit;
+        List<Order> pageContent = last ? orders : orders.subList(0, limit);
+        String nextCursor = null;
+        if (!last) {
+            Order tail = pageContent.get(pageContent.size() - 1);
+            nextCursor = new KeysetCursor(tail.getDateCreated(), tail.getId()).encode();
+        }
+
+        prefetchItems(pageContent);
+        List<OrderDTO> orderDTOs = pageContent.stream()
+                .map(this::mapToOrderDTO)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(new CursorPagedResponse<>(orderDTOs, limit, nextCursor, last));
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("/orders/{id}")
     @Transactional
@@ -209,17 +314,128 @@ public class OrderController {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Заказ с ID " + id + " не найден"));
 
+        Map<String, Product> products = loadProducts(List.of(orderDetails));
+        String validationError = validateVerification(order, orderDetails, products);
+        if (validationError != null) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(validationError, 400));
+        }
+
+        Set<String> catalogProductIds = loadCatalogProductIds(products.keySet());
+        List<String> newCatalogProductIds = new ArrayList<>();
+        List<OrderStatusEvent> events = new ArrayList<>();
+
+        applyVerification(order, orderDetails, products, catalogProductIds, newCatalogProductIds);
+        insertCatalogEntries(newCatalogProductIds);
+        eventPublisher.publishEvent(new ProductChangedEvent(new ArrayList<>(products.keySet())));
+        finishVerification(order, events);
+        publishOrderStatusEvents(events);
+
+        return ResponseEntity.ok(mapToOrderDTO(order));
+    }
+
+    // Массовая верификация: товары, каталог и заказы загружаются пачками, запись идёт JDBC-батчами
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/orders/verify-bulk")
+    @Transactional
+    public ResponseEntity<?> verifyOrdersBulk(@RequestBody List<OrderDTO> ordersDetails) {
+        if (ordersDetails == null || ordersDetails.isEmpty()) {
+            return ResponseEntity.badRequest().body(new ErrorResponse("Список заказов пуст", 400));
+        }
+
+        List<Long> ids = ordersDetails.stream()
+                .map(OrderDTO::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Order> orders = orderRepository.findAllForVerification(ids).stream()
+                .collect(Collectors.toMap(Order::getId, order -> order));
+        Map<String, Product> products = loadProducts(ordersDetails);
+        Set<String> catalogProductIds = loadCatalogProductIds(products.keySet());
+        List<String> newCatalogProductIds = new ArrayList<>();
+        List<OrderStatusEvent> events = new ArrayList<>();
+
+        BulkVerifyResponse response = new BulkVerifyResponse();
+        Set<Long> seen = new HashSet<>();
+        for (OrderDTO orderDetails : ordersDetails) {
+            Long id = orderDetails.getId();
+            if (id == null || !seen.add(id)) {
+                response.getFailed().add(new BulkVerifyError(id, "Не указан ID заказа или заказ повторяется в запросе"));
+                continue;
+            }
+            Order order = orders.get(id);
+            if (order == null) {
+                response.getFailed().add(new BulkVerifyError(id, "Заказ с ID " + id + " не найден"));
+                continue;
+            }
+            String validationError = validateVerification(order, orderDetails, products);
+            if (validationError != null) {
+                response.getFailed().add(new BulkVerifyError(id, validationError));
+                continue;
+            }
+            applyVerification(order, orderDetails, products, catalogProductIds, newCatalogProductIds);
+            finishVerification(order, events);
+            response.getVerified().add(mapToOrderDTO(order));
+        }
+
+        insertCatalogEntries(newCatalogProductIds);
+        eventPublisher.publishEvent(new ProductChangedEvent(new ArrayList<>(products.keySet())));
+        publishOrderStatusEvents(events);
+        return ResponseEntity.ok(response);
+    }
+
+    // Проверка запроса до каких-либо изменений заказа; null — если всё корректно
+    private String validateVerification(Order order, OrderDTO orderDetails, Map<String, Product> products) {
         if (orderDetails.getTotalClientPrice() != null && orderDetails.getTotalClientPrice() < 0) {
-            System.out.println("Validation failed: totalClientPrice is negative");
-            return ResponseEntity.badRequest().body(new ErrorResponse("Общая цена для клиента должна быть больше 0", 400));
+            return "Общая цена для клиента должна быть больше 0";
         }
         if (orderDetails.getDeliveryAddress() == null || orderDetails.getDeliveryAddress().trim().isEmpty()) {
-            System.out.println("Validation failed: deliveryAddress is null or empty");
-            return ResponseEntity.badRequest().body(new ErrorResponse("Адрес доставки обязателен", 400));
+            return "Адрес доставки обязателен";
+        }
+        if (orderDetails.getItems() != null) {
+            for (OrderItemDTO itemDTO : orderDetails.getItems()) {
+                if (itemDTO.getProductId() == null) {
+                    return "Product ID cannot be null for order item";
+                }
+                String productId = normalizeProductId(itemDTO.getProductId());
+                if (productId == null || !products.containsKey(productId)) {
+                    return "Product with ID " + itemDTO.getProductId() + " not found";
+                }
+            }
+        }
+        if (computePricing(order, orderDetails).isNegative()) {
+            return "Скидка превышает стоимость заказа";
         }
+        return null;
+    }
+
+    // Пересчёт totalClientPrice через PricingEngine без изменения заказа
+    private PricingEngine.PricingResult computePricing(Order order, OrderDTO orderDetails) {
+        boolean fromRequest = orderDetails.getItems() != null && !orderDetails.getItems().isEmpty();
+        int itemCount = fromRequest ? orderDetails.getItems().size() : order.getItems().size();
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(itemCount);
+        if (fromRequest) {
+            for (OrderItemDTO item : orderDetails.getItems()) {
+                input.addItem(PricingEngine.toMinor(item.getPriceAtTime()), item.getQuantity() != null ? item.getQuantity() : 1);
+            }
+        } else {
+            for (OrderItem item : order.getItems()) {
+                input.addItem(PricingEngine.toMinor(item.getPriceAtTime()), item.getQuantity() != null ? item.getQuantity() : 1);
+            }
+        }
+        input.userDiscountBps(pricingService.userDiscountBps(order.getUser()))
+                .insurance(orderDetails.getInsurance() != null && orderDetails.getInsurance())
+                .currentAmounts(PricingEngine.toMinor(orderDetails.getUserDiscountApplied()),
+                        PricingEngine.toMinor(order.getDiscountApplied()),
+                        PricingEngine.toMinor(orderDetails.getInsuranceCost()));
+        pricingService.applyPromocode(input, order.getPromocode(), LocalDateTime.now());
+        return pricingEngine.price(input);
+    }
+
+    private void applyVerification(Order order, OrderDTO orderDetails, Map<String, Product> products,
+                                   Set<String> catalogProductIds, List<String> newCatalogProductIds) {
+        PricingEngine.PricingResult pricing = computePricing(order, orderDetails);
 
         // Обновление полей заказа
-        order.setTotalClientPrice(orderDetails.getTotalClientPrice());
         order.setSupplierCost(orderDetails.getSupplierCost() != null ? orderDetails.getSupplierCost() : 0.0f);
         order.setCustomsDuty(orderDetails.getCustomsDuty() != null ? orderDetails.getCustomsDuty() : 0.0f);
         order.setShippingCost(orderDetails.getShippingCost() != null ? orderDetails.getShippingCost() : 0.0f);
@@ -230,71 +446,15 @@ public class OrderController {
         order.setInsurance(orderDetails.getInsurance() != null ? orderDetails.getInsurance() : false);
         order.setDiscountType(orderDetails.getDiscountType());
         order.setDiscountValue(orderDetails.getDiscountValue());
-        order.setInsuranceCost(orderDetails.getInsuranceCost() != null ? orderDetails.getInsuranceCost() : 0.0f);
-        order.setUserDiscountApplied(orderDetails.getUserDiscountApplied() != null ? orderDetails.getUserDiscountApplied() : 0.0f);
-
-        // Пересчёт totalClientPrice
-        float totalClientPrice = 0.0f;
-        float userDiscountAmount = order.getUserDiscountApplied() != null ? order.getUserDiscountApplied() : 0.0f;
-        float promocodeDiscountAmount = order.getDiscountApplied() != null ? order.getDiscountApplied() : 0.0f;
-        float insuranceCost = order.getInsuranceCost() != null ? order.getInsuranceCost() : 0.0f;
-
-        if (orderDetails.getItems() != null && !orderDetails.getItems().isEmpty()) {
-            totalClientPrice = (float) orderDetails.getItems().stream()
-                    .mapToDouble(item -> (item.getPriceAtTime() != null ? item.getPriceAtTime() : 0.0f) * (item.getQuantity() != null ? item.getQuantity() : 1))
-                    .sum();
-        } else {
-            totalClientPrice = (float) order.getItems().stream()
-                    .mapToDouble(item -> (item.getPriceAtTime() != null ? item.getPriceAtTime() : 0.0f) * (item.getQuantity() != null ? item.getQuantity() : 1))
-                    .sum();
-        }
-
-        // Применение скидок пользователя
-        User user = order.getUser();
-        if (user != null) {
-            user.verifyDiscount();
-            float userDiscountPercent = user.getTotalDiscount();
-            if (userDiscountPercent > 0) {
-                userDiscountAmount = totalClientPrice * (userDiscountPercent / 100);
-                order.setUserDiscountApplied(userDiscountAmount);
-            }
-        }
-
-        // Применение промокода
-        Promocode promocode = order.getPromocode();
-        if (promocode != null) {
-            if (!promocode.getIsActive() ||
-                    LocalDateTime.now().isBefore(promocode.getValidFrom()) ||
-                    LocalDateTime.now().isAfter(promocode.getValidUntil()) ||
-                    (promocode.getUsageLimit() != null && promocode.getUsedCount() >= promocode.getUsageLimit())) {
+        order.setInsuranceCost(PricingEngine.fromMinor(pricing.getInsuranceCost()));
+        order.setUserDiscountApplied(PricingEngine.fromMinor(pricing.getUserDiscount()));
+        if (order.getPromocode() != null) {
+            if (pricing.isPromoExpired()) {
                 order.setPromocode(null);
-                order.setDiscountApplied(0.0f);
-                promocodeDiscountAmount = 0.0f;
-            } else {
-                if (promocode.getDiscountType() == DiscountType.PERCENTAGE) {
-                    promocodeDiscountAmount = totalClientPrice * (promocode.getDiscountValue() / 100);
-                } else {
-                    promocodeDiscountAmount = promocode.getDiscountValue();
-                }
-                order.setDiscountApplied(promocodeDiscountAmount);
             }
+            order.setDiscountApplied(PricingEngine.fromMinor(pricing.getPromoDiscount()));
         }
-
-        // Применение страховки
-        boolean hasInsurance = order.getInsurance() != null && order.getInsurance();
-        if (hasInsurance) {
-            insuranceCost = totalClientPrice * 0.05f;
-            order.setInsuranceCost(insuranceCost);
-        }
-
-        float totalDiscountAmount = userDiscountAmount + promocodeDiscountAmount;
-        float finalPrice = totalClientPrice - totalDiscountAmount + insuranceCost;
-        if (finalPrice < 0) {
-            System.out.println("Validation failed: final price is negative");
-            return ResponseEntity.badRequest().body(new ErrorResponse("Скидка превышает стоимость заказа", 400));
-        }
-
-        order.setTotalClientPrice(finalPrice);
+        order.setTotalClientPrice(PricingEngine.fromMinor(pricing.getTotal()));
 
         // Обновление элементов заказа
         if (order.getItems() != null) {
@@ -302,15 +462,9 @@ public class OrderController {
         }
         if (orderDetails.getItems() != null) {
             for (OrderItemDTO itemDTO : orderDetails.getItems()) {
-                if (itemDTO.getProductId() == null) {
-                    System.out.println("Validation failed: productId is null for item " + itemDTO);
-                    return ResponseEntity.badRequest().body(new ErrorResponse("Product ID cannot be null for order item", 400));
-                }
-
-                Product product = productRepository.findById(String.valueOf(UUID.fromString(itemDTO.getProductId())))
-                        .orElseThrow(() -> new RuntimeException("Product with ID " + itemDTO.getProductId() + " not found"));
+                Product product = products.get(normalizeProductId(itemDTO.getProductId()));
 
-                // Обновление данных продукта
+                // Обновление данных продукта (сохраняется при flush, продукт управляемый)
                 if (itemDTO.getProductName() != null && !itemDTO.getProductName().equals(product.getName())) {
                     product.setName(itemDTO.getProductName());
                 }
@@ -323,7 +477,6 @@ public class OrderController {
                 if (itemDTO.getDescription() != null && !itemDTO.getDescription().equals(product.getDescription())) {
                     product.setDescription(itemDTO.getDescription());
                 }
-                productRepository.save(product);
 
                 OrderItem orderItem = new OrderItem();
                 orderItem.setOrder(order);
@@ -336,16 +489,17 @@ public class OrderController {
                 orderItem.setTrackingNumber(itemDTO.getTrackingNumber());
                 orderItem.setChinaDeliveryPrice(itemDTO.getChinaDeliveryPrice() != null ? itemDTO.getChinaDeliveryPrice() : 0.0f);
 
-                if (itemDTO.getProductId() != null && !catalogRepository.existsByProductId(itemDTO.getProductId())) {
-                    Catalog catalog = new Catalog();
-                    catalog.setProduct(product);
-                    catalogRepository.save(catalog);
+                if (catalogProductIds.add(product.getId())) {
+                    newCatalogProductIds.add(product.getId());
                 }
 
                 order.getItems().add(orderItem);
             }
         }
+    }
 
+    // Уведомления, пометка завершённых заказов и подготовка событий Kafka
+    private void finishVerification(Order order, List<OrderStatusEvent> events) {
         // Уведомления для невыкупленных товаров
         if (order.getItems() != null) {
             for (OrderItem item : order.getItems()) {
@@ -366,76 +520,89 @@ public class OrderController {
             }
         }
 
-        // Обработка завершённых заказов
-        if (order.getStatus().equals("REFUSED") || order.getStatus().equals("RECEIVED")) {
-            OrderHistory orderHistory = new OrderHistory();
-            orderHistory.setUser(order.getUser());
-            orderHistory.setOrderNumber(order.getOrderNumber());
-            orderHistory.setDateCreated(order.getDateCreated());
-            orderHistory.setStatus(order.getStatus());
-            orderHistory.setTotalClientPrice(order.getTotalClientPrice());
-            orderHistory.setDeliveryAddress(order.getDeliveryAddress());
-            orderHistory.setReasonRefusal(order.getReasonRefusal());
-            orderHistory.setSupplierCost(order.getSupplierCost());
-            orderHistory.setCustomsDuty(order.getCustomsDuty());
-            orderHistory.setShippingCost(order.getShippingCost());
-            orderHistory.setTrackingNumber(order.getTrackingNumber());
-            orderHistory.setInsurance(order.getInsurance());
-            orderHistory.setDiscountType(order.getDiscountType());
-            orderHistory.setDiscountValue(order.getDiscountValue());
-            orderHistory.setPromocode(order.getPromocode());
-            orderHistory.setItems(order.getItems().stream()
-                    .map(item -> {
-                        OrderItem historyItem = new OrderItem();
-                        historyItem.setOrderHistory(orderHistory);
-                        historyItem.setOrder(null);
-                        historyItem.setProduct(item.getProduct());
-                        historyItem.setQuantity(item.getQuantity());
-                        historyItem.setPriceAtTime(item.getPriceAtTime());
-                        historyItem.setSupplierPrice(item.getSupplierPrice());
-                        historyItem.setPurchaseStatus(item.getPurchaseStatus());
-                        historyItem.setPurchaseRefusalReason(item.getPurchaseRefusalReason());
-                        historyItem.setTrackingNumber(item.getTrackingNumber());
-                        historyItem.setChinaDeliveryPrice(item.getChinaDeliveryPrice());
-                        return historyItem;
-                    })
-                    .collect(Collectors.toList()));
-            orderHistoryRepository.save(orderHistory);
-
-            try {
-                if (order.getStatus().equals("REFUSED")) {
-                    notificationService.sendOrderStatusChangeNotification(order.getUser(), order.getId(), "REFUSED");
-                } else if (order.getStatus().equals("RECEIVED")) {
-                    notificationService.sendOrderStatusChangeNotification(order.getUser(), order.getId(), "RECEIVED");
+        // Завершённый заказ только помечается; перенос в order_history делает OrderArchiveService
+        if (OrderArchiveService.isFinished(order.getStatus())) {
+            if (order.getFinishedAt() == null) {
+                order.setFinishedAt(new Timestamp(System.currentTimeMillis()));
+                try {
+                    notificationService.sendOrderStatusChangeNotification(order.getUser(), order.getId(), order.getStatus());
+                } catch (Exception e) {
+                    System.out.println("Failed to send notification: " + e.getMessage());
                 }
-            } catch (Exception e) {
-                System.out.println("Failed to send notification: " + e.getMessage());
             }
-
-            orderRepository.delete(order);
         } else {
-            orderRepository.save(order);
+            order.setFinishedAt(null);
+        }
+        orderRepository.save(order);
+        if (order.getBatchCargo() != null) {
+            // Позиции заказа из груза переписаны целиком — счётчики выкупа и показатели груза пересчитываются
+            purchaseProgressService.resync(order);
+            batchCargoStatsService.recompute(order.getBatchCargo().getId());
         }
+        eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
 
         if (order.getStatus().equals("VERIFIED")) {
+            OrderStatusEvent event = new OrderStatusEvent(order);
+            event.getOrder().setUser(order.getUser());
+            events.add(event);
+        }
+    }
+
+    // События пишутся в outbox в транзакции верификации и уходят в Kafka через OutboxService.relay
+    private void publishOrderStatusEvents(List<OrderStatusEvent> events) {
+        for (OrderStatusEvent event : events) {
             try {
-                OrderStatusEvent event = new OrderStatusEvent(order);
-                event.getOrder().setUser(order.getUser());
-                kafkaTemplate.send("order-status", event.getOrder().getUser().getEmail(), event);
-            } catch (Exception e) {
-                System.out.println("Failed to send Kafka message: " + e.getMessage());
+                outboxService.enqueue("order-status", event.getOrder().getUser().getEmail(), event);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Failed to enqueue Kafka message: " + e.getMessage());
             }
         }
+    }
+
+    private Map<String, Product> loadProducts(List<OrderDTO> ordersDetails) {
+        Set<String> productIds = ordersDetails.stream()
+                .filter(details -> details.getItems() != null)
+                .flatMap(details -> details.getItems().stream())
+                .map(item -> normalizeProductId(item.getProductId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (productIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product));
+    }
+
+    private Set<String> loadCatalogProductIds(Set<String> productIds) {
+        if (productIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(catalogRepository.findProductIdsIn(productIds));
+    }
+
+    private void insertCatalogEntries(List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO catalog (product_id) VALUES (?)", productIds, 100,
+                (ps, productId) -> ps.setString(1, productId));
+    }
 
-        OrderDTO responseDTO = mapToOrderDTO(order);
-        System.out.println("Returning response: " + responseDTO);
-        return ResponseEntity.ok(responseDTO);
+    private String normalizeProductId(String productId) {
+        if (productId == null) {
+            return null;
+        }
+        try {
+            return String.valueOf(UUID.fromString(productId));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     // Новый эндпоинт для создания заказа с трек-номерами
     @PostMapping("/orders/self-pickup")
-    @Transactional
-    public ResponseEntity<OrderDTO> createSelfPickupOrder(@RequestBody SelfPickupOrderRequest request) {
+    public ResponseEntity<OrderDTO> createSelfPickupOrder(@RequestBody SelfPickupOrderRequest request,
+                                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         String userEmail = getCurrentUserEmail();
         if (userEmail == null) {
             return ResponseEntity.status(403).body(null);
@@ -446,6 +613,11 @@ public class OrderController {
             return ResponseEntity.badRequest().body(null);
         }
 
+        return idempotencyService.execute("create-self-pickup-order", userEmail, idempotencyKey, request, OrderDTO.class,
+                () -> transactionTemplate.execute(status -> doCreateSelfPickupOrder(userEmail, request)));
+    }
+
+    private ResponseEntity<OrderDTO> doCreateSelfPickupOrder(String userEmail, SelfPickupOrderRequest request) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
 
@@ -458,37 +630,74 @@ public class OrderController {
         order.setTotalClientPrice(0.0f); // Пока 0, так как цены неизвестны
         order.setDeliveryAddress(request.getDeliveryAddress());
 
-        // Создание OrderItem для каждого трек-номера
+        // Создание OrderItem для каждого трек-номера; все позиции ссылаются на общий товар-заглушку
+        Product placeholder = selfPickupImportService.getPlaceholderProduct();
         List<OrderItem> orderItems = request.getTrackingNumbers().stream()
-                .map(trackingNumber -> {
-                    OrderItem orderItem = new OrderItem();
-                    orderItem.setOrder(order);
-                    orderItem.setTrackingNumber(trackingNumber);
-                    orderItem.setPurchaseStatus("PENDING");
-                    orderItem.setQuantity(1); // По умолчанию 1, так как товар неизвестен
-                    orderItem.setPriceAtTime(0.0f); // Цена неизвестна
-
-                    // Create placeholder product
-                    Product placeholder = new Product();
-                    placeholder.setName("Self-Pickup Item: " + trackingNumber);
-                    placeholder.setPrice(0.0f);
-                    placeholder.setUrl(null);
-                    placeholder.setImageUrl("https://placehold.co/128x128?text=Pending");
-                    placeholder.setDescription("Placeholder product for self-pickup order with tracking number: " + trackingNumber);
-                    productRepository.save(placeholder);
-                    orderItem.setProduct(placeholder);
-
-                    return orderItem;
-                })
+                .map(trackingNumber -> SelfPickupImportService.newItem(order, placeholder, trackingNumber))
                 .collect(Collectors.toList());
 
         order.setItems(orderItems);
         orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
 
         OrderDTO orderDTO = mapToOrderDTO(order);
         return ResponseEntity.ok(orderDTO);
     }
 
+    // Массовый импорт трек-номеров (корпоративные клиенты): JSON-массив в теле запроса
+    @PostMapping(value = "/orders/self-pickup/import", consumes = "application/json")
+    public ResponseEntity<SelfPickupImportService.ImportResult> importSelfPickupOrder(
+            @RequestBody SelfPickupOrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return doImportSelfPickupOrder(request.getTrackingNumbers(), request.getDeliveryAddress(), idempotencyKey);
+    }
+
+    // Тот же импорт из CSV: первый столбец каждой строки — трек-номер, строка заголовка пропускается
+    @PostMapping(value = "/orders/self-pickup/import", consumes = {"text/csv", "text/plain"})
+    public ResponseEntity<SelfPickupImportService.ImportResult> importSelfPickupOrderCsv(
+            @RequestBody String csv,
+            @RequestParam(required = false) String deliveryAddress,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return doImportSelfPickupOrder(parseTrackingCsv(csv), deliveryAddress, idempotencyKey);
+    }
+
+    private ResponseEntity<SelfPickupImportService.ImportResult> doImportSelfPickupOrder(List<String> trackingNumbers,
+                                                                                         String deliveryAddress,
+                                                                                         String idempotencyKey) {
+        String userEmail = getCurrentUserEmail();
+        if (userEmail == null) {
+            return ResponseEntity.status(403).body(null);
+        }
+        if (trackingNumbers == null || trackingNumbers.isEmpty()
+                || trackingNumbers.size() > SelfPickupImportService.MAX_TRACKING_NUMBERS) {
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        // JSON- и CSV-импорт сравниваются по одним и тем же данным
+        return idempotencyService.execute("import-self-pickup-order", userEmail, idempotencyKey,
+                Arrays.asList(trackingNumbers, deliveryAddress), SelfPickupImportService.ImportResult.class, () -> {
+                    SelfPickupImportService.ImportResult result =
+                            selfPickupImportService.importOrder(userEmail, trackingNumbers, deliveryAddress);
+                    // Все трек-номера оказались повторами — заказ не создан
+                    return result.getOrderId() != null ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+                });
+    }
+
+    private List<String> parseTrackingCsv(String csv) {
+        List<String> trackingNumbers = new ArrayList<>();
+        if (csv == null) {
+            return trackingNumbers;
+        }
+        String[] lines = csv.split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            String value = lines[i].split("[,;\\t]", 2)[0].trim().replace("\"", "");
+            if (value.isEmpty() || (i == 0 && value.toLowerCase().startsWith("tracking"))) {
+                continue;
+            }
+            trackingNumbers.add(value);
+        }
+        return trackingNumbers;
+    }
 
     @GetMapping("/history/{id}")
     @Transactional(readOnly = true)
@@ -550,6 +759,15 @@ public class OrderController {
         return ResponseEntity.ok(orderDTO);
     }
 
+    // Одним запросом инициализирует items и product у заказов страницы (они уже в persistence context),
+    // чтобы mapToOrderDTO не делал ленивых загрузок на каждый заказ и товар
+    private void prefetchItems(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        orderRepository.fetchItemsWithProducts(orders.stream().map(Order::getId).collect(Collectors.toList()));
+    }
+
     private OrderDTO mapToOrderDTO(Order order) {
         OrderDTO orderDTO = new OrderDTO();
         orderDTO.setId(order.getId());
@@ -690,6 +908,23 @@ public class OrderController {
     }
 
 
+    @Data
+    static class BulkVerifyResponse {
+        private List<OrderDTO> verified = new ArrayList<>();
+        private List<BulkVerifyError> failed = new ArrayList<>();
+    }
+
+    @Data
+    static class BulkVerifyError {
+        private Long id;
+        private String message;
+
+        public BulkVerifyError(Long id, String message) {
+            this.id = id;
+            this.message = message;
+        }
+    }
+
     @Data
     static class ErrorResponse {
         private String message;
@@ -719,4 +954,19 @@ public class OrderController {
             this.last = last;
         }
     }
+
+    @Data
+    static class CursorPagedResponse<T> {
+        private List<T> content;
+        private int size;
+        private String nextCursor;
+        private boolean last;
+
+        public CursorPagedResponse(List<T> content, int size, String nextCursor, boolean last) {
+            this.content = content;
+            this.size = size;
+            this.nextCursor = nextCursor;
+            this.last = last;
+        }
+    }
 }
\ No newline at end of file
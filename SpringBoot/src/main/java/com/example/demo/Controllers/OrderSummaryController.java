@@ -0,0 +1,134 @@
+package com.example.demo.Controllers;
+
+import com.example.demo.Components.ContextHolder;
+import com.example.demo.Components.KeysetCursor;
+import com.example.demo.Entities.OrderSummary;
+import com.example.demo.Repositories.OrderSummaryRepository;
+import com.example.demo.Services.OrderSummaryService;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/orders/summary")
+public class OrderSummaryController {
+
+    @Autowired
+    private OrderSummaryRepository orderSummaryRepository;
+
+    @Autowired
+    private OrderSummaryService orderSummaryService;
+
+    // Лёгкий список заказов из проекции order_summary: без join'ов и без count(*)
+    @GetMapping
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getOrderSummaries(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String status) {
+        String userEmail = ContextHolder.getCurrentUserEmail();
+        if (userEmail == null) {
+            return ResponseEntity.status(403).body(null);
+        }
+
+        KeysetCursor position;
+        try {
+            position = KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Некорректный курсор", "status", 400));
+        }
+        int limit = Math.max(1, Math.min(size, 100));
+        Pageable pageable = PageRequest.ofSize(limit + 1);
+
+        boolean isAdmin = SecurityContextHolder.getContext().getAuthentication()
+                .getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+
+        List<OrderSummary> rows;
+        if (status != null && !status.equals("ALL")) {
+            List<String> statuses = List.of(status.split(","));
+            if (!isAdmin) {
+                rows = orderSummaryRepository.findKeysetByUserEmailAndStatusIn(userEmail, statuses, position.getDateCreated(), position.getId(), pageable);
+            } else {
+                rows = orderSummaryRepository.findKeysetByStatusIn(statuses, position.getDateCreated(), position.getId(), pageable);
+            }
+        } else {
+            List<String> finished = List.of("REFUSED", "RECEIVED");
+            if (!isAdmin) {
+                rows = orderSummaryRepository.findKeysetByUserEmailAndStatusNotIn(userEmail, finished, position.getDateCreated(), position.getId(), pageable);
+            } else {
+                rows = orderSummaryRepository.findKeysetByStatusNotIn(finished, position.getDateCreated(), position.getId(), pageable);
+            }
+        }
+
+        boolean last = rows.size() <= limit;
+        List<OrderSummary> pageContent = last ? rows : rows.subList(0, limit);
+        String nextCursor = null;
+        if (!last) {
+            OrderSummary tail = pageContent.get(pageContent.size() - 1);
+            nextCursor = new KeysetCursor(tail.getDateCreated(), tail.getOrderId()).encode();
+        }
+
+        OrderSummaryPageDTO response = new OrderSummaryPageDTO();
+        response.setContent(pageContent.stream().map(this::mapToDTO).collect(Collectors.toList()));
+        response.setSize(limit);
+        response.setNextCursor(nextCursor);
+        response.setLast(last);
+        return ResponseEntity.ok(response);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/rebuild")
+    public ResponseEntity<?> rebuild() {
+        int rows = orderSummaryService.rebuild();
+        return ResponseEntity.ok(Map.of("count", rows, "message", "Проекция пересобрана"));
+    }
+
+    private OrderSummaryDTO mapToDTO(OrderSummary summary) {
+        OrderSummaryDTO dto = new OrderSummaryDTO();
+        dto.setId(summary.getOrderId());
+        dto.setOrderNumber(summary.getOrderNumber());
+        dto.setDateCreated(summary.getDateCreated());
+        dto.setStatus(summary.getStatus());
+        dto.setTotalClientPrice(summary.getTotalClientPrice());
+        dto.setItemsTotal(summary.getItemsTotal());
+        dto.setItemCount(summary.getItemCount());
+        dto.setFirstItemImageUrl(summary.getFirstItemImageUrl() != null ? summary.getFirstItemImageUrl() : "https://placehold.co/128x128?text=No+Image");
+        dto.setBatchCargoId(summary.getBatchCargoId());
+        dto.setUserEmail(summary.getUserEmail());
+        return dto;
+    }
+
+    @Data
+    static class OrderSummaryDTO {
+        private Long id;
+        private String orderNumber;
+        private Timestamp dateCreated;
+        private String status;
+        private Float totalClientPrice;
+        private Float itemsTotal;
+        private Integer itemCount;
+        private String firstItemImageUrl;
+        private Long batchCargoId;
+        private String userEmail;
+    }
+
+    @Data
+    static class OrderSummaryPageDTO {
+        private List<OrderSummaryDTO> content;
+        private int size;
+        private String nextCursor;
+        private boolean last;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.Controllers;
+
+import com.example.demo.Components.ContextHolder;
+import com.example.demo.Components.PricingEngine;
+import com.example.demo.Entities.Product;
+import com.example.demo.Entities.Promocode;
+import com.example.demo.Entities.User;
+import com.example.demo.Repositories.ProductRepository;
+import com.example.demo.Repositories.PromocodeRepository;
+import com.example.demo.Repositories.UserRepository;
+import com.example.demo.Services.PricingService;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/pricing")
+public class PricingController {
+    private static final int MAX_QUOTES = 500;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private PricingService pricingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PromocodeRepository promocodeRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // Пакетный расчёт итогов для корзин/заказов: без записи в БД, данные подгружаются пачкой
+    @PostMapping("/quote")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> quote(@RequestBody List<QuoteRequest> requests) {
+        String userEmail = ContextHolder.getCurrentUserEmail();
+        if (userEmail == null) {
+            return ResponseEntity.status(403).body(null);
+        }
+        if (requests == null || requests.isEmpty() || requests.size() > MAX_QUOTES) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Количество расчётов должно быть от 1 до " + MAX_QUOTES, "status", 400));
+        }
+
+        User user = userRepository.findByEmail(userEmail).orElse(null);
+        int userDiscountBps = pricingService.userDiscountBps(user);
+
+        Set<String> codes = requests.stream()
+                .map(QuoteRequest::getPromocode)
+                .filter(code -> code != null && !code.isBlank())
+                .collect(Collectors.toSet());
+        Map<String, Promocode> promocodes = codes.isEmpty() ? Map.of() :
+                promocodeRepository.findByCodeIn(codes).stream()
+                        .collect(Collectors.toMap(Promocode::getCode, Function.identity()));
+
+        // Цена из каталога нужна только для позиций, где клиент её не передал
+        Set<String> productIds = requests.stream()
+                .filter(request -> request.getItems() != null)
+                .flatMap(request -> request.getItems().stream())
+                .filter(item -> item.getPrice() == null && item.getProductId() != null)
+                .map(QuoteItem::getProductId)
+                .collect(Collectors.toSet());
+        Map<String, Product> products = productIds.isEmpty() ? Map.of() :
+                productRepository.findAllById(productIds).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(16);
+        PricingEngine.PricingResult result = new PricingEngine.PricingResult();
+        List<QuoteResponse> responses = new ArrayList<>(requests.size());
+        for (QuoteRequest request : requests) {
+            QuoteResponse response = new QuoteResponse();
+            response.setRef(request.getRef());
+            responses.add(response);
+
+            input.reset().userDiscountBps(userDiscountBps)
+                    .insurance(request.getInsurance() != null && request.getInsurance());
+            String error = fillItems(input, request, products);
+            if (error != null) {
+                response.setError(error);
+                continue;
+            }
+
+            if (request.getPromocode() != null && !request.getPromocode().isBlank()) {
+                Promocode promocode = promocodes.get(request.getPromocode());
+                if (promocode == null || (promocode.getUserEmail() != null && !promocode.getUserEmail().equals(userEmail))) {
+                    response.setPromocodeValid(false);
+                } else {
+                    pricingService.applyPromocode(input, promocode, now);
+                    response.setPromocodeValid(pricingService.isPromocodeValid(promocode, now));
+                }
+            }
+
+            pricingEngine.price(input, result);
+            response.setSubtotal(PricingEngine.fromMinor(result.getSubtotal()));
+            response.setUserDiscount(PricingEngine.fromMinor(result.getUserDiscount()));
+            response.setPromocodeDiscount(PricingEngine.fromMinor(result.getPromoDiscount()));
+            response.setInsuranceCost(PricingEngine.fromMinor(result.getInsuranceCost()));
+            response.setTotal(PricingEngine.fromMinor(result.getTotal()));
+            if (result.isNegative()) {
+                response.setError("Скидка превышает стоимость заказа");
+            }
+        }
+        return ResponseEntity.ok(responses);
+    }
+
+    private String fillItems(PricingEngine.PricingInput input, QuoteRequest request, Map<String, Product> products) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return "Список товаров пуст";
+        }
+        for (QuoteItem item : request.getItems()) {
+            int quantity = item.getQuantity() != null ? item.getQuantity() : 1;
+            if (quantity <= 0) {
+                return "Количество должно быть больше 0";
+            }
+            Float price = item.getPrice();
+            if (price == null) {
+                Product product = item.getProductId() != null ? products.get(item.getProductId()) : null;
+                if (product == null || product.getPrice() == null) {
+                    return "Не удалось определить цену товара " + item.getProductId();
+                }
+                price = product.getPrice();
+            }
+            if (price < 0) {
+                return "Цена не может быть отрицательной";
+            }
+            input.addItem(PricingEngine.toMinor(price), quantity);
+        }
+        return null;
+    }
+
+    @Data
+    static class QuoteRequest {
+        private String ref;
+        private List<QuoteItem> items;
+        private String promocode;
+        private Boolean insurance;
+    }
+
+    @Data
+    static class QuoteItem {
+        private String productId;
+        private Float price;
+        private Integer quantity;
+    }
+
+    @Data
+    static class QuoteResponse {
+        private String ref;
+        private Float subtotal;
+        private Float userDiscount;
+        private Float promocodeDiscount;
+        private Float insuranceCost;
+        private Float total;
+        private Boolean promocodeValid;
+        private String error;
+    }
+}
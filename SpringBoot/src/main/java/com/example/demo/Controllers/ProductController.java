@@ -1,9 +1,16 @@
 package com.example.demo.Controllers;
 
+import com.example.demo.Components.ProductSearchIndex;
+import com.example.demo.Components.ProductSimilarityIndex;
+import com.example.demo.DTO.SimilarProductDTO;
 import com.example.demo.Entities.Product;
+import com.example.demo.POJO.ProductChangedEvent;
 import com.example.demo.Repositories.ProductRepository;
 import com.example.demo.Services.ClusteringService;
+import com.example.demo.Services.ProductSearchService;
+import com.example.demo.Services.ProductSimilarityService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,11 +29,18 @@ import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/api")
 public class ProductController {
+    private static final int SIMILAR_PRODUCTS_LIMIT = 4;
 
     @Autowired
     private ProductRepository repository;
     @Autowired
     private ClusteringService clusteringService;
+    @Autowired
+    private ProductSearchService productSearchService;
+    @Autowired
+    private ProductSimilarityService productSimilarityService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @PostMapping("/products")
     public ResponseEntity<?> saveProduct(@RequestBody Product product) {
@@ -45,6 +60,7 @@ public class ProductController {
 
         product.setLastUpdated(new Timestamp(System.currentTimeMillis()));
         repository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(List.of(product.getId())));
         return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", product.getId(), "message", "Продукт сохранен"));
     }
 
@@ -65,6 +81,7 @@ public class ProductController {
             return ResponseEntity.badRequest().body("Нет валидных товаров для сохранения");
         }
         repository.saveAll(validProducts); // Массовое сохранение для оптимизации
+        eventPublisher.publishEvent(new ProductChangedEvent(validProducts.stream().map(Product::getId).collect(Collectors.toList())));
         return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("count", validProducts.size(), "message", "Товары сохранены"));
     }
 
@@ -82,6 +99,7 @@ public class ProductController {
         }
         products.forEach(p -> p.setStatus(status));
         repository.saveAll(products); // Массовое обновление
+        eventPublisher.publishEvent(new ProductChangedEvent(products.stream().map(Product::getId).collect(Collectors.toList())));
         return ResponseEntity.ok(Map.of("count", products.size(), "message", "Статусы обновлены"));
     }
 
@@ -94,6 +112,19 @@ public class ProductController {
             @RequestParam(required = false) Float maxPrice,
             @RequestParam(required = false) String sortBy) {
 
+        // Поиск по индексу в памяти; пока индекс строится после старта — прежние запросы к БД
+        if (productSearchService.isReady()) {
+            ProductSearchIndex.Query query = new ProductSearchIndex.Query();
+            query.setText(searchTerm);
+            query.setMinPrice(minPrice);
+            query.setMaxPrice(maxPrice);
+            query.setSort(sortBy);
+            query.setVerifiedOnly(true);
+            query.setOffset(page * size);
+            query.setLimit(size);
+            return ResponseEntity.ok(productSearchService.search(query));
+        }
+
         Pageable pageable = PageRequest.of(page, size);
         if (sortBy != null) {
             switch (sortBy) {
@@ -143,7 +174,7 @@ public class ProductController {
     }
 
     @GetMapping("/products/similar/{id}")
-    public ResponseEntity<List<Product>> getSimilarProducts(@PathVariable String id) {
+    public ResponseEntity<List<SimilarProductDTO>> getSimilarProducts(@PathVariable String id) {
         Product product = repository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Продукт с ID " + id + " не найден"));
 
@@ -151,6 +182,11 @@ public class ProductController {
             return ResponseEntity.ok(List.of());
         }
 
+        if (productSimilarityService.isReady()) {
+            return ResponseEntity.ok(productSimilarityService.findSimilar(product, SIMILAR_PRODUCTS_LIMIT));
+        }
+
+        // Индекс ещё строится после старта — прежний поиск по словам названия
         String[] keywords = product.getName().toLowerCase()
                 .replaceAll("[^a-zA-Zа-яА-Я0-9\\s]", "")
                 .split("\\s+");
@@ -168,12 +204,14 @@ public class ProductController {
             similarProducts.addAll(matches);
         }
 
-        similarProducts = similarProducts.stream()
+        List<SimilarProductDTO> result = similarProducts.stream()
                 .distinct()
-                .limit(4)
+                .map(similar -> new SimilarProductDTO(similar, ProductSimilarityIndex.jaccard(product.getName(), similar.getName())))
+                .sorted(Comparator.comparing(SimilarProductDTO::getSimilarity).reversed())
+                .limit(SIMILAR_PRODUCTS_LIMIT)
                 .collect(Collectors.toList());
 
-        return ResponseEntity.ok(similarProducts);
+        return ResponseEntity.ok(result);
     }
 
     @DeleteMapping("/products/{id}")
@@ -182,6 +220,7 @@ public class ProductController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Продукт с ID " + id + " не найден");
         }
         repository.deleteById(id);
+        eventPublisher.publishEvent(new ProductChangedEvent(List.of(id)));
         return ResponseEntity.ok(Map.of("id", id, "message", "Продукт удалён"));
     }
 
@@ -202,6 +241,7 @@ public class ProductController {
 
         product.setLastUpdated(new Timestamp(System.currentTimeMillis()));
         repository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(List.of(product.getId())));
         return ResponseEntity.ok(Map.of("id", product.getId(), "message", "Продукт обновлён"));
     }
 }
\ No newline at end of file
@@ -6,11 +6,11 @@ import com.example.demo.DTO.UserDTO;
 import com.example.demo.Entities.User;
 import com.example.demo.POJO.QuestEvent;
 import com.example.demo.Entities.QuestConditionType;
+import com.example.demo.Services.OutboxService;
 import com.example.demo.Services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -29,7 +29,7 @@ public class ReferralController {
     private UserService userService;
 
     @Autowired
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private OutboxService outboxService;
 
     // Get current user email from SecurityContextHolder
     private String getCurrentUserEmail() {
@@ -106,7 +106,7 @@ public class ReferralController {
         userService.saveUser(user);
         userService.saveUser(referrer);
         QuestEvent questEvent = new QuestEvent(referrer.getEmail(), QuestConditionType.INVITE);
-        kafkaTemplate.send("quest", questEvent);
+        outboxService.enqueue("quest", questEvent.getUserEmail(), questEvent);
         logger.info("Referral activated for user: " + email + ", referrer: " + referrer.getEmail());
 
         return ResponseEntity.ok("Referral activated successfully");
@@ -0,0 +1,109 @@
+package com.example.demo.Controllers;
+
+import com.example.demo.Services.TrackingIndexService;
+import com.example.demo.Services.TrackingIndexService.TrackingEntry;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/warehouse")
+public class WarehouseController {
+    private static final int MAX_INTAKE_SIZE = 5000;
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private TrackingIndexService trackingIndexService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Поиск посылки по трек-номеру при сканировании: ответ из индекса в памяти, без join'ов по orders
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/scan/{trackingNumber}")
+    public ResponseEntity<?> scan(@PathVariable String trackingNumber) {
+        List<TrackingEntry> entries = trackingIndexService.lookup(trackingNumber);
+        if (entries.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("message", "Трек-номер не найден: " + trackingNumber, "status", 404));
+        }
+        return ResponseEntity.ok(entries);
+    }
+
+    // Массовая приёмка на склад: отметка warehouse_received_at у всех найденных позиций одной транзакцией
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/intake")
+    @Transactional
+    public ResponseEntity<?> intake(@RequestBody IntakeRequest request) {
+        if (request.getTrackingNumbers() == null || request.getTrackingNumbers().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Список трек-номеров пуст", "status", 400));
+        }
+        if (request.getTrackingNumbers().size() > MAX_INTAKE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Не более " + MAX_INTAKE_SIZE + " трек-номеров за один запрос", "status", 400));
+        }
+
+        Set<Long> itemIds = new LinkedHashSet<>();
+        Set<Long> orderIds = new LinkedHashSet<>();
+        List<String> unknown = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String trackingNumber : request.getTrackingNumbers()) {
+            String key = TrackingIndexService.normalize(trackingNumber);
+            if (key == null || key.isEmpty() || !seen.add(key)) {
+                continue;
+            }
+            List<TrackingEntry> entries = trackingIndexService.lookup(trackingNumber);
+            if (entries.isEmpty()) {
+                unknown.add(trackingNumber);
+                continue;
+            }
+            for (TrackingEntry entry : entries) {
+                if (entry.getItemId() != null) {
+                    itemIds.add(entry.getItemId());
+                } else {
+                    // Трек-номер всего заказа (самовывоз): принимаются все его позиции
+                    orderIds.add(entry.getOrderId());
+                }
+            }
+        }
+
+        int received = 0;
+        received += updateInChunks("UPDATE order_items SET warehouse_received_at = NOW() " +
+                "WHERE id IN (:ids) AND warehouse_received_at IS NULL", new ArrayList<>(itemIds));
+        received += updateInChunks("UPDATE order_items SET warehouse_received_at = NOW() " +
+                "WHERE order_id IN (:ids) AND warehouse_received_at IS NULL", new ArrayList<>(orderIds));
+
+        IntakeResponse response = new IntakeResponse();
+        response.setReceived(received);
+        response.setMatched(itemIds.size() + orderIds.size());
+        response.setUnknown(unknown);
+        return ResponseEntity.ok(response);
+    }
+
+    private int updateInChunks(String sql, List<Long> ids) {
+        int updated = 0;
+        for (int from = 0; from < ids.size(); from += UPDATE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + UPDATE_CHUNK_SIZE, ids.size()));
+            updated += jdbcTemplate.update(sql, new MapSqlParameterSource("ids", chunk));
+        }
+        return updated;
+    }
+
+    @Data
+    static class IntakeRequest {
+        private List<String> trackingNumbers;
+    }
+
+    @Data
+    static class IntakeResponse {
+        // Позиций, впервые отмеченных как принятые; повторное сканирование их не считает
+        private int received;
+        private int matched;
+        private List<String> unknown;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+// Плоская строка «заказ + позиция + товар» для постраничной карточки сборного груза (JPQL-проекция)
+@Data
+@AllArgsConstructor
+public class BatchCargoItemRow {
+    private Long orderId;
+    private String orderNumber;
+    private Timestamp dateCreated;
+    private String status;
+    private Float totalClientPrice;
+    private String deliveryAddress;
+    private String reasonRefusal;
+    private String userEmail;
+    private Float weight;
+    private Long itemId;
+    private String productId;
+    private String productName;
+    private String url;
+    private String imageUrl;
+    private String description;
+    private Integer quantity;
+    private Float priceAtTime;
+    private Float supplierPrice;
+    private String purchaseStatus;
+    private String purchaseRefusalReason;
+    private String trackingNumber;
+}
@@ -0,0 +1,31 @@
+package com.example.demo.DTO;
+
+import com.example.demo.Entities.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Уведомление для /topic/personal/*: поля как у сущности, но пользователь — только email, без ленивого прокси
+@Data
+@AllArgsConstructor
+public class NotificationPushDTO {
+    private Long id;
+    private Recipient user; // Клиент отличает глобальные уведомления по user === null
+    private String message;
+    private LocalDateTime timestamp;
+    private boolean read;
+    private Long relatedId;
+    private String category;
+
+    public static NotificationPushDTO of(Notification notification, String email) {
+        return new NotificationPushDTO(notification.getId(), new Recipient(email), notification.getMessage(),
+                notification.getTimestamp(), notification.isRead(), notification.getRelatedId(), notification.getCategory());
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Recipient {
+        private String email;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.DTO;
+
+import com.example.demo.Entities.Product;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarProductDTO {
+    @JsonUnwrapped
+    private Product product; // Поля товара остаются на верхнем уровне, как в прежнем ответе
+    private Float similarity;
+}
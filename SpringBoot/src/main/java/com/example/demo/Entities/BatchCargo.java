@@ -9,7 +9,9 @@ import java.util.List;
 public class BatchCargo {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "batch_cargos_id")
+    @TableGenerator(name = "batch_cargos_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "batch_cargos", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -33,6 +35,18 @@ public class BatchCargo {
     @Column(name = "description", columnDefinition = "TEXT")
     private String description;
 
+    // Заказы груза не в статусе PROCESSED; поддерживается атомарным SQL, null — ещё не посчитан
+    @Column(name = "unprocessed_order_count", insertable = false, updatable = false)
+    private Integer unprocessedOrderCount;
+
+    public Integer getUnprocessedOrderCount() {
+        return unprocessedOrderCount;
+    }
+
+    public void setUnprocessedOrderCount(Integer unprocessedOrderCount) {
+        this.unprocessedOrderCount = unprocessedOrderCount;
+    }
+
     public String getDescription(){
         return this.description;
     }
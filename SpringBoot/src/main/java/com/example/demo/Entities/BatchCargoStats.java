@@ -0,0 +1,43 @@
+package com.example.demo.Entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+// Предрасчитанные показатели сборного груза для панели операций; суммы — в копейках, вес — в граммах
+@Entity
+@Table(name = "batch_cargo_stats")
+@Data
+public class BatchCargoStats {
+
+    @Id
+    @Column(name = "batch_id")
+    private Long batchId;
+
+    @Column(name = "order_count", nullable = false)
+    private Integer orderCount = 0;
+
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount = 0;
+
+    @Column(name = "items_purchased", nullable = false)
+    private Integer itemsPurchased = 0;
+
+    @Column(name = "items_not_purchased", nullable = false)
+    private Integer itemsNotPurchased = 0;
+
+    @Column(name = "total_weight_grams", nullable = false)
+    private Long totalWeightGrams = 0L;
+
+    // Оплачено клиентами за вычетом возвратов за невыкупленные позиции
+    @Column(name = "client_total_minor", nullable = false)
+    private Long clientTotalMinor = 0L;
+
+    // Закупка по позициям, кроме невыкупленных
+    @Column(name = "supplier_total_minor", nullable = false)
+    private Long supplierTotalMinor = 0L;
+
+    @Column(name = "updated_at")
+    private Timestamp updatedAt;
+}
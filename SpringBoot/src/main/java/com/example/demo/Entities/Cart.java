@@ -15,6 +15,10 @@ public class Cart {
     @Id
     private String userEmail;
 
+    // Версия корзины из Redis, записанная последним сбросом; более старый снимок не затирает новый
+    @Column(name = "version")
+    private Long version;
+
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference // Manage serialization of items
     private List<CartItem> items = new ArrayList<>();
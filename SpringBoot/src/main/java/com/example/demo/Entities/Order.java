@@ -8,12 +8,23 @@ import java.sql.Timestamp;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_status_created", columnList = "user_email, status, date_created, id"),
+        @Index(name = "idx_orders_status_created", columnList = "status, date_created, id"),
+        // Для status NOT IN: обход по (date_created, id) в порядке выдачи с фильтром статуса, без filesort
+        @Index(name = "idx_orders_created", columnList = "date_created, id"),
+        @Index(name = "idx_orders_finished_at", columnList = "finished_at, id"),
+        @Index(name = "idx_orders_status_batch_created", columnList = "status, batch_cargo_id, date_created, id"),
+        @Index(name = "idx_orders_tracking", columnList = "tracking_number")
+})
 @Data
 public class Order {
 
+    // id выдаются пулом по 50 из id_generator (см. IdGeneratorSeeder), поэтому Hibernate батчит INSERT
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -84,6 +95,15 @@ public class Order {
     @Column(name = "weight", nullable = true)
     private Float weight;
 
+    // Момент перехода в REFUSED / RECEIVED; по нему заказ забирает фоновый архиватор
+    @Column(name = "finished_at", nullable = true)
+    private Timestamp finishedAt;
+
+    // Позиции, ещё не отмеченные как PURCHASED / NOT_PURCHASED. Меняется только атомарным SQL
+    // (PurchaseProgressService), поэтому сущность столбец не пишет; null — счётчик ещё не посчитан
+    @Column(name = "pending_item_count", insertable = false, updatable = false)
+    private Integer pendingItemCount;
+
     @Override
     public String toString() {
         return "Order{" +
@@ -109,6 +129,8 @@ public class Order {
                 ", discountType='" + discountType + '\'' +
                 ", discountValue=" + discountValue +
                 ", weight=" + weight +
+                ", finishedAt=" + finishedAt +
+                ", pendingItemCount=" + pendingItemCount +
                 '}';
     }
 }
\ No newline at end of file
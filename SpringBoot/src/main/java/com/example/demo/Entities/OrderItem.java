@@ -4,13 +4,19 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import jakarta.persistence.*;
 import lombok.Data;
 
+import java.sql.Timestamp;
+
 @Entity
-@Table(name = "order_items")
+@Table(name = "order_items", indexes = {
+        @Index(name = "idx_order_items_tracking", columnList = "tracking_number")
+})
 @Data
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_items_id")
+    @TableGenerator(name = "order_items_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "order_items", allocationSize = 50)
     private Long id;
 
     @JsonBackReference
@@ -46,4 +52,8 @@ public class OrderItem {
 
     @Column(name = "china_delivery_price", nullable = true)
     private Float chinaDeliveryPrice;
+
+    // Момент приёмки на складе в Минске (сканирование трек-номера)
+    @Column(name = "warehouse_received_at", nullable = true)
+    private Timestamp warehouseReceivedAt;
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.example.demo.Entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.sql.Timestamp;
+
+// Денормализованная строка списка заказов (read model), поддерживается событиями жизненного цикла заказа
+@Entity
+@Table(name = "order_summary", indexes = {
+        @Index(name = "idx_order_summary_user_status_created", columnList = "user_email, status, date_created, order_id"),
+        @Index(name = "idx_order_summary_status_created", columnList = "status, date_created, order_id")
+})
+@Data
+public class OrderSummary {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "user_email", nullable = false)
+    private String userEmail;
+
+    @Column(name = "order_number", nullable = false)
+    private String orderNumber;
+
+    @Column(name = "status", nullable = false)
+    private String status;
+
+    @Column(name = "date_created", nullable = false)
+    private Timestamp dateCreated;
+
+    @Column(name = "total_client_price", nullable = false)
+    private Float totalClientPrice;
+
+    @Column(name = "items_total", nullable = false)
+    private Float itemsTotal;
+
+    @Column(name = "item_count", nullable = false)
+    private Integer itemCount;
+
+    @Column(name = "first_item_image_url", length = 65535)
+    private String firstItemImageUrl;
+
+    @Column(name = "batch_cargo_id")
+    private Long batchCargoId;
+}
@@ -0,0 +1,55 @@
+package com.example.demo.Entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Событие для Kafka, записанное в той же транзакции, что и бизнес-изменение; отправляет OutboxRelay
+@Entity
+@Table(name = "outbox")
+@Data
+public class OutboxEvent {
+
+    // IDENTITY, а не пул: порядок id задаёт порядок отправки
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "topic", nullable = false, length = 100)
+    private String topic;
+
+    @Column(name = "message_key")
+    private String messageKey;
+
+    @Column(name = "payload_type", nullable = false)
+    private String payloadType;
+
+    @Lob
+    @Column(name = "payload", nullable = false, columnDefinition = "LONGTEXT")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    // После ошибки отправки событие и следующие события его ключа ждут до этого времени (экспоненциальная пауза)
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // Исчерпаны попытки: событие остаётся в таблице для разбора и больше не задерживает свой ключ
+    @Column(name = "parked_at")
+    private LocalDateTime parkedAt;
+
+    // Аренда пачки экземпляром relay: пока она не истекла, событие и остальные события его ключа не забираются
+    @Column(name = "locked_by", length = 36)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+}
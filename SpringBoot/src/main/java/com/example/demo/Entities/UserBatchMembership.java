@@ -0,0 +1,39 @@
+package com.example.demo.Entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+// Узкий индекс «пользователь -> сборные грузы с его заказами» для экрана отправок; creation_date копируется из груза
+@Entity
+@Table(name = "user_batch_membership", indexes = {
+        @Index(name = "idx_membership_user_created", columnList = "user_email, creation_date, batch_id"),
+        @Index(name = "idx_membership_batch", columnList = "batch_id")
+})
+@IdClass(UserBatchMembership.Key.class)
+@Data
+public class UserBatchMembership {
+
+    @Id
+    @Column(name = "user_email")
+    private String userEmail;
+
+    @Id
+    @Column(name = "batch_id")
+    private Long batchId;
+
+    @Column(name = "creation_date", nullable = false)
+    private Timestamp creationDate;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String userEmail;
+        private Long batchId;
+    }
+}
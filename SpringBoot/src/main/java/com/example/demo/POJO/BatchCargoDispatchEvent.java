@@ -0,0 +1,21 @@
+package com.example.demo.POJO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Рассылка по всем получателям сборного груза; выполняется после коммита транзакции, которая её запросила
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchCargoDispatchEvent {
+    private String jobId;
+    private Long batchId;
+    private String message;
+    private String category;
+    // null — письма не отправляются
+    private String mailSubject;
+    private String mailText;
+}
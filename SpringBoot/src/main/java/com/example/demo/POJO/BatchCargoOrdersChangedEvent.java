@@ -0,0 +1,15 @@
+package com.example.demo.POJO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Состав сборного груза изменён массовым UPDATE, без OrderChangedEvent по каждому заказу
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchCargoOrdersChangedEvent {
+    private Long batchId;
+}
@@ -0,0 +1,24 @@
+package com.example.demo.POJO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Внутреннее событие приложения: заказ создан, изменён или удалён (архивирован)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderChangedEvent {
+    private Long orderId;
+    private boolean removed;
+
+    public static OrderChangedEvent changed(Long orderId) {
+        return new OrderChangedEvent(orderId, false);
+    }
+
+    public static OrderChangedEvent removed(Long orderId) {
+        return new OrderChangedEvent(orderId, true);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.POJO;
+
+import com.example.demo.DTO.NotificationPushDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Уведомления сохранены в транзакции; в /topic/personal/* они уходят только после её коммита
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PersonalNotificationsEvent {
+    private List<NotificationPushDTO> notifications;
+}
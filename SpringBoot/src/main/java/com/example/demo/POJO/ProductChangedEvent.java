@@ -0,0 +1,17 @@
+package com.example.demo.POJO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Collection;
+
+// Товары созданы, изменены, удалены или попали в каталог — поисковый индекс и индекс похожих товаров перечитывают их после коммита
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductChangedEvent {
+    private Collection<String> productIds;
+}
@@ -5,7 +5,9 @@ import com.example.demo.Entities.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -19,6 +21,10 @@ public interface BatchCargoRepository extends JpaRepository<BatchCargo, Long> {
 
     List<BatchCargo> findByStatusIn(List<String> statuses);
 
+    // [status, count] для панели операций
+    @Query("SELECT b.status, COUNT(b) FROM BatchCargo b GROUP BY b.status")
+    List<Object[]> countByStatus();
+
     @Query("SELECT b FROM BatchCargo b WHERE b.status = 'UNFINISHED'")
     List<BatchCargo> findUnfinishedBatches();
 
@@ -27,4 +33,19 @@ public interface BatchCargoRepository extends JpaRepository<BatchCargo, Long> {
 
     @Query("SELECT DISTINCT bc FROM BatchCargo bc LEFT JOIN FETCH bc.orders o WHERE bc.id = :batchId AND (o IS NULL OR o.user.email = :userEmail)")
     Optional<BatchCargo> findByIdAndUserEmail(Long batchId, String userEmail);
-}
\ No newline at end of file
+
+    // Счётчик незавершённых заказов груза: пересчёт целиком и атомарное уменьшение
+    @Modifying
+    @Query(value = "UPDATE batch_cargos b SET b.unprocessed_order_count = (" +
+            "SELECT COUNT(*) FROM orders o WHERE o.batch_cargo_id = b.id AND o.status <> 'PROCESSED') " +
+            "WHERE b.id = :batchId", nativeQuery = true)
+    int recountUnprocessedOrders(@Param("batchId") Long batchId);
+
+    @Modifying
+    @Query(value = "UPDATE batch_cargos SET unprocessed_order_count = unprocessed_order_count - 1 " +
+            "WHERE id = :batchId AND unprocessed_order_count > 0", nativeQuery = true)
+    int decrementUnprocessedOrders(@Param("batchId") Long batchId);
+
+    @Query(value = "SELECT unprocessed_order_count FROM batch_cargos WHERE id = :batchId", nativeQuery = true)
+    Integer findUnprocessedOrderCount(@Param("batchId") Long batchId);
+}
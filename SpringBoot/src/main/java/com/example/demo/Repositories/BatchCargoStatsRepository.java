@@ -0,0 +1,14 @@
+package com.example.demo.Repositories;
+
+import com.example.demo.Entities.BatchCargoStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface BatchCargoStatsRepository extends JpaRepository<BatchCargoStats, Long> {
+
+    @Modifying
+    @Query(value = "DELETE FROM batch_cargo_stats WHERE batch_id = :batchId", nativeQuery = true)
+    int deleteByBatch(@Param("batchId") Long batchId);
+}
@@ -1,7 +1,21 @@
 package com.example.demo.Repositories;
 
 import com.example.demo.Entities.Cart;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, String> {
-}
\ No newline at end of file
+
+    // Корзина с позициями и товарами одним запросом — для загрузки в Redis
+    @Query("SELECT DISTINCT c FROM Cart c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.product WHERE c.userEmail = :email")
+    Optional<Cart> findWithItemsByUserEmail(@Param("email") String email);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.userEmail = :email")
+    Optional<Cart> findForUpdate(@Param("email") String email);
+}
@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,4 +45,7 @@ public interface CatalogRepository extends JpaRepository<Catalog, Long> {
             String name, Float minPrice, Float maxPrice, Pageable pageable);
 
     boolean existsByProductId(String productId);
+
+    @Query("SELECT c.product.id FROM Catalog c WHERE c.product.id IN :productIds")
+    List<String> findProductIdsIn(@Param("productIds") Collection<String> productIds);
 }
\ No newline at end of file
@@ -1,7 +1,18 @@
 package com.example.demo.Repositories;
 
 import com.example.demo.Entities.OrderItem;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
-}
\ No newline at end of file
+
+    // Позиция под блокировкой: две одновременные отметки не увидят её обе как ещё не выкупленную
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM OrderItem i WHERE i.id = :id")
+    Optional<OrderItem> findForUpdate(@Param("id") Long id);
+}
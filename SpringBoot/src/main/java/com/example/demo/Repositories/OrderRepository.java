@@ -1,11 +1,19 @@
 package com.example.demo.Repositories;
 
+import com.example.demo.DTO.BatchCargoItemRow;
 import com.example.demo.Entities.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
     // Non-paginated methods (kept for compatibility, if needed)
@@ -18,11 +26,150 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     long count();
 
-    // Paginated methods
+    // Paginated methods (to-one связи подтягиваются тем же запросом, коллекции — через fetchItemsWithProducts)
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
     Page<Order> findByUserEmail(String userEmail, Pageable pageable);
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
     Page<Order> findByUserEmailAndStatus(String userEmail, String status, Pageable pageable);
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
     Page<Order> findByStatus(String status, Pageable pageable);
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
     Page<Order> findByStatusIn(List<String> statuses, Pageable pageable);
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
     Page<Order> findByStatusNotIn(List<String> statuses, Pageable pageable);
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
     Page<Order> findByStatusNotInAndUserEmail(List<String> statuses, String userEmail, Pageable pageable);
+
+    // Догружает items и их product для уже загруженной страницы заказов одним запросом
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id IN :ids")
+    List<Order> fetchItemsWithProducts(@Param("ids") Collection<Long> ids);
+
+    // Назначение сборного груза одним UPDATE на пачку: подходящие VERIFIED-заказы без груза до даты закупки
+    @Modifying
+    @Query(value = "UPDATE orders SET batch_cargo_id = :batchId " +
+            "WHERE status = 'VERIFIED' AND batch_cargo_id IS NULL AND date_created < :cutoff " +
+            "ORDER BY date_created, id LIMIT :limit", nativeQuery = true)
+    int assignToBatchCargo(@Param("batchId") Long batchId, @Param("cutoff") Timestamp cutoff, @Param("limit") int limit);
+
+    // Назначение по готовому плану (см. /plan): только заказы, которые всё ещё VERIFIED и без груза
+    @Modifying
+    @Query(value = "UPDATE orders SET batch_cargo_id = :batchId " +
+            "WHERE id IN (:ids) AND status = 'VERIFIED' AND batch_cargo_id IS NULL", nativeQuery = true)
+    int assignOrdersToBatchCargo(@Param("batchId") Long batchId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE orders o SET o.status = 'PROCESSED' " +
+            "WHERE o.batch_cargo_id = :batchId AND o.status = 'VERIFIED' AND NOT EXISTS (" +
+            "SELECT 1 FROM order_items i WHERE i.order_id = o.id " +
+            "AND (i.purchase_status IS NULL OR i.purchase_status NOT IN ('PURCHASED', 'NOT_PURCHASED')))", nativeQuery = true)
+    int markProcessedInBatchCargo(@Param("batchId") Long batchId);
+
+    // Счётчики невыкупленных позиций: пересчёт целиком и атомарное уменьшение на одну позицию
+    @Modifying
+    @Query(value = "UPDATE orders o SET o.pending_item_count = (" +
+            "SELECT COUNT(*) FROM order_items i WHERE i.order_id = o.id " +
+            "AND (i.purchase_status IS NULL OR i.purchase_status NOT IN ('PURCHASED', 'NOT_PURCHASED'))) " +
+            "WHERE o.batch_cargo_id = :batchId", nativeQuery = true)
+    int recountPendingItemsInBatchCargo(@Param("batchId") Long batchId);
+
+    @Modifying
+    @Query(value = "UPDATE orders o SET o.pending_item_count = (" +
+            "SELECT COUNT(*) FROM order_items i WHERE i.order_id = o.id " +
+            "AND (i.purchase_status IS NULL OR i.purchase_status NOT IN ('PURCHASED', 'NOT_PURCHASED'))) " +
+            "WHERE o.id = :orderId", nativeQuery = true)
+    int recountPendingItems(@Param("orderId") Long orderId);
+
+    @Modifying
+    @Query(value = "UPDATE orders SET pending_item_count = pending_item_count - 1 " +
+            "WHERE id = :orderId AND pending_item_count > 0", nativeQuery = true)
+    int decrementPendingItems(@Param("orderId") Long orderId);
+
+    @Query(value = "SELECT pending_item_count FROM orders WHERE id = :orderId", nativeQuery = true)
+    Integer findPendingItemCount(@Param("orderId") Long orderId);
+
+    // Карточка груза постранично: сначала страница id заказов с фильтрами, затем строки позиций одной проекцией
+    @Query(value = "SELECT o.id FROM Order o WHERE o.batchCargo.id = :batchId " +
+            "AND (:userEmail IS NULL OR o.user.email = :userEmail) " +
+            "AND (:purchaseStatus IS NULL OR EXISTS (SELECT 1 FROM OrderItem i WHERE i.order = o AND i.purchaseStatus = :purchaseStatus)) " +
+            "ORDER BY o.id",
+            countQuery = "SELECT COUNT(o) FROM Order o WHERE o.batchCargo.id = :batchId " +
+                    "AND (:userEmail IS NULL OR o.user.email = :userEmail) " +
+                    "AND (:purchaseStatus IS NULL OR EXISTS (SELECT 1 FROM OrderItem i WHERE i.order = o AND i.purchaseStatus = :purchaseStatus))")
+    Page<Long> findIdsByBatchCargo(@Param("batchId") Long batchId,
+                                   @Param("userEmail") String userEmail,
+                                   @Param("purchaseStatus") String purchaseStatus,
+                                   Pageable pageable);
+
+    @Query("SELECT new com.example.demo.DTO.BatchCargoItemRow(o.id, o.orderNumber, o.dateCreated, o.status, " +
+            "o.totalClientPrice, o.deliveryAddress, o.reasonRefusal, o.user.email, o.weight, i.id, p.id, p.name, " +
+            "p.url, p.imageUrl, p.description, i.quantity, i.priceAtTime, i.supplierPrice, i.purchaseStatus, " +
+            "i.purchaseRefusalReason, i.trackingNumber) " +
+            "FROM Order o LEFT JOIN o.items i ON (:purchaseStatus IS NULL OR i.purchaseStatus = :purchaseStatus) " +
+            "LEFT JOIN i.product p WHERE o.id IN :ids ORDER BY o.id, i.id")
+    List<BatchCargoItemRow> findBatchCargoItemRows(@Param("ids") Collection<Long> ids,
+                                                   @Param("purchaseStatus") String purchaseStatus);
+
+    // Шапка карточки груза: [status, count, sum(weight)] по заказам и [purchaseStatus, count] по позициям
+    @Query("SELECT o.status, COUNT(o), COALESCE(SUM(o.weight), 0) FROM Order o WHERE o.batchCargo.id = :batchId " +
+            "AND (:userEmail IS NULL OR o.user.email = :userEmail) GROUP BY o.status")
+    List<Object[]> summarizeBatchCargoOrders(@Param("batchId") Long batchId, @Param("userEmail") String userEmail);
+
+    @Query("SELECT i.purchaseStatus, COUNT(i) FROM OrderItem i WHERE i.order.batchCargo.id = :batchId " +
+            "AND (:userEmail IS NULL OR i.order.user.email = :userEmail) GROUP BY i.purchaseStatus")
+    List<Object[]> summarizeBatchCargoItems(@Param("batchId") Long batchId, @Param("userEmail") String userEmail);
+
+    // Получатели рассылки по грузу: по одному на пользователя, без загрузки сущностей
+    @Query("SELECT DISTINCT o.user.email FROM Order o WHERE o.batchCargo.id = :batchId")
+    List<String> findDistinctUserEmailsByBatchCargoId(@Param("batchId") Long batchId);
+
+    // Пачка заказов для массовой верификации: пользователь, промокод, позиции и товары одним запросом
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user LEFT JOIN FETCH o.promocode " +
+            "LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.id IN :ids")
+    List<Order> findAllForVerification(@Param("ids") Collection<Long> ids);
+
+    // Полный граф для карточки заказа
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo", "items", "items.product"})
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findDetailedById(@Param("id") Long id);
+
+    // Keyset-пагинация: (dateCreated, id) DESC без count-запроса, лимит передаётся через Pageable
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
+    @Query("SELECT o FROM Order o WHERE o.user.email = :userEmail AND o.status IN :statuses " +
+            "AND (o.dateCreated < :dateCreated OR (o.dateCreated = :dateCreated AND o.id < :id)) " +
+            "ORDER BY o.dateCreated DESC, o.id DESC")
+    List<Order> findKeysetByUserEmailAndStatusIn(@Param("userEmail") String userEmail,
+                                                 @Param("statuses") List<String> statuses,
+                                                 @Param("dateCreated") Timestamp dateCreated,
+                                                 @Param("id") Long id,
+                                                 Pageable limit);
+
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
+    @Query("SELECT o FROM Order o WHERE o.user.email = :userEmail AND o.status NOT IN :statuses " +
+            "AND (o.dateCreated < :dateCreated OR (o.dateCreated = :dateCreated AND o.id < :id)) " +
+            "ORDER BY o.dateCreated DESC, o.id DESC")
+    List<Order> findKeysetByUserEmailAndStatusNotIn(@Param("userEmail") String userEmail,
+                                                    @Param("statuses") List<String> statuses,
+                                                    @Param("dateCreated") Timestamp dateCreated,
+                                                    @Param("id") Long id,
+                                                    Pageable limit);
+
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
+    @Query("SELECT o FROM Order o WHERE o.status IN :statuses " +
+            "AND (o.dateCreated < :dateCreated OR (o.dateCreated = :dateCreated AND o.id < :id)) " +
+            "ORDER BY o.dateCreated DESC, o.id DESC")
+    List<Order> findKeysetByStatusIn(@Param("statuses") List<String> statuses,
+                                     @Param("dateCreated") Timestamp dateCreated,
+                                     @Param("id") Long id,
+                                     Pageable limit);
+
+    // Диапазон NOT IN не даёт порядка по idx_orders_status_created, поэтому MySQL идёт по idx_orders_created
+    // от курсора назад и отбрасывает исключённые статусы: страница читает size строк плюс пропущенные, без filesort
+    @EntityGraph(attributePaths = {"user", "promocode", "batchCargo"})
+    @Query("SELECT o FROM Order o WHERE o.status NOT IN :statuses " +
+            "AND (o.dateCreated < :dateCreated OR (o.dateCreated = :dateCreated AND o.id < :id)) " +
+            "ORDER BY o.dateCreated DESC, o.id DESC")
+    List<Order> findKeysetByStatusNotIn(@Param("statuses") List<String> statuses,
+                                        @Param("dateCreated") Timestamp dateCreated,
+                                        @Param("id") Long id,
+                                        Pageable limit);
 }
\ No newline at end of file
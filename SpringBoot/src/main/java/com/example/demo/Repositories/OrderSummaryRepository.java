@@ -0,0 +1,80 @@
+package com.example.demo.Repositories;
+
+import com.example.demo.Entities.OrderSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface OrderSummaryRepository extends JpaRepository<OrderSummary, Long> {
+
+    // Keyset-пагинация по (dateCreated, orderId) DESC — один диапазонный проход по индексу
+    @Query("SELECT s FROM OrderSummary s WHERE s.userEmail = :userEmail AND s.status IN :statuses " +
+            "AND (s.dateCreated < :dateCreated OR (s.dateCreated = :dateCreated AND s.orderId < :id)) " +
+            "ORDER BY s.dateCreated DESC, s.orderId DESC")
+    List<OrderSummary> findKeysetByUserEmailAndStatusIn(@Param("userEmail") String userEmail,
+                                                        @Param("statuses") List<String> statuses,
+                                                        @Param("dateCreated") Timestamp dateCreated,
+                                                        @Param("id") Long id,
+                                                        Pageable limit);
+
+    @Query("SELECT s FROM OrderSummary s WHERE s.userEmail = :userEmail AND s.status NOT IN :statuses " +
+            "AND (s.dateCreated < :dateCreated OR (s.dateCreated = :dateCreated AND s.orderId < :id)) " +
+            "ORDER BY s.dateCreated DESC, s.orderId DESC")
+    List<OrderSummary> findKeysetByUserEmailAndStatusNotIn(@Param("userEmail") String userEmail,
+                                                           @Param("statuses") List<String> statuses,
+                                                           @Param("dateCreated") Timestamp dateCreated,
+                                                           @Param("id") Long id,
+                                                           Pageable limit);
+
+    @Query("SELECT s FROM OrderSummary s WHERE s.status IN :statuses " +
+            "AND (s.dateCreated < :dateCreated OR (s.dateCreated = :dateCreated AND s.orderId < :id)) " +
+            "ORDER BY s.dateCreated DESC, s.orderId DESC")
+    List<OrderSummary> findKeysetByStatusIn(@Param("statuses") List<String> statuses,
+                                            @Param("dateCreated") Timestamp dateCreated,
+                                            @Param("id") Long id,
+                                            Pageable limit);
+
+    @Query("SELECT s FROM OrderSummary s WHERE s.status NOT IN :statuses " +
+            "AND (s.dateCreated < :dateCreated OR (s.dateCreated = :dateCreated AND s.orderId < :id)) " +
+            "ORDER BY s.dateCreated DESC, s.orderId DESC")
+    List<OrderSummary> findKeysetByStatusNotIn(@Param("statuses") List<String> statuses,
+                                               @Param("dateCreated") Timestamp dateCreated,
+                                               @Param("id") Long id,
+                                               Pageable limit);
+
+    // Полная пересборка проекции из нормализованных таблиц (первичное заполнение / восстановление)
+    @Modifying
+    @Query(value = "INSERT INTO order_summary (order_id, user_email, order_number, status, date_created, " +
+            "total_client_price, items_total, item_count, first_item_image_url, batch_cargo_id) " +
+            "SELECT o.id, o.user_email, o.order_number, o.status, o.date_created, o.total_client_price, " +
+            "(SELECT COALESCE(SUM(i.price_at_time * i.quantity), 0) FROM order_items i WHERE i.order_id = o.id), " +
+            "(SELECT COUNT(*) FROM order_items i WHERE i.order_id = o.id), " +
+            "(SELECT p.image_url FROM order_items i JOIN product p ON p.id = i.product_id " +
+            "  WHERE i.order_id = o.id ORDER BY i.id LIMIT 1), " +
+            "o.batch_cargo_id " +
+            "FROM orders o " +
+            "ON DUPLICATE KEY UPDATE user_email = VALUES(user_email), order_number = VALUES(order_number), " +
+            "status = VALUES(status), date_created = VALUES(date_created), " +
+            "total_client_price = VALUES(total_client_price), items_total = VALUES(items_total), " +
+            "item_count = VALUES(item_count), first_item_image_url = VALUES(first_item_image_url), " +
+            "batch_cargo_id = VALUES(batch_cargo_id)", nativeQuery = true)
+    int rebuildFromOrders();
+
+    // Перенос статуса и груза после массового назначения сборного груза
+    @Modifying
+    @Query(value = "UPDATE order_summary s JOIN orders o ON o.id = s.order_id " +
+            "SET s.batch_cargo_id = o.batch_cargo_id, s.status = o.status " +
+            "WHERE o.batch_cargo_id = :batchId", nativeQuery = true)
+    int syncBatchCargoOrders(@Param("batchId") Long batchId);
+
+    // Удаляет строки заказов, которых больше нет в orders (заархивированы или удалены)
+    @Modifying
+    @Query(value = "DELETE s FROM order_summary s LEFT JOIN orders o ON o.id = s.order_id WHERE o.id IS NULL",
+            nativeQuery = true)
+    int deleteOrphans();
+}
@@ -0,0 +1,40 @@
+package com.example.demo.Repositories;
+
+import com.example.demo.Entities.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // SKIP LOCKED только на время короткой транзакции захвата; отправка идёт уже по аренде (locked_until).
+    // Ключи, у которых есть арендованное событие, пропускаются целиком, а события после более раннего,
+    // ждущего повтора (next_attempt_at), ждут вместе с ним — порядок внутри ключа сохраняется.
+    // Отложенные навсегда (parked_at) не отправляются и ключ не держат
+    @Query(value = "SELECT * FROM outbox o WHERE o.parked_at IS NULL " +
+            "AND (o.locked_until IS NULL OR o.locked_until < :now) " +
+            "AND (o.next_attempt_at IS NULL OR o.next_attempt_at <= :now) " +
+            "AND (o.message_key IS NULL OR NOT EXISTS (SELECT 1 FROM outbox l " +
+            "WHERE l.message_key = o.message_key AND (l.locked_until >= :now " +
+            "OR (l.id < o.id AND l.parked_at IS NULL AND l.next_attempt_at > :now)))) " +
+            "ORDER BY o.id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.lockedBy = :owner, e.lockedUntil = :until WHERE e.id IN :ids")
+    int lease(@Param("ids") List<Long> ids, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.lockedBy = null, e.lockedUntil = null WHERE e.id IN :ids AND e.lockedBy = :owner")
+    int release(@Param("ids") List<Long> ids, @Param("owner") String owner);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :error, " +
+            "e.nextAttemptAt = :nextAttemptAt, e.parkedAt = :parkedAt WHERE e.id = :id")
+    int markFailed(@Param("id") Long id, @Param("error") String error,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("parkedAt") LocalDateTime parkedAt);
+}
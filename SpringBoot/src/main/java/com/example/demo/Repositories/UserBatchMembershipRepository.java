@@ -0,0 +1,38 @@
+package com.example.demo.Repositories;
+
+import com.example.demo.Entities.BatchCargo;
+import com.example.demo.Entities.UserBatchMembership;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface UserBatchMembershipRepository extends JpaRepository<UserBatchMembership, UserBatchMembership.Key> {
+
+    // Экран отправок: диапазон по (user_email, creation_date) без DISTINCT по заказам
+    @Query(value = "SELECT b FROM UserBatchMembership m JOIN BatchCargo b ON b.id = m.batchId WHERE m.userEmail = :userEmail",
+            countQuery = "SELECT COUNT(m) FROM UserBatchMembership m WHERE m.userEmail = :userEmail")
+    Page<BatchCargo> findBatchCargosByUserEmail(@Param("userEmail") String userEmail, Pageable pageable);
+
+    // Владельцы заказов груза после назначения; уже существующие пары пропускаются
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_batch_membership (user_email, batch_id, creation_date) " +
+            "SELECT DISTINCT o.user_email, b.id, b.creation_date FROM orders o " +
+            "JOIN batch_cargos b ON b.id = o.batch_cargo_id WHERE o.batch_cargo_id = :batchId", nativeQuery = true)
+    int addBatchMembers(@Param("batchId") Long batchId);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_batch_membership WHERE batch_id = :batchId", nativeQuery = true)
+    int deleteByBatch(@Param("batchId") Long batchId);
+
+    // Полное заполнение по текущим заказам и архиву (в order_history груз тоже сохраняется)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO user_batch_membership (user_email, batch_id, creation_date) " +
+            "SELECT DISTINCT x.user_email, b.id, b.creation_date FROM (" +
+            "SELECT user_email, batch_cargo_id FROM orders WHERE batch_cargo_id IS NOT NULL " +
+            "UNION SELECT user_email, batch_cargo_id FROM order_history WHERE batch_cargo_id IS NOT NULL) x " +
+            "JOIN batch_cargos b ON b.id = x.batch_cargo_id", nativeQuery = true)
+    int backfill();
+}
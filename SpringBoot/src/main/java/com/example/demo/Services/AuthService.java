@@ -8,7 +8,6 @@ import com.example.demo.jwt.JwtUtil;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
@@ -34,7 +33,7 @@ public class AuthService {
     private UserRepository userRepository;
 
     @Autowired
-    private KafkaTemplate<String, Object> kafkaTemplate;
+    private OutboxService outboxService;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -111,7 +110,7 @@ public class AuthService {
             if (referredByUser != null) {
                 userRepository.save(referredByUser);
                 QuestEvent questEvent = new QuestEvent(referredByUser.getEmail(), QuestConditionType.INVITE);
-                kafkaTemplate.send("quest", questEvent.getUserEmail(), questEvent);
+                outboxService.enqueue("quest", questEvent.getUserEmail(), questEvent);
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to save user to database: " + e.getMessage(), e);
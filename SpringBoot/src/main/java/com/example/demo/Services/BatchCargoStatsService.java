@@ -0,0 +1,233 @@
+package com.example.demo.Services;
+
+import com.example.demo.Components.PricingEngine;
+import com.example.demo.Entities.BatchCargo;
+import com.example.demo.Entities.BatchCargoStats;
+import com.example.demo.Repositories.BatchCargoRepository;
+import com.example.demo.Repositories.BatchCargoStatsRepository;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Предрасчитанные показатели сборных грузов (batch_cargo_stats).
+ * Полный пересчёт по заказам выполняется только при сборке груза, повторной верификации его заказа
+ * и первичном заполнении; отметки выкупа меняют строку дельтами, поэтому панель операций
+ * не сканирует orders при каждом обновлении.
+ */
+@Service
+public class BatchCargoStatsService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchCargoStatsService.class);
+    private static final int RECOMPUTE_CHUNK = 200;
+    public static final List<String> ACTIVE_STATUSES = List.of("UNFINISHED", "FINISHED", "ARRIVED_IN_MINSK");
+
+    // Сумма поставщику — по всем позициям, кроме NOT_PURCHASED, включая ещё не отмеченные (purchase_status NULL):
+    // то же правило, что в StatsDelta.itemChanged, иначе пересчёт и дельты расходились бы
+    private static final String RECOMPUTE_SQL = "INSERT INTO batch_cargo_stats (batch_id, order_count, item_count, " +
+            "items_purchased, items_not_purchased, total_weight_grams, client_total_minor, supplier_total_minor, updated_at) " +
+            "SELECT o.batch_cargo_id, COUNT(*), COALESCE(SUM(x.item_count), 0), COALESCE(SUM(x.purchased), 0), " +
+            "COALESCE(SUM(x.not_purchased), 0), COALESCE(ROUND(SUM(o.weight) * 1000), 0), " +
+            "COALESCE(ROUND(SUM(o.total_client_price) * 100), 0) - COALESCE(SUM(x.refunded), 0), " +
+            "COALESCE(SUM(x.supplier), 0), NOW() " +
+            "FROM orders o LEFT JOIN (" +
+            "SELECT i.order_id, COUNT(*) AS item_count, " +
+            "SUM(i.purchase_status = 'PURCHASED') AS purchased, " +
+            "SUM(i.purchase_status = 'NOT_PURCHASED') AS not_purchased, " +
+            "ROUND(SUM(CASE WHEN COALESCE(i.purchase_status, 'PENDING') <> 'NOT_PURCHASED' " +
+            "THEN COALESCE(i.supplier_price, 0) * i.quantity ELSE 0 END) * 100) AS supplier, " +
+            "ROUND(SUM(CASE WHEN i.purchase_status = 'NOT_PURCHASED' AND oo.total_client_price > 0 " +
+            "THEN i.price_at_time * i.quantity ELSE 0 END) * 100) AS refunded " +
+            "FROM order_items i JOIN orders oo ON oo.id = i.order_id " +
+            "WHERE oo.batch_cargo_id IN (:ids) GROUP BY i.order_id) x ON x.order_id = o.id " +
+            "WHERE o.batch_cargo_id IN (:ids) GROUP BY o.batch_cargo_id " +
+            "ON DUPLICATE KEY UPDATE order_count = VALUES(order_count), item_count = VALUES(item_count), " +
+            "items_purchased = VALUES(items_purchased), items_not_purchased = VALUES(items_not_purchased), " +
+            "total_weight_grams = VALUES(total_weight_grams), client_total_minor = VALUES(client_total_minor), " +
+            "supplier_total_minor = VALUES(supplier_total_minor), updated_at = VALUES(updated_at)";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BatchCargoStatsRepository statsRepository;
+
+    @Autowired
+    private BatchCargoRepository batchCargoRepository;
+
+    // Пересчёт по заказам груза; груз без заказов получает нулевую строку
+    @Transactional
+    public void recompute(Long batchId) {
+        int rows = jdbcTemplate.update(RECOMPUTE_SQL, new MapSqlParameterSource("ids", List.of(batchId)));
+        if (rows == 0) {
+            jdbcTemplate.update("INSERT INTO batch_cargo_stats (batch_id, order_count, item_count, items_purchased, " +
+                    "items_not_purchased, total_weight_grams, client_total_minor, supplier_total_minor, updated_at) " +
+                    "VALUES (:batchId, 0, 0, 0, 0, 0, 0, 0, NOW()) " +
+                    "ON DUPLICATE KEY UPDATE order_count = 0, item_count = 0, items_purchased = 0, items_not_purchased = 0, " +
+                    "total_weight_grams = 0, client_total_minor = 0, supplier_total_minor = 0, updated_at = NOW()",
+                    new MapSqlParameterSource("batchId", batchId));
+        }
+    }
+
+    @Transactional
+    public void delete(Long batchId) {
+        statsRepository.deleteByBatch(batchId);
+    }
+
+    // Дельты отметок выкупа, по одному UPDATE на груз
+    @Transactional
+    public void apply(Map<Long, StatsDelta> deltas) {
+        List<SqlParameterSource> params = new ArrayList<>(deltas.size());
+        deltas.forEach((batchId, delta) -> {
+            if (!delta.isEmpty()) {
+                params.add(new MapSqlParameterSource()
+                        .addValue("batchId", batchId)
+                        .addValue("purchased", delta.getPurchased())
+                        .addValue("notPurchased", delta.getNotPurchased())
+                        .addValue("supplier", delta.getSupplierMinor())
+                        .addValue("client", delta.getClientMinor()));
+            }
+        });
+        if (params.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("UPDATE batch_cargo_stats SET items_purchased = items_purchased + :purchased, " +
+                "items_not_purchased = items_not_purchased + :notPurchased, " +
+                "supplier_total_minor = supplier_total_minor + :supplier, " +
+                "client_total_minor = client_total_minor + :client, updated_at = NOW() " +
+                "WHERE batch_id = :batchId", params.toArray(new SqlParameterSource[0]));
+    }
+
+    @Transactional
+    public int rebuild() {
+        List<Long> batchIds = jdbcTemplate.queryForList("SELECT id FROM batch_cargos", new MapSqlParameterSource(), Long.class);
+        for (int from = 0; from < batchIds.size(); from += RECOMPUTE_CHUNK) {
+            jdbcTemplate.update(RECOMPUTE_SQL, new MapSqlParameterSource("ids",
+                    batchIds.subList(from, Math.min(from + RECOMPUTE_CHUNK, batchIds.size()))));
+        }
+        logger.info("batch_cargo_stats rebuilt for {} batches", batchIds.size());
+        return batchIds.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (statsRepository.count() == 0 && batchCargoRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Dashboard getDashboard(List<String> statuses) {
+        Dashboard dashboard = new Dashboard();
+        Map<String, Long> batchesByStatus = new LinkedHashMap<>();
+        for (Object[] row : batchCargoRepository.countByStatus()) {
+            batchesByStatus.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        dashboard.setBatchesByStatus(batchesByStatus);
+
+        List<BatchCargo> batches = batchCargoRepository.findByStatusIn(statuses);
+        Map<Long, BatchCargoStats> stats = new HashMap<>();
+        statsRepository.findAllById(batches.stream().map(BatchCargo::getId).toList())
+                .forEach(row -> stats.put(row.getBatchId(), row));
+
+        long clientTotal = 0;
+        long supplierTotal = 0;
+        long weightTotal = 0;
+        for (BatchCargo batch : batches) {
+            BatchCargoStats row = stats.getOrDefault(batch.getId(), new BatchCargoStats());
+            BatchStats dto = new BatchStats();
+            dto.setBatchId(batch.getId());
+            dto.setStatus(batch.getStatus());
+            dto.setCreationDate(batch.getCreationDate());
+            dto.setOrderCount(row.getOrderCount());
+            dto.setItemCount(row.getItemCount());
+            dto.setItemsPurchased(row.getItemsPurchased());
+            dto.setItemsNotPurchased(row.getItemsNotPurchased());
+            dto.setItemsPending(row.getItemCount() - row.getItemsPurchased() - row.getItemsNotPurchased());
+            dto.setTotalWeight(row.getTotalWeightGrams() / 1000.0f);
+            dto.setClientTotal(PricingEngine.fromMinor(row.getClientTotalMinor()));
+            dto.setSupplierTotal(PricingEngine.fromMinor(row.getSupplierTotalMinor()));
+            dto.setMargin(PricingEngine.fromMinor(row.getClientTotalMinor() - row.getSupplierTotalMinor()));
+            dashboard.getBatches().add(dto);
+            clientTotal += row.getClientTotalMinor();
+            supplierTotal += row.getSupplierTotalMinor();
+            weightTotal += row.getTotalWeightGrams();
+        }
+        dashboard.getBatches().sort(Comparator.comparing(BatchStats::getCreationDate).reversed());
+        dashboard.setTotalWeight(weightTotal / 1000.0f);
+        dashboard.setClientTotal(PricingEngine.fromMinor(clientTotal));
+        dashboard.setSupplierTotal(PricingEngine.fromMinor(supplierTotal));
+        return dashboard;
+    }
+
+    // Изменение показателей груза от смены статусов выкупа его позиций
+    @Data
+    public static class StatsDelta {
+        private int purchased;
+        private int notPurchased;
+        private long supplierMinor;
+        private long clientMinor;
+
+        public void itemChanged(String previousStatus, String newStatus, long supplierMinor, long refundMinor) {
+            if ("PURCHASED".equals(previousStatus)) {
+                purchased--;
+            } else if ("NOT_PURCHASED".equals(previousStatus)) {
+                notPurchased--;
+            }
+            if ("PURCHASED".equals(newStatus)) {
+                purchased++;
+            } else if ("NOT_PURCHASED".equals(newStatus)) {
+                notPurchased++;
+            }
+            // Не отмеченная позиция (null) входит в сумму поставщику, как и в RECOMPUTE_SQL
+            boolean wasBought = !"NOT_PURCHASED".equals(previousStatus);
+            boolean isBought = !"NOT_PURCHASED".equals(newStatus);
+            if (wasBought && !isBought) {
+                this.supplierMinor -= supplierMinor;
+            } else if (!wasBought && isBought) {
+                this.supplierMinor += supplierMinor;
+            }
+            clientMinor -= refundMinor;
+        }
+
+        boolean isEmpty() {
+            return purchased == 0 && notPurchased == 0 && supplierMinor == 0 && clientMinor == 0;
+        }
+    }
+
+    @Data
+    public static class BatchStats {
+        private Long batchId;
+        private String status;
+        private Timestamp creationDate;
+        private int orderCount;
+        private int itemCount;
+        private int itemsPurchased;
+        private int itemsNotPurchased;
+        private int itemsPending;
+        private float totalWeight;
+        private float clientTotal;
+        private float supplierTotal;
+        private float margin;
+    }
+
+    @Data
+    public static class Dashboard {
+        private Map<String, Long> batchesByStatus;
+        private List<BatchStats> batches = new ArrayList<>();
+        private float totalWeight;
+        private float clientTotal;
+        private float supplierTotal;
+    }
+}
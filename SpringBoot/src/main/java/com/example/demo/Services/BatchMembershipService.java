@@ -0,0 +1,42 @@
+package com.example.demo.Services;
+
+import com.example.demo.Repositories.BatchCargoRepository;
+import com.example.demo.Repositories.UserBatchMembershipRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Таблица user_batch_membership: пары (пользователь, груз) для экрана отправок.
+ * Пополняется при назначении заказов в груз, очищается при удалении груза;
+ * при первом запуске заполняется по существующим заказам.
+ */
+@Service
+public class BatchMembershipService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchMembershipService.class);
+
+    @Autowired
+    private UserBatchMembershipRepository membershipRepository;
+
+    @Autowired
+    private BatchCargoRepository batchCargoRepository;
+
+    @Transactional
+    public int rebuild() {
+        int inserted = membershipRepository.backfill();
+        logger.info("user_batch_membership backfilled: {} rows", inserted);
+        return inserted;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (membershipRepository.count() == 0 && batchCargoRepository.count() > 0) {
+            rebuild();
+        }
+    }
+}
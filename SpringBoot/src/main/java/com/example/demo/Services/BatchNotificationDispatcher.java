@@ -0,0 +1,204 @@
+package com.example.demo.Services;
+
+import com.example.demo.DTO.NotificationPushDTO;
+import com.example.demo.Entities.Notification;
+import com.example.demo.Entities.User;
+import com.example.demo.POJO.BatchCargoDispatchEvent;
+import com.example.demo.Repositories.NotificationRepository;
+import com.example.demo.Repositories.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылка уведомлений и писем всем клиентам сборного груза.
+ * Запускается после коммита изменения груза в отдельном пуле, получатели дедуплицируются по пользователю,
+ * уведомления вставляются пачками (JDBC batch через pooled-id), письма уходят через ограниченный mailExecutor.
+ * Ход выполнения каждого задания доступен по его jobId.
+ */
+@Service
+public class BatchNotificationDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(BatchNotificationDispatcher.class);
+    private static final int INSERT_CHUNK = 500;
+    private static final int MAX_TRACKED_JOBS = 200;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    @Qualifier("mailExecutor")
+    private ThreadPoolTaskExecutor mailExecutor;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Последние задания в порядке создания; старые завершённые вытесняются
+    private final Map<String, DispatchJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DispatchJob> eldest) {
+            return size() > MAX_TRACKED_JOBS;
+        }
+    });
+
+    // Вызывается внутри транзакции изменения груза; рассылка стартует только после её коммита
+    public String schedule(Long batchId, String message, String category, String mailSubject, String mailText) {
+        DispatchJob job = new DispatchJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setBatchId(batchId);
+        job.setCategory(category);
+        job.setState("QUEUED");
+        job.setCreatedAt(LocalDateTime.now());
+        jobs.put(job.getJobId(), job);
+        eventPublisher.publishEvent(new BatchCargoDispatchEvent(job.getJobId(), batchId, message, category, mailSubject, mailText));
+        return job.getJobId();
+    }
+
+    public DispatchJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public List<DispatchJob> getJobs() {
+        synchronized (jobs) {
+            List<DispatchJob> result = new ArrayList<>(jobs.values());
+            Collections.reverse(result);
+            return result;
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onRollback(BatchCargoDispatchEvent event) {
+        DispatchJob job = jobs.get(event.getJobId());
+        if (job != null) {
+            job.setState("CANCELLED");
+            job.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    @Async("dispatchExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void dispatch(BatchCargoDispatchEvent event) {
+        DispatchJob job = jobs.computeIfAbsent(event.getJobId(), id -> {
+            DispatchJob evicted = new DispatchJob();
+            evicted.setJobId(id);
+            evicted.setBatchId(event.getBatchId());
+            evicted.setCategory(event.getCategory());
+            return evicted;
+        });
+        job.setState("RUNNING");
+        job.setStartedAt(LocalDateTime.now());
+        try {
+            List<String> recipients = orderRepository.findDistinctUserEmailsByBatchCargoId(event.getBatchId());
+            job.setRecipients(recipients.size());
+
+            for (int from = 0; from < recipients.size(); from += INSERT_CHUNK) {
+                List<String> chunk = recipients.subList(from, Math.min(from + INSERT_CHUNK, recipients.size()));
+                List<Notification> saved = transactionTemplate.execute(status -> insertNotifications(chunk, event));
+                if (saved != null) {
+                    for (Notification notification : saved) {
+                        // Email — id прокси, он известен без обращения к users
+                        String email = notification.getUser().getEmail();
+                        messagingTemplate.convertAndSend("/topic/personal/" + email, NotificationPushDTO.of(notification, email));
+                    }
+                    job.getNotificationsInserted().addAndGet(saved.size());
+                }
+            }
+
+            if (event.getMailSubject() != null) {
+                List<CompletableFuture<Void>> mails = new ArrayList<>(recipients.size());
+                for (String email : recipients) {
+                    mails.add(CompletableFuture.runAsync(() -> sendMail(email, event, job), mailExecutor));
+                }
+                CompletableFuture.allOf(mails.toArray(new CompletableFuture[0])).join();
+            }
+            job.setState("DONE");
+        } catch (Exception e) {
+            logger.error("Dispatch job {} for batch {} failed: {}", event.getJobId(), event.getBatchId(), e.getMessage(), e);
+            job.setState("FAILED");
+            job.setError(e.getMessage());
+        } finally {
+            job.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    private List<Notification> insertNotifications(List<String> emails, BatchCargoDispatchEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> notifications = new ArrayList<>(emails.size());
+        for (String email : emails) {
+            Notification notification = new Notification();
+            // Ссылка без SELECT по users
+            User user = entityManager.getReference(User.class, email);
+            notification.setUser(user);
+            notification.setMessage(event.getMessage());
+            notification.setTimestamp(now);
+            notification.setRead(false);
+            notification.setRelatedId(event.getBatchId());
+            notification.setCategory(event.getCategory());
+            notifications.add(notification);
+        }
+        return notificationRepository.saveAll(notifications);
+    }
+
+    private void sendMail(String email, BatchCargoDispatchEvent event, DispatchJob job) {
+        try {
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(email);
+            message.setSubject(event.getMailSubject());
+            message.setText(event.getMailText());
+            mailSender.send(message);
+            job.getMailsSent().incrementAndGet();
+        } catch (Exception e) {
+            job.getMailsFailed().incrementAndGet();
+            logger.warn("Failed to send batch {} mail to {}: {}", event.getBatchId(), email, e.getMessage());
+        }
+    }
+
+    @Data
+    public static class DispatchJob {
+        private String jobId;
+        private Long batchId;
+        private String category;
+        private volatile String state;
+        private int recipients;
+        private final AtomicInteger notificationsInserted = new AtomicInteger();
+        private final AtomicInteger mailsSent = new AtomicInteger();
+        private final AtomicInteger mailsFailed = new AtomicInteger();
+        private String error;
+        private LocalDateTime createdAt;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+    }
+}
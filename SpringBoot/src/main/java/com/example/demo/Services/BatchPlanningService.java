@@ -0,0 +1,97 @@
+package com.example.demo.Services;
+
+import com.example.demo.Components.BatchPlanner;
+import com.example.demo.Components.PricingEngine;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Предпросмотр раскладки VERIFIED-заказов без груза по сборным грузам. Читает только id, вес и сумму
+ * заказов (без сущностей), раскладку считает BatchPlanner. Ничего не меняет: выбранный груз затем
+ * создаётся через createBatchCargo со списком orderIds.
+ */
+@Service
+public class BatchPlanningService {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BatchPlanner batchPlanner;
+
+    @Transactional(readOnly = true)
+    public PlanResult plan(float maxWeightKg, Float maxPrice, Timestamp createdBefore) {
+        long started = System.currentTimeMillis();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder("SELECT id, weight, total_client_price FROM orders " +
+                "WHERE status = 'VERIFIED' AND batch_cargo_id IS NULL");
+        if (createdBefore != null) {
+            sql.append(" AND date_created < :createdBefore");
+            params.addValue("createdBefore", createdBefore);
+        }
+
+        List<BatchPlanner.Candidate> candidates = new ArrayList<>();
+        int[] unweighed = {0};
+        jdbcTemplate.query(sql.toString(), params, rs -> {
+            float weight = rs.getFloat("weight");
+            if (rs.wasNull()) {
+                unweighed[0]++;
+            }
+            candidates.add(new BatchPlanner.Candidate(rs.getLong("id"), toGrams(weight),
+                    PricingEngine.toMinor(rs.getFloat("total_client_price"))));
+        });
+
+        BatchPlanner.Plan plan = batchPlanner.plan(candidates, toGrams(maxWeightKg),
+                maxPrice != null ? PricingEngine.toMinor(maxPrice) : Long.MAX_VALUE);
+
+        PlanResult result = new PlanResult();
+        for (BatchPlanner.Bin bin : plan.getBins()) {
+            PlannedBatch batch = new PlannedBatch();
+            List<Long> orderIds = new ArrayList<>(bin.getCandidates().size());
+            bin.getCandidates().forEach(candidate -> orderIds.add(candidate.getOrderId()));
+            batch.setOrderIds(orderIds);
+            batch.setOrderCount(orderIds.size());
+            batch.setTotalWeight(bin.getWeight() / 1000.0f);
+            batch.setTotalPrice(PricingEngine.fromMinor(bin.getPrice()));
+            result.getBatches().add(batch);
+        }
+        result.setBatchCount(result.getBatches().size());
+        result.setOrderCount(candidates.size());
+        result.setOversizedOrderIds(plan.getOversized());
+        result.setUnweighedOrders(unweighed[0]);
+        result.setElapsedMs(System.currentTimeMillis() - started);
+        return result;
+    }
+
+    // Вес заказа хранится в килограммах
+    public static long toGrams(float kilograms) {
+        return Math.max(0L, Math.round(kilograms * 1000.0d));
+    }
+
+    @Data
+    public static class PlannedBatch {
+        private List<Long> orderIds;
+        private int orderCount;
+        private float totalWeight;
+        private float totalPrice;
+    }
+
+    @Data
+    public static class PlanResult {
+        private List<PlannedBatch> batches = new ArrayList<>();
+        private int batchCount;
+        private int orderCount;
+        private List<Long> oversizedOrderIds;
+        // Заказы без веса раскладываются как невесомые
+        private int unweighedOrders;
+        private long elapsedMs;
+    }
+}
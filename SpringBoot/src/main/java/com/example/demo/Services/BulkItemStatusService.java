@@ -0,0 +1,353 @@
+package com.example.demo.Services;
+
+import com.example.demo.Components.PricingEngine;
+import com.example.demo.DTO.NotificationPushDTO;
+import com.example.demo.Entities.Notification;
+import com.example.demo.Entities.User;
+import com.example.demo.POJO.PersonalNotificationsEvent;
+import com.example.demo.Repositories.NotificationRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Массовая отметка выкупа позиций байерами. Все изменения применяются одной транзакцией пачками SQL:
+ * статусы позиций, возвраты на баланс (одно UPDATE на пользователя), пересчёт счётчиков выкупа
+ * затронутых заказов и грузов, переходы PROCESSED / FINISHED и одно уведомление на пользователя.
+ * Уведомления уходят по WebSocket только после коммита.
+ */
+@Service
+public class BulkItemStatusService {
+    public static final int MAX_ITEMS = 5000;
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_NOTIFICATION_LINES = 20;
+    private static final String PURCHASED = "PURCHASED";
+    private static final String NOT_PURCHASED = "NOT_PURCHASED";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BatchNotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private BatchCargoStatsService batchCargoStatsService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional
+    public BulkItemStatusResult apply(List<ItemStatusChange> changes) {
+        BulkItemStatusResult result = new BulkItemStatusResult();
+
+        // Повтор одной позиции в запросе: действует последняя запись
+        Map<Long, ItemStatusChange> byItem = new LinkedHashMap<>();
+        for (ItemStatusChange change : changes) {
+            if (change == null || change.getItemId() == null) {
+                result.fail(null, "Не указан itemId");
+            } else if (!PURCHASED.equals(change.getStatus()) && !NOT_PURCHASED.equals(change.getStatus())) {
+                result.fail(change.getItemId(), "Недопустимый статус: " + change.getStatus());
+            } else {
+                byItem.put(change.getItemId(), change);
+            }
+        }
+        if (byItem.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, ItemRow> rows = lockItems(byItem.keySet());
+
+        List<Long> purchasedIds = new ArrayList<>();
+        List<SqlParameterSource> refusedUpdates = new ArrayList<>();
+        Set<Long> touchedOrderIds = new HashSet<>();
+        Map<Long, Long> batchByOrder = new HashMap<>();
+        Map<String, Double> refunds = new LinkedHashMap<>();
+        Map<String, List<Refusal>> refusalsByUser = new LinkedHashMap<>();
+        Map<Long, BatchCargoStatsService.StatsDelta> statsDeltas = new HashMap<>();
+
+        for (ItemStatusChange change : byItem.values()) {
+            ItemRow row = rows.get(change.getItemId());
+            if (row == null) {
+                result.fail(change.getItemId(), "Позиция не найдена");
+                continue;
+            }
+            String previous = row.getPurchaseStatus();
+            long refundMinor = 0;
+            if (PURCHASED.equals(change.getStatus())) {
+                if (PURCHASED.equals(previous)) {
+                    result.setUnchanged(result.getUnchanged() + 1);
+                    continue;
+                }
+                purchasedIds.add(row.getItemId());
+            } else {
+                refusedUpdates.add(new MapSqlParameterSource()
+                        .addValue("id", row.getItemId())
+                        .addValue("reason", change.getPurchaseRefusalReason()));
+                // Повторный отказ только меняет причину: без второго возврата и уведомления
+                if (!NOT_PURCHASED.equals(previous)) {
+                    if (row.getTotalClientPrice() > 0) {
+                        refunds.merge(row.getUserEmail(), (double) row.getPriceAtTime() * row.getQuantity(), Double::sum);
+                        refundMinor = PricingEngine.toMinor(row.getPriceAtTime() * row.getQuantity());
+                    }
+                    refusalsByUser.computeIfAbsent(row.getUserEmail(), email -> new ArrayList<>())
+                            .add(new Refusal(row, change.getPurchaseRefusalReason()));
+                }
+            }
+            if (row.getBatchCargoId() != null) {
+                statsDeltas.computeIfAbsent(row.getBatchCargoId(), id -> new BatchCargoStatsService.StatsDelta())
+                        .itemChanged(previous, change.getStatus(),
+                                PricingEngine.toMinor(row.getSupplierPrice() * row.getQuantity()), refundMinor);
+            }
+            if (!PURCHASED.equals(previous) && !NOT_PURCHASED.equals(previous)) {
+                touchedOrderIds.add(row.getOrderId());
+                if (row.getBatchCargoId() != null) {
+                    batchByOrder.put(row.getOrderId(), row.getBatchCargoId());
+                }
+            }
+            result.setUpdated(result.getUpdated() + 1);
+        }
+
+        for (List<Long> chunk : chunks(purchasedIds)) {
+            jdbcTemplate.update("UPDATE order_items SET purchase_status = 'PURCHASED' WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk));
+        }
+        if (!refusedUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE order_items SET purchase_status = 'NOT_PURCHASED', " +
+                    "purchase_refusal_reason = :reason WHERE id = :id", refusedUpdates.toArray(new SqlParameterSource[0]));
+        }
+        if (!refunds.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE users SET balance = balance + :amount WHERE email = :email",
+                    refunds.entrySet().stream()
+                            .map(e -> new MapSqlParameterSource().addValue("email", e.getKey()).addValue("amount", e.getValue()))
+                            .toArray(SqlParameterSource[]::new));
+            result.setRefundedUsers(refunds.size());
+        }
+        batchCargoStatsService.apply(statsDeltas);
+
+        List<Long> processedOrderIds = completeOrders(touchedOrderIds);
+        result.setProcessedOrders(processedOrderIds.size());
+
+        Set<Long> batchIds = new HashSet<>();
+        for (Long orderId : processedOrderIds) {
+            Long batchId = batchByOrder.get(orderId);
+            if (batchId != null) {
+                batchIds.add(batchId);
+            }
+        }
+        List<Long> finishedBatchIds = finishBatches(batchIds);
+        for (Long batchId : finishedBatchIds) {
+            notificationDispatcher.schedule(batchId,
+                    String.format("Сборный груз #%d завершён и готов к отправке.", batchId),
+                    "BATCH_UPDATE", null, null);
+        }
+        result.setFinishedBatches(finishedBatchIds);
+
+        result.setNotifications(notifyRefusals(refusalsByUser));
+        return result;
+    }
+
+    // Блокируются только строки order_items (по возрастанию id, как и при одиночной отметке); заказы и товары
+    // дочитываются без блокировки, чтобы сессия выкупа не держала правку и проверку товаров и заказов.
+    // Статус берётся из блокирующего чтения: оно видит последнюю зафиксированную версию строки
+    private Map<Long, ItemRow> lockItems(Collection<Long> itemIds) {
+        Map<Long, ItemRow> rows = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(itemIds))) {
+            Map<Long, String> lockedStatuses = new HashMap<>();
+            jdbcTemplate.query("SELECT id, purchase_status FROM order_items WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+                    new MapSqlParameterSource("ids", chunk),
+                    rs -> { lockedStatuses.put(rs.getLong("id"), rs.getString("purchase_status")); });
+            jdbcTemplate.query("SELECT i.id, i.price_at_time, i.supplier_price, i.quantity, i.tracking_number, " +
+                            "o.id AS order_id, o.order_number, o.user_email, o.total_client_price, o.batch_cargo_id, " +
+                            "p.name AS product_name " +
+                            "FROM order_items i JOIN orders o ON o.id = i.order_id " +
+                            "LEFT JOIN product p ON p.id = i.product_id " +
+                            "WHERE i.id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk),
+                    rs -> {
+                        ItemRow row = new ItemRow();
+                        row.setItemId(rs.getLong("id"));
+                        row.setPurchaseStatus(lockedStatuses.get(row.getItemId()));
+                        row.setPriceAtTime(rs.getFloat("price_at_time"));
+                        row.setSupplierPrice(rs.getFloat("supplier_price"));
+                        row.setQuantity(rs.getInt("quantity"));
+                        row.setTrackingNumber(rs.getString("tracking_number"));
+                        row.setOrderId(rs.getLong("order_id"));
+                        row.setOrderNumber(rs.getString("order_number"));
+                        row.setUserEmail(rs.getString("user_email"));
+                        row.setTotalClientPrice(rs.getFloat("total_client_price"));
+                        row.setBatchCargoId(rs.getObject("batch_cargo_id") != null ? rs.getLong("batch_cargo_id") : null);
+                        row.setProductName(rs.getString("product_name"));
+                        rows.put(row.getItemId(), row);
+                    });
+        }
+        return rows;
+    }
+
+    // Пересчёт pending_item_count затронутых заказов и перевод полностью отмеченных в PROCESSED
+    private List<Long> completeOrders(Set<Long> orderIds) {
+        List<Long> processed = new ArrayList<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(orderIds))) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", chunk);
+            jdbcTemplate.update("UPDATE orders o SET o.pending_item_count = (" +
+                    "SELECT COUNT(*) FROM order_items i WHERE i.order_id = o.id " +
+                    "AND (i.purchase_status IS NULL OR i.purchase_status NOT IN ('PURCHASED', 'NOT_PURCHASED'))) " +
+                    "WHERE o.id IN (:ids)", params);
+            List<Long> done = jdbcTemplate.queryForList("SELECT id FROM orders WHERE id IN (:ids) " +
+                    "AND pending_item_count = 0 AND status <> 'PROCESSED'", params, Long.class);
+            if (!done.isEmpty()) {
+                MapSqlParameterSource doneParams = new MapSqlParameterSource("ids", done);
+                jdbcTemplate.update("UPDATE orders SET status = 'PROCESSED' WHERE id IN (:ids)", doneParams);
+                jdbcTemplate.update("UPDATE order_summary SET status = 'PROCESSED' WHERE order_id IN (:ids)", doneParams);
+                processed.addAll(done);
+            }
+        }
+        return processed;
+    }
+
+    private List<Long> finishBatches(Set<Long> batchIds) {
+        if (batchIds.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", batchIds);
+        jdbcTemplate.update("UPDATE batch_cargos b SET b.unprocessed_order_count = (" +
+                "SELECT COUNT(*) FROM orders o WHERE o.batch_cargo_id = b.id AND o.status <> 'PROCESSED') " +
+                "WHERE b.id IN (:ids)", params);
+        List<Long> finished = jdbcTemplate.queryForList("SELECT id FROM batch_cargos WHERE id IN (:ids) " +
+                "AND unprocessed_order_count = 0 AND status = 'UNFINISHED'", params, Long.class);
+        if (!finished.isEmpty()) {
+            jdbcTemplate.update("UPDATE batch_cargos SET status = 'FINISHED' WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", finished));
+        }
+        return finished;
+    }
+
+    // Одно уведомление на пользователя вместо уведомления на каждую позицию
+    private int notifyRefusals(Map<String, List<Refusal>> refusalsByUser) {
+        if (refusalsByUser.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> notifications = new ArrayList<>(refusalsByUser.size());
+        for (Map.Entry<String, List<Refusal>> entry : refusalsByUser.entrySet()) {
+            List<Refusal> refusals = entry.getValue();
+            Notification notification = new Notification();
+            notification.setUser(entityManager.getReference(User.class, entry.getKey()));
+            notification.setTimestamp(now);
+            notification.setRead(false);
+            notification.setCategory("ORDER_UPDATE");
+
+            Set<Long> orderIds = new HashSet<>();
+            refusals.forEach(refusal -> orderIds.add(refusal.getRow().getOrderId()));
+            notification.setRelatedId(orderIds.size() == 1 ? orderIds.iterator().next() : null);
+
+            if (refusals.size() == 1) {
+                Refusal refusal = refusals.get(0);
+                notification.setMessage(String.format("Товар #%d (%s) в заказе #%s не выкуплен. Причина: %s",
+                        refusal.getRow().getItemId(), refusal.getRow().displayName(),
+                        refusal.getRow().getOrderNumber(), refusal.getReason()));
+            } else {
+                StringBuilder message = new StringBuilder(String.format("Не выкуплено товаров: %d.", refusals.size()));
+                for (Refusal refusal : refusals.subList(0, Math.min(refusals.size(), MAX_NOTIFICATION_LINES))) {
+                    message.append(String.format("\nТовар #%d (%s) в заказе #%s. Причина: %s",
+                            refusal.getRow().getItemId(), refusal.getRow().displayName(),
+                            refusal.getRow().getOrderNumber(), refusal.getReason()));
+                }
+                if (refusals.size() > MAX_NOTIFICATION_LINES) {
+                    message.append(String.format("\n…и ещё %d", refusals.size() - MAX_NOTIFICATION_LINES));
+                }
+                notification.setMessage(message.toString());
+            }
+            notifications.add(notification);
+        }
+
+        List<Notification> saved = notificationRepository.saveAll(notifications);
+        eventPublisher.publishEvent(new PersonalNotificationsEvent(saved.stream()
+                .map(notification -> NotificationPushDTO.of(notification, notification.getUser().getEmail()))
+                .toList()));
+        return saved.size();
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    @Data
+    public static class ItemStatusChange {
+        private Long itemId;
+        private String status;
+        private String purchaseRefusalReason;
+    }
+
+    @Data
+    public static class BulkItemStatusResult {
+        private int updated;
+        private int unchanged;
+        private int refundedUsers;
+        private int processedOrders;
+        private List<Long> finishedBatches = List.of();
+        private int notifications;
+        private List<ItemError> failed = new ArrayList<>();
+
+        void fail(Long itemId, String message) {
+            ItemError error = new ItemError();
+            error.setItemId(itemId);
+            error.setMessage(message);
+            failed.add(error);
+        }
+    }
+
+    @Data
+    public static class ItemError {
+        private Long itemId;
+        private String message;
+    }
+
+    @Data
+    static class ItemRow {
+        private Long itemId;
+        private String purchaseStatus;
+        private float priceAtTime;
+        private float supplierPrice;
+        private int quantity;
+        private String trackingNumber;
+        private Long orderId;
+        private String orderNumber;
+        private String userEmail;
+        private float totalClientPrice;
+        private Long batchCargoId;
+        private String productName;
+
+        String displayName() {
+            if (productName != null) {
+                return productName;
+            }
+            return trackingNumber != null ? "Self-Pickup: " + trackingNumber : "Unknown";
+        }
+    }
+
+    @Data
+    static class Refusal {
+        private final ItemRow row;
+        private final String reason;
+    }
+}
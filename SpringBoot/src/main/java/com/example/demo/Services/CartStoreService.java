@@ -0,0 +1,353 @@
+package com.example.demo.Services;
+
+import com.example.demo.Entities.Cart;
+import com.example.demo.Entities.CartItem;
+import com.example.demo.Entities.Product;
+import com.example.demo.Repositories.CartRepository;
+import com.example.demo.Repositories.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Корзина в Redis-хэше cart:{email}: поле на каждый товар (JSON позиции) и поле _version.
+ * Запросы читают и пишут только Redis; изменённые корзины попадают в множество cart:dirty,
+ * откуда фоновый сброс переносит их в carts / cart_items. Если ключа нет, корзина поднимается из MySQL.
+ */
+@Service
+@Lazy(false)
+public class CartStoreService {
+    private static final Logger logger = LoggerFactory.getLogger(CartStoreService.class);
+    private static final String KEY_PREFIX = "cart:";
+    private static final String DIRTY_KEY = "cart:dirty";
+    private static final String VERSION_FIELD = "_version";
+    private static final Duration CART_TTL = Duration.ofDays(30);
+    private static final int MAX_ATTEMPTS = 5;
+
+    // Запись применяется, только если _version не изменилась с момента чтения; иначе -1 и повтор
+    private static final DefaultRedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('HGET', KEYS[1], '_version') " +
+            "if current == false or current ~= ARGV[1] then return -1 end " +
+            "local n = tonumber(ARGV[4]) " +
+            "local i = 5 " +
+            "for k = 1, n do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) i = i + 2 end " +
+            "while i <= #ARGV do redis.call('HDEL', KEYS[1], ARGV[i]) i = i + 1 end " +
+            "local version = redis.call('HINCRBY', KEYS[1], '_version', 1) " +
+            "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[3])) " +
+            "redis.call('SADD', KEYS[2], ARGV[2]) " +
+            "return version", Long.class);
+
+    // Загрузка из MySQL не перезаписывает корзину, которую уже успел создать параллельный запрос
+    private static final DefaultRedisScript<Long> HYDRATE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('HSET', KEYS[1], '_version', ARGV[2]) " +
+            "for i = 3, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[1])) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${cart.flush-batch-size:100}")
+    private int flushBatchSize;
+
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    public CartState getCart(String userEmail) {
+        Snapshot snapshot = load(userEmail);
+        return new CartState(snapshot.getVersion(), sorted(snapshot.getLines().values()));
+    }
+
+    public List<CartLine> getLines(String userEmail) {
+        return getCart(userEmail).getLines();
+    }
+
+    // Одно поле хэша, без разбора позиций: для ответа 304 на условный GET
+    public Long getVersion(String userEmail) {
+        Object version = redisTemplate.opsForHash().get(KEY_PREFIX + userEmail, VERSION_FIELD);
+        return version != null ? Long.valueOf((String) version) : null;
+    }
+
+    // Изменение корзины: change получает изменяемую копию позиций по productId
+    public List<CartLine> update(String userEmail, Consumer<Map<String, CartLine>> change) {
+        return apply(userEmail, null, change).getLines();
+    }
+
+    // С expectedVersion изменение применяется только к этой версии корзины, иначе VersionConflictException
+    public CartState apply(String userEmail, Long expectedVersion, Consumer<Map<String, CartLine>> change) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Snapshot snapshot = load(userEmail);
+            if (expectedVersion != null && expectedVersion != snapshot.getVersion()) {
+                throw new VersionConflictException(snapshot.getVersion());
+            }
+            Map<String, CartLine> lines = snapshot.getLines();
+            change.accept(lines);
+
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(snapshot.getVersion()));
+            args.add(userEmail);
+            args.add(String.valueOf(CART_TTL.toSeconds()));
+            args.add("0");
+            int changed = 0;
+            for (Map.Entry<String, CartLine> entry : lines.entrySet()) {
+                String json = write(entry.getValue());
+                if (!json.equals(snapshot.getRaw().get(entry.getKey()))) {
+                    args.add(entry.getKey());
+                    args.add(json);
+                    changed++;
+                }
+            }
+            args.set(3, String.valueOf(changed));
+            for (String productId : snapshot.getRaw().keySet()) {
+                if (!lines.containsKey(productId)) {
+                    args.add(productId);
+                }
+            }
+            if (args.size() == 4) {
+                return new CartState(snapshot.getVersion(), sorted(lines.values()));
+            }
+
+            Long version = redisTemplate.execute(WRITE_SCRIPT, List.of(KEY_PREFIX + userEmail, DIRTY_KEY), args.toArray());
+            if (version != null && version >= 0) {
+                return new CartState(version, sorted(lines.values()));
+            }
+        }
+        throw new IllegalStateException("Корзина изменяется слишком часто, повторите запрос");
+    }
+
+    // Убирает заказанные товары после коммита заказа; товары, добавленные тем временем, остаются
+    public void removeAfterCommit(String userEmail, Collection<String> productIds) {
+        Set<String> ids = Set.copyOf(productIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update(userEmail, lines -> lines.keySet().removeAll(ids));
+                }
+            });
+        } else {
+            update(userEmail, lines -> lines.keySet().removeAll(ids));
+        }
+    }
+
+    public static CartLine toLine(Product product, int quantity) {
+        CartLine line = new CartLine();
+        line.setProductId(product.getId());
+        line.setProductName(product.getName());
+        line.setPrice(product.getPrice());
+        line.setImageUrl(product.getImageUrl());
+        line.setQuantity(quantity);
+        line.setAddedAt(System.currentTimeMillis());
+        return line;
+    }
+
+    @Scheduled(initialDelayString = "${cart.flush-interval-ms:1000}", fixedDelayString = "${cart.flush-interval-ms:1000}")
+    public void flushDirty() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<String> emails;
+            do {
+                emails = redisTemplate.opsForSet().pop(DIRTY_KEY, flushBatchSize);
+                if (emails == null) {
+                    break;
+                }
+                for (String email : emails) {
+                    try {
+                        flush(email);
+                    } catch (Exception e) {
+                        // Корзина вернётся в очередь и уйдёт следующим проходом
+                        logger.error("Cart flush failed for {}: {}", email, e.getMessage());
+                        redisTemplate.opsForSet().add(DIRTY_KEY, email);
+                    }
+                }
+            } while (emails.size() == flushBatchSize);
+        } catch (Exception e) {
+            logger.error("Cart write-behind failed: {}", e.getMessage(), e);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private void flush(String userEmail) {
+        Map<Object, Object> hash = redisTemplate.opsForHash().entries(KEY_PREFIX + userEmail);
+        if (hash.isEmpty()) {
+            return;
+        }
+        Snapshot snapshot = toSnapshot(hash);
+        transactionTemplate.executeWithoutResult(status -> {
+            Cart cart = cartRepository.findForUpdate(userEmail).orElseGet(() -> {
+                Cart created = new Cart();
+                created.setUserEmail(userEmail);
+                return created;
+            });
+            // Снимок мог устареть, пока другой экземпляр сбрасывал более новую версию
+            if (cart.getVersion() != null && cart.getVersion() >= snapshot.getVersion()) {
+                return;
+            }
+            Map<String, CartLine> lines = snapshot.getLines();
+            cart.getItems().removeIf(item -> !lines.containsKey(item.getProduct().getId()));
+            Map<String, CartItem> existing = new HashMap<>();
+            cart.getItems().forEach(item -> existing.put(item.getProduct().getId(), item));
+            // Товар могли удалить, пока позиция жила только в Redis: такая строка не пройдёт внешний ключ
+            // и навсегда застопорит сброс корзины, поэтому новые позиции сверяются с product одним запросом
+            List<String> newIds = lines.keySet().stream().filter(id -> !existing.containsKey(id)).toList();
+            Map<String, Product> products = new HashMap<>();
+            if (!newIds.isEmpty()) {
+                productRepository.findAllById(newIds).forEach(product -> products.put(product.getId(), product));
+            }
+            for (CartLine line : sorted(lines.values())) {
+                CartItem item = existing.get(line.getProductId());
+                if (item == null) {
+                    Product product = products.get(line.getProductId());
+                    if (product == null) {
+                        continue;
+                    }
+                    item = new CartItem();
+                    item.setCart(cart);
+                    item.setProduct(product);
+                    cart.getItems().add(item);
+                }
+                item.setQuantity(line.getQuantity());
+            }
+            cart.setVersion(snapshot.getVersion());
+            cartRepository.save(cart);
+        });
+    }
+
+    private Snapshot load(String userEmail) {
+        String key = KEY_PREFIX + userEmail;
+        Map<Object, Object> hash = redisTemplate.opsForHash().entries(key);
+        if (!hash.isEmpty()) {
+            return toSnapshot(hash);
+        }
+        hydrate(userEmail);
+        return toSnapshot(redisTemplate.opsForHash().entries(key));
+    }
+
+    private void hydrate(String userEmail) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(CART_TTL.toSeconds()));
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<Cart> cart = cartRepository.findWithItemsByUserEmail(userEmail);
+            Long version = cart.map(Cart::getVersion).orElse(null);
+            args.add(String.valueOf(version != null ? version : 0L));
+            long position = 0;
+            for (CartItem item : cart.map(Cart::getItems).orElse(List.of())) {
+                CartLine line = toLine(item.getProduct(), item.getQuantity());
+                // В MySQL нет времени добавления: сохраняем порядок позиций
+                line.setAddedAt(position++);
+                args.add(line.getProductId());
+                args.add(write(line));
+            }
+        });
+        redisTemplate.execute(HYDRATE_SCRIPT, List.of(KEY_PREFIX + userEmail), args.toArray());
+    }
+
+    private Snapshot toSnapshot(Map<Object, Object> hash) {
+        Snapshot snapshot = new Snapshot();
+        hash.forEach((field, value) -> {
+            if (VERSION_FIELD.equals(field)) {
+                snapshot.setVersion(Long.parseLong((String) value));
+            } else {
+                snapshot.getRaw().put((String) field, (String) value);
+            }
+        });
+        return snapshot;
+    }
+
+    private List<CartLine> sorted(Collection<CartLine> lines) {
+        List<CartLine> result = new ArrayList<>(lines);
+        result.sort(Comparator.comparingLong(CartLine::getAddedAt).thenComparing(CartLine::getProductId));
+        return result;
+    }
+
+    private String write(CartLine line) {
+        try {
+            return objectMapper.writeValueAsString(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize cart line " + line.getProductId(), e);
+        }
+    }
+
+    private CartLine read(String json) {
+        try {
+            return objectMapper.readValue(json, CartLine.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupted cart line: " + e.getMessage(), e);
+        }
+    }
+
+    @Data
+    public static class CartLine {
+        private String productId;
+        private String productName;
+        private Float price;
+        private String imageUrl;
+        private Integer quantity;
+        private long addedAt;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class CartState {
+        private long version;
+        private List<CartLine> lines;
+    }
+
+    public static class VersionConflictException extends RuntimeException {
+        private final long currentVersion;
+
+        public VersionConflictException(long currentVersion) {
+            super("Корзина изменилась, текущая версия " + currentVersion);
+            this.currentVersion = currentVersion;
+        }
+
+        public long getCurrentVersion() {
+            return currentVersion;
+        }
+    }
+
+    @Data
+    private class Snapshot {
+        private long version;
+        private Map<String, String> raw = new LinkedHashMap<>();
+
+        Map<String, CartLine> getLines() {
+            Map<String, CartLine> lines = new LinkedHashMap<>();
+            raw.forEach((productId, json) -> lines.put(productId, read(json)));
+            return lines;
+        }
+    }
+}
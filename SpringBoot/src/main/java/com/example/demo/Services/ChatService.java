@@ -2,19 +2,30 @@ package com.example.demo.Services;
 
 
 import com.example.demo.Entities.ChatMessage;
+import com.example.demo.POJO.SupportMessageEvent;
 import com.example.demo.Repositories.ChatMessageRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class ChatService {
 
     private final ChatMessageRepository messageRepository;
+    private final OutboxService outboxService;
 
-    public ChatService(ChatMessageRepository messageRepository) {
+    public ChatService(ChatMessageRepository messageRepository, OutboxService outboxService) {
         this.messageRepository = messageRepository;
+        this.outboxService = outboxService;
     }
 
     public ChatMessage saveMessage(ChatMessage message) {
         return messageRepository.save(message);
     }
+
+    @Transactional
+    public ChatMessage saveMessageWithEvent(ChatMessage message, SupportMessageEvent event) {
+        ChatMessage saved = messageRepository.save(message);
+        outboxService.enqueue("support", event.getUser().getEmail(), event);
+        return saved;
+    }
 }
@@ -0,0 +1,206 @@
+package com.example.demo.Services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище ответов по заголовку Idempotency-Key в Redis.
+ * Повтор запроса с тем же ключом получает сохранённый ответ без обращения к MySQL,
+ * параллельные дубликаты ждут завершения первого выполнения. Пока запрос выполняется, его лок
+ * продлевается, поэтому медленный запрос не теряет ключ и повтор не выполнит его второй раз.
+ * Вместе с ответом хранится отпечаток тела запроса: тот же ключ с другим телом получает 422,
+ * а не чужой сохранённый ответ.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final Duration RESULT_TTL = Duration.ofHours(24);
+    // Если процесс упал посреди выполнения, ключ освободится сам; живой запрос продлевает его каждые 10 с
+    private static final Duration LOCK_TTL = Duration.ofSeconds(30);
+    private static final long LOCK_RENEW_INTERVAL_MS = LOCK_TTL.toMillis() / 3;
+    private static final long WAIT_TIMEOUT_MS = 10_000;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    // Продление и снятие лока — только владельцем: значение ключа равно его токену
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "return 0", Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Idempotency-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public <T> ResponseEntity<T> execute(String scope, String userEmail, String idempotencyKey, Object request,
+                                         Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = KEY_PREFIX + scope + ":" + userEmail + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        // Отпечаток и в локе: параллельный дубликат с другим телом тоже отличается от первого запроса
+        String token = IN_PROGRESS + ":" + fingerprint + ":" + UUID.randomUUID();
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(key, token, LOCK_TTL);
+        } catch (DataAccessException e) {
+            logger.warn("Redis unavailable, executing {} without idempotency: {}", scope, e.getMessage());
+            return action.get();
+        }
+
+        if (Boolean.TRUE.equals(acquired)) {
+            ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> renew(key, token),
+                    LOCK_RENEW_INTERVAL_MS, LOCK_RENEW_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            ResponseEntity<T> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                renewal.cancel(false);
+                release(key, token);
+                throw e;
+            }
+            renewal.cancel(false);
+            store(key, token, fingerprint, response);
+            return response;
+        }
+        return awaitStored(key, fingerprint, bodyType);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+
+    private void renew(String key, String token) {
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(key), token, String.valueOf(LOCK_TTL.toMillis()));
+            if (renewed == null || renewed == 0) {
+                logger.warn("Idempotency lock {} was lost while the request was still running", key);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Failed to renew idempotency lock {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void release(String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(key), token);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to release idempotency lock {}: {}", key, e.getMessage());
+        }
+    }
+
+    private <T> void store(String key, String token, String fingerprint, ResponseEntity<T> response) {
+        // Ошибки сервера не кэшируем: клиент должен иметь возможность повторить запрос
+        if (response.getStatusCode().is5xxServerError()) {
+            release(key, token);
+            return;
+        }
+        try {
+            StoredResponse stored = new StoredResponse();
+            stored.setStatus(response.getStatusCode().value());
+            stored.setRequestHash(fingerprint);
+            stored.setBody(response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null);
+            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(stored), RESULT_TTL);
+        } catch (JsonProcessingException | DataAccessException e) {
+            // Транзакция уже закоммичена: лок не снимаем, он истечёт сам через LOCK_TTL. Иначе немедленный
+            // повтор выполнил бы операцию второй раз (второй заказ)
+            logger.error("Failed to store idempotent response for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private <T> ResponseEntity<T> awaitStored(String key, String fingerprint, Class<T> bodyType) {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            String value = redisTemplate.opsForValue().get(key);
+            if (value == null) {
+                // Первое выполнение завершилось ошибкой и освободило ключ
+                return ResponseEntity.status(409).build();
+            }
+            if (!value.startsWith(IN_PROGRESS)) {
+                return replay(value, fingerprint, bodyType);
+            }
+            if (!value.startsWith(IN_PROGRESS + ":" + fingerprint + ":")) {
+                return ResponseEntity.unprocessableEntity().build();
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return ResponseEntity.status(409).build();
+    }
+
+    private <T> ResponseEntity<T> replay(String value, String fingerprint, Class<T> bodyType) {
+        try {
+            StoredResponse stored = objectMapper.readValue(value, StoredResponse.class);
+            if (stored.getRequestHash() != null && !fingerprint.equals(stored.getRequestHash())) {
+                // Ключ переиспользован с другим телом: сохранённый ответ относится к другому запросу.
+                // Ответы, сохранённые до появления отпечатка (без requestHash), отдаются как раньше
+                return ResponseEntity.unprocessableEntity().build();
+            }
+            T body = stored.getBody() != null ? objectMapper.readValue(stored.getBody(), bodyType) : null;
+            return ResponseEntity.status(stored.getStatus())
+                    .header("Idempotent-Replayed", "true")
+                    .body(body);
+        } catch (JsonProcessingException e) {
+            logger.error("Corrupted idempotent response: {}", e.getMessage());
+            return ResponseEntity.status(409).build();
+        }
+    }
+
+    // SHA-256 от JSON тела запроса
+    private String fingerprint(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Cannot fingerprint idempotent request", e);
+        }
+    }
+
+    @Data
+    static class StoredResponse {
+        private int status;
+        private String body;
+        private String requestHash;
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.demo.Services;
 
+import com.example.demo.DTO.NotificationPushDTO;
 import com.example.demo.Entities.Notification;
 import com.example.demo.Entities.User;
 import com.example.demo.POJO.OrderStatusEvent;
+import com.example.demo.POJO.PersonalNotificationsEvent;
 import com.example.demo.POJO.SupportMessageEvent;
 import com.example.demo.Repositories.NotificationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +12,8 @@ import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
@@ -33,6 +37,14 @@ public class NotificationService {
         this.webClient = webClientBuilder.baseUrl("http://localhost:8080/api").build();
     }
 
+    // Откат транзакции не оставляет у клиента уведомлений, которых нет в базе
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void pushPersonalNotifications(PersonalNotificationsEvent event) {
+        for (NotificationPushDTO notification : event.getNotifications()) {
+            messagingTemplate.convertAndSend("/topic/personal/" + notification.getUser().getEmail(), notification);
+        }
+    }
+
     @KafkaListener(topics = "order-status", groupId = "notification-group")
     public void sendOrderStatusChangeNotification(OrderStatusEvent event) {
         Notification notification = new Notification();
@@ -0,0 +1,182 @@
+package com.example.demo.Services;
+
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновый перенос завершённых заказов (REFUSED / RECEIVED) в order_history.
+ * Каждая пачка — одна транзакция: INSERT ... SELECT в историю, перевязка позиций
+ * и удаление из orders. Отдельная контрольная точка не нужна: перенесённые заказы удаляются,
+ * поэтому после падения процесса выборка сама начинается с первого неперенесённого.
+ * Отставание публикуется JMX-метриками (бин com.example.demo:type=OrderArchive) для мониторинга и алертов.
+ */
+@Service
+@Lazy(false)
+@ManagedResource(objectName = "com.example.demo:type=OrderArchive", description = "Архивация завершённых заказов")
+public class OrderArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiveService.class);
+    public static final List<String> FINISHED_STATUSES = List.of("REFUSED", "RECEIVED");
+
+    private static final String HISTORY_COLUMNS = "user_email, order_number, reason_refusal, date_created, status, " +
+            "total_client_price, supplier_cost, customs_duty, shipping_cost, delivery_address, tracking_number, " +
+            "promocode_id, insurance_cost, insurance, discount_type, discount_value, discount_applied, " +
+            "user_discount_applied, batch_cargo_id, weight";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TrackingIndexService trackingIndexService;
+
+    @Value("${archiver.chunk-size:200}")
+    private int chunkSize;
+
+    // Заказ переносится не сразу: администратор может успеть исправить статус
+    @Value("${archiver.grace-seconds:60}")
+    private long graceSeconds;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong archivedTotal = new AtomicLong();
+
+    // Последний замер очереди: метрики читают его, а не MySQL, обновляет каждый проход архиватора
+    private volatile long pendingSnapshot;
+    private volatile Timestamp oldestPendingSnapshot;
+    private volatile Timestamp lastRunAt;
+
+    public static boolean isFinished(String status) {
+        return status != null && FINISHED_STATUSES.contains(status);
+    }
+
+    @Scheduled(initialDelayString = "${archiver.initial-delay-ms:30000}", fixedDelayString = "${archiver.fixed-delay-ms:30000}")
+    public void archivePending() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int total = 0;
+            Integer moved;
+            do {
+                moved = transactionTemplate.execute(status -> archiveChunk());
+                total += moved != null ? moved : 0;
+            } while (moved != null && moved == chunkSize);
+            archivedTotal.addAndGet(total);
+            lastRunAt = new Timestamp(System.currentTimeMillis());
+            ArchiveStatus status = getStatus();
+            if (total > 0) {
+                logger.info("Archived {} finished orders, lag {}s", total, status.getLagSeconds());
+            }
+        } catch (Exception e) {
+            logger.error("Order archiving failed: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveChunk() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - graceSeconds * 1000);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("statuses", FINISHED_STATUSES)
+                .addValue("cutoff", cutoff)
+                .addValue("limit", chunkSize);
+
+        // SKIP LOCKED: несколько экземпляров приложения не возьмут одни и те же заказы
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM orders " +
+                        "WHERE finished_at IS NOT NULL AND finished_at <= :cutoff AND status IN (:statuses) " +
+                        "ORDER BY finished_at, id LIMIT :limit FOR UPDATE SKIP LOCKED",
+                params, Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        MapSqlParameterSource chunk = new MapSqlParameterSource("ids", ids);
+        Long historyIdFloor = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM order_history", chunk, Long.class);
+        chunk.addValue("historyIdFloor", historyIdFloor);
+
+        jdbcTemplate.update("INSERT INTO order_history (" + HISTORY_COLUMNS + ") " +
+                "SELECT " + HISTORY_COLUMNS + " FROM orders WHERE id IN (:ids) ORDER BY id", chunk);
+
+        // Позиции не копируются, а перевешиваются на запись истории
+        jdbcTemplate.update("UPDATE order_items i " +
+                "JOIN orders o ON o.id = i.order_id " +
+                "JOIN order_history h ON h.order_number = o.order_number AND h.id > :historyIdFloor " +
+                "SET i.order_history_id = h.id, i.order_id = NULL " +
+                "WHERE o.id IN (:ids)", chunk);
+
+        jdbcTemplate.update("DELETE FROM order_summary WHERE order_id IN (:ids)", chunk);
+        jdbcTemplate.update("DELETE FROM orders WHERE id IN (:ids)", chunk);
+        trackingIndexService.evictOrdersAfterCommit(ids);
+        return ids.size();
+    }
+
+    // Отставание архиватора: возраст самого старого завершённого, но ещё не перенесённого заказа
+    public ArchiveStatus getStatus() {
+        ArchiveStatus status = new ArchiveStatus();
+        jdbcTemplate.query("SELECT COUNT(*) AS pending, MIN(finished_at) AS oldest FROM orders " +
+                        "WHERE finished_at IS NOT NULL AND status IN (:statuses)",
+                new MapSqlParameterSource("statuses", FINISHED_STATUSES), rs -> {
+                    status.setPending(rs.getLong("pending"));
+                    status.setOldestPendingFinishedAt(rs.getTimestamp("oldest"));
+                });
+        pendingSnapshot = status.getPending();
+        oldestPendingSnapshot = status.getOldestPendingFinishedAt();
+        status.setLagSeconds(getLagSeconds());
+        status.setArchivedTotal(archivedTotal.get());
+        status.setLastRunAt(lastRunAt);
+        status.setRunning(running.get());
+        return status;
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, unit = "orders",
+            description = "Завершённые заказы, ещё не перенесённые в order_history")
+    public long getBacklog() {
+        return pendingSnapshot;
+    }
+
+    // Считается от замера при каждом чтении: если архиватор встал, отставание продолжает расти
+    @ManagedMetric(metricType = MetricType.GAUGE, unit = "seconds",
+            description = "Возраст самого старого неперенесённого завершённого заказа")
+    public long getLagSeconds() {
+        Timestamp oldest = oldestPendingSnapshot;
+        return oldest != null ? Math.max(0, (System.currentTimeMillis() - oldest.getTime()) / 1000) : 0;
+    }
+
+    @ManagedMetric(metricType = MetricType.GAUGE, unit = "epoch-ms",
+            description = "finished_at самого старого неперенесённого заказа, 0 — очередь пуста")
+    public long getOldestPendingFinishedAt() {
+        Timestamp oldest = oldestPendingSnapshot;
+        return oldest != null ? oldest.getTime() : 0;
+    }
+
+    @Data
+    public static class ArchiveStatus {
+        private long pending;
+        private long lagSeconds;
+        private Timestamp oldestPendingFinishedAt;
+        // Перенесено этим экземпляром с запуска
+        private long archivedTotal;
+        private Timestamp lastRunAt;
+        private boolean running;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.demo.Services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Выгрузка заказов и истории заказов для бухгалтерии.
+ * Один запрос с join'ом позиций читается построчно (fetchSize = Integer.MIN_VALUE включает
+ * потоковое чтение в MySQL Connector/J) и сразу пишется в выходной поток, поэтому
+ * расход памяти не зависит от количества строк.
+ */
+@Service
+public class OrderExportService {
+
+    public enum Source {
+        ORDERS("orders", "order_id"),
+        HISTORY("order_history", "order_history_id");
+
+        private final String table;
+        private final String itemForeignKey;
+
+        Source(String table, String itemForeignKey) {
+            this.table = table;
+            this.itemForeignKey = itemForeignKey;
+        }
+    }
+
+    private static final String[] ORDER_COLUMNS = {
+            "id", "order_number", "user_email", "status", "date_created", "total_client_price",
+            "supplier_cost", "customs_duty", "shipping_cost", "insurance_cost", "discount_applied",
+            "user_discount_applied", "delivery_address", "tracking_number", "batch_cargo_id", "weight"
+    };
+
+    private static final String[] ITEM_COLUMNS = {
+            "item_id", "product_id", "product_name", "quantity", "price_at_time", "supplier_price",
+            "purchase_status", "item_tracking_number", "china_delivery_price"
+    };
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    public OrderExportService(DataSource dataSource) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    // NDJSON: одна строка на заказ, позиции вложены массивом items
+    public void exportNdjson(Source source, List<String> statuses, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        long[] currentId = {-1};
+
+        query(source, statuses, from, to, rs -> {
+            long orderId = rs.getLong("id");
+            if (orderId != currentId[0]) {
+                if (currentId[0] != -1) {
+                    endOrder(generator);
+                }
+                currentId[0] = orderId;
+                generator.writeStartObject();
+                for (String column : ORDER_COLUMNS) {
+                    writeField(generator, column, rs.getObject(column));
+                }
+                generator.writeArrayFieldStart("items");
+            }
+            if (rs.getObject("item_id") != null) {
+                generator.writeStartObject();
+                for (String column : ITEM_COLUMNS) {
+                    writeField(generator, column, rs.getObject(column));
+                }
+                generator.writeEndObject();
+            }
+        });
+        if (currentId[0] != -1) {
+            endOrder(generator);
+        }
+        generator.flush();
+    }
+
+    // CSV: одна строка на позицию, поля заказа повторяются; заказ без позиций — одна строка с пустыми полями позиции
+    public void exportCsv(Source source, List<String> statuses, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        List<String> header = new ArrayList<>();
+        Collections.addAll(header, ORDER_COLUMNS);
+        Collections.addAll(header, ITEM_COLUMNS);
+        writer.write(String.join(",", header));
+        writer.write("\n");
+
+        query(source, statuses, from, to, rs -> {
+            StringBuilder line = new StringBuilder(256);
+            for (String column : ORDER_COLUMNS) {
+                appendCsv(line, rs.getObject(column));
+                line.append(',');
+            }
+            for (int i = 0; i < ITEM_COLUMNS.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendCsv(line, rs.getObject(ITEM_COLUMNS[i]));
+            }
+            line.append('\n');
+            writer.write(line.toString());
+        });
+        writer.flush();
+    }
+
+    private void query(Source source, List<String> statuses, LocalDate from, LocalDate to, RowWriter rowWriter) {
+        StringBuilder sql = new StringBuilder("SELECT o.id, o.order_number, o.user_email, o.status, o.date_created, " +
+                "o.total_client_price, o.supplier_cost, o.customs_duty, o.shipping_cost, o.insurance_cost, " +
+                "o.discount_applied, o.user_discount_applied, o.delivery_address, o.tracking_number, " +
+                "o.batch_cargo_id, o.weight, " +
+                "i.id AS item_id, i.product_id, p.name AS product_name, i.quantity, i.price_at_time, " +
+                "i.supplier_price, i.purchase_status, i.tracking_number AS item_tracking_number, i.china_delivery_price " +
+                "FROM ").append(source.table).append(" o ")
+                .append("LEFT JOIN order_items i ON i.").append(source.itemForeignKey).append(" = o.id ")
+                .append("LEFT JOIN product p ON p.id = i.product_id WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (statuses != null && !statuses.isEmpty()) {
+            sql.append(" AND o.status IN (").append(String.join(",", Collections.nCopies(statuses.size(), "?"))).append(")");
+            args.addAll(statuses);
+        }
+        if (from != null) {
+            sql.append(" AND o.date_created >= ?");
+            args.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            sql.append(" AND o.date_created < ?");
+            args.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        sql.append(" ORDER BY o.id, i.id");
+
+        streamingJdbcTemplate.query(sql.toString(), rs -> {
+            try {
+                rowWriter.write(rs);
+            } catch (IOException e) {
+                // Клиент оборвал загрузку — прекращаем чтение результата
+                throw new UncheckedIOException(e);
+            }
+        }, args.toArray());
+    }
+
+    private void endOrder(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeField(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else if (value instanceof Long || value instanceof Integer) {
+            generator.writeNumberField(name, ((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumberField(name, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            generator.writeBooleanField(name, (Boolean) value);
+        } else {
+            generator.writeStringField(name, formatValue(value));
+        }
+    }
+
+    private void appendCsv(StringBuilder line, Object value) {
+        if (value == null) {
+            return;
+        }
+        String text = formatValue(value);
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            line.append('"').append(text.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(text);
+        }
+    }
+
+    private String formatValue(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        }
+        if (value instanceof LocalDateTime) {
+            return value.toString();
+        }
+        return String.valueOf(value);
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
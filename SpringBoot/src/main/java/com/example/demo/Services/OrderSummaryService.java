@@ -0,0 +1,90 @@
+package com.example.demo.Services;
+
+import com.example.demo.Entities.Order;
+import com.example.demo.Entities.OrderItem;
+import com.example.demo.Entities.OrderSummary;
+import com.example.demo.POJO.OrderChangedEvent;
+import com.example.demo.Repositories.OrderRepository;
+import com.example.demo.Repositories.OrderSummaryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Поддерживает проекцию order_summary. Обновление выполняется перед коммитом той же транзакции,
+ * в которой изменился заказ, поэтому проекция не расходится с orders.
+ */
+@Service
+public class OrderSummaryService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderSummaryService.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderSummaryRepository orderSummaryRepository;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getOrderId() == null) {
+            return;
+        }
+        if (event.isRemoved()) {
+            if (orderSummaryRepository.existsById(event.getOrderId())) {
+                orderSummaryRepository.deleteById(event.getOrderId());
+            }
+            return;
+        }
+        orderRepository.findById(event.getOrderId()).ifPresentOrElse(
+                order -> orderSummaryRepository.save(toSummary(order)),
+                () -> orderSummaryRepository.findById(event.getOrderId()).ifPresent(orderSummaryRepository::delete));
+    }
+
+    @Transactional
+    public int rebuild() {
+        int upserted = orderSummaryRepository.rebuildFromOrders();
+        int removed = orderSummaryRepository.deleteOrphans();
+        logger.info("order_summary rebuilt: {} rows upserted, {} orphans removed", upserted, removed);
+        return upserted;
+    }
+
+    // Первичное заполнение проекции для уже существующих заказов
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (orderSummaryRepository.count() == 0 && orderRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    private OrderSummary toSummary(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.setOrderId(order.getId());
+        summary.setUserEmail(order.getUser().getEmail());
+        summary.setOrderNumber(order.getOrderNumber());
+        summary.setStatus(order.getStatus());
+        summary.setDateCreated(order.getDateCreated());
+        summary.setTotalClientPrice(order.getTotalClientPrice() != null ? order.getTotalClientPrice() : 0.0f);
+        summary.setBatchCargoId(order.getBatchCargo() != null ? order.getBatchCargo().getId() : null);
+
+        List<OrderItem> items = order.getItems() != null ? order.getItems() : List.of();
+        summary.setItemCount(items.size());
+        summary.setItemsTotal((float) items.stream()
+                .mapToDouble(item -> (item.getPriceAtTime() != null ? item.getPriceAtTime() : 0.0f) * (item.getQuantity() != null ? item.getQuantity() : 1))
+                .sum());
+        summary.setFirstItemImageUrl(items.stream()
+                .filter(item -> item.getProduct() != null)
+                .map(item -> item.getProduct().getImageUrl())
+                .findFirst()
+                .orElse(null));
+        return summary;
+    }
+}
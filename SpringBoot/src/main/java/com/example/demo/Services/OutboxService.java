@@ -0,0 +1,216 @@
+package com.example.demo.Services;
+
+import com.example.demo.Entities.OutboxEvent;
+import com.example.demo.Repositories.OutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transactional outbox для Kafka. enqueue пишет событие в таблицу outbox в транзакции вызывающего
+ * кода — при откате событие исчезает вместе с данными, а поток запроса не ждёт брокер.
+ * relay по расписанию забирает пачку в порядке id и отправляет её; события одного ключа уходят
+ * строго по очереди, и после ошибки остальные события этого ключа ждут следующего прохода.
+ * Пачка захватывается арендой в короткой транзакции, ожидание ack брокера идёт уже без блокировок
+ * строк и без открытой транзакции; итог пишется второй короткой транзакцией.
+ * Неудачное событие повторяется с экспоненциальной паузой (retry-backoff-ms, удваивается до max-backoff-ms),
+ * а после max-attempts попыток откладывается (parked_at): оно остаётся в таблице для разбора,
+ * а остальные события его ключа идут дальше.
+ */
+@Service
+@Lazy(false)
+public class OutboxService {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("outboxKafkaTemplate")
+    private KafkaTemplate<String, String> outboxKafkaTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    // Дольше send-timeout: пока идёт отправка, другой экземпляр пачку не заберёт
+    @Value("${outbox.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${outbox.max-backoff-ms:600000}")
+    private long maxBackoffMs;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Вызывается внутри транзакции бизнес-операции: запись в outbox коммитится вместе с ней
+    public void enqueue(String topic, String key, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setTopic(topic);
+        event.setMessageKey(key);
+        event.setPayloadType(payload.getClass().getName());
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize outbox payload " + payload.getClass().getSimpleName(), e);
+        }
+        event.setCreatedAt(LocalDateTime.now());
+        outboxRepository.save(event);
+    }
+
+    @Scheduled(initialDelayString = "${outbox.poll-interval-ms:500}", fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void relay() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Integer processed;
+            do {
+                processed = relayBatch();
+            } while (processed != null && processed == batchSize);
+        } catch (Exception e) {
+            logger.error("Outbox relay failed: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> events = transactionTemplate.execute(status -> claimBatch());
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        // Группы по ключу в порядке id; события без ключа не упорядочиваются между собой
+        Map<String, List<OutboxEvent>> byKey = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            String group = event.getMessageKey() != null ? event.getMessageKey() : "#" + event.getId();
+            byKey.computeIfAbsent(group, k -> new ArrayList<>()).add(event);
+        }
+
+        Queue<Long> sentIds = new ConcurrentLinkedQueue<>();
+        Map<Long, String> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> chains = new ArrayList<>(byKey.size());
+        for (List<OutboxEvent> group : byKey.values()) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (OutboxEvent event : group) {
+                chain = chain.thenCompose(ignored -> send(event)
+                        .<Void>handle((result, ex) -> {
+                            if (ex != null) {
+                                failures.put(event.getId(), String.valueOf(ex.getMessage()));
+                                throw new IllegalStateException(ex);
+                            }
+                            sentIds.add(event.getId());
+                            return null;
+                        }));
+            }
+            chains.add(chain.exceptionally(ex -> null));
+        }
+
+        try {
+            CompletableFuture.allOf(chains.toArray(new CompletableFuture[0])).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.warn("Outbox batch did not complete in {} ms: {}", sendTimeoutMs, e.getMessage());
+        }
+
+        List<Long> delivered = new ArrayList<>(sentIds);
+        transactionTemplate.executeWithoutResult(status -> complete(events, delivered, failures));
+        if (delivered.size() < events.size()) {
+            logger.warn("Outbox: {} of {} delivered, {} failed; remaining events of failed keys postponed",
+                    delivered.size(), events.size(), failures.size());
+            // Не крутим цикл, пока брокер недоступен: следующая попытка — по расписанию
+            return 0;
+        }
+        return events.size();
+    }
+
+    // Строки заблокированы только до коммита этой транзакции: дальше их держит аренда
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxRepository.lockNextBatch(now, batchSize);
+        if (!events.isEmpty()) {
+            outboxRepository.lease(events.stream().map(OutboxEvent::getId).toList(), owner, now.plusNanos(leaseMs * 1_000_000));
+        }
+        return events;
+    }
+
+    // Доставленные удаляются, с остальных снимается аренда — они уйдут следующим проходом
+    private void complete(List<OutboxEvent> events, List<Long> delivered, Map<Long, String> failures) {
+        if (!delivered.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(delivered);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxEvent event : events) {
+            String error = failures.get(event.getId());
+            if (error == null) {
+                continue;
+            }
+            int attempts = event.getAttempts() + 1;
+            LocalDateTime parkedAt = attempts >= maxAttempts ? now : null;
+            if (parkedAt != null) {
+                logger.error("Outbox event {} (topic {}, key {}) parked after {} attempts: {}",
+                        event.getId(), event.getTopic(), event.getMessageKey(), attempts, error);
+            }
+            outboxRepository.markFailed(event.getId(), error.length() > 1000 ? error.substring(0, 1000) : error,
+                    now.plusNanos(backoffMs(attempts) * 1_000_000), parkedAt);
+        }
+        Set<Long> done = new HashSet<>(delivered);
+        List<Long> pending = events.stream().map(OutboxEvent::getId).filter(id -> !done.contains(id)).toList();
+        if (!pending.isEmpty()) {
+            outboxRepository.release(pending, owner);
+        }
+    }
+
+    // retry-backoff-ms, 2x, 4x, ... не больше max-backoff-ms
+    private long backoffMs(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(maxBackoffMs, retryBackoffMs << shift);
+    }
+
+    private CompletableFuture<?> send(OutboxEvent event) {
+        try {
+            ProducerRecord<String, String> record = new ProducerRecord<>(event.getTopic(), event.getMessageKey(), event.getPayload());
+            // Тот же заголовок типа, что ставит JsonSerializer: потребители не меняются
+            record.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                    event.getPayloadType().getBytes(StandardCharsets.UTF_8));
+            return outboxKafkaTemplate.send(record);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
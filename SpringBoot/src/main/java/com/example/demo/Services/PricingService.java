@@ -0,0 +1,45 @@
+package com.example.demo.Services;
+
+import com.example.demo.Components.PricingEngine;
+import com.example.demo.Entities.DiscountType;
+import com.example.demo.Entities.Promocode;
+import com.example.demo.Entities.User;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Перевод сущностей (пользователь, промокод) во входные данные PricingEngine.
+ * Вся арифметика остаётся в движке; здесь только проверки по времени и состоянию сущностей.
+ */
+@Service
+public class PricingService {
+
+    public int userDiscountBps(User user) {
+        if (user == null) {
+            return 0;
+        }
+        user.verifyDiscount();
+        float percent = user.getTotalDiscount();
+        return percent > 0 ? PricingEngine.toBps(percent) : 0;
+    }
+
+    public boolean isPromocodeValid(Promocode promocode, LocalDateTime now) {
+        return promocode.getIsActive() &&
+                !now.isBefore(promocode.getValidFrom()) &&
+                !now.isAfter(promocode.getValidUntil()) &&
+                (promocode.getUsageLimit() == null || promocode.getUsedCount() < promocode.getUsageLimit());
+    }
+
+    public void applyPromocode(PricingEngine.PricingInput input, Promocode promocode, LocalDateTime now) {
+        if (promocode == null) {
+            return;
+        }
+        boolean valid = isPromocodeValid(promocode, now);
+        if (promocode.getDiscountType() == DiscountType.PERCENTAGE) {
+            input.promo(PricingEngine.PROMO_PERCENTAGE, PricingEngine.toBps(promocode.getDiscountValue()), valid);
+        } else {
+            input.promo(PricingEngine.PROMO_FIXED, PricingEngine.toMinor(promocode.getDiscountValue()), valid);
+        }
+    }
+}
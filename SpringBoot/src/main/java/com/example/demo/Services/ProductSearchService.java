@@ -0,0 +1,133 @@
+package com.example.demo.Services;
+
+import com.example.demo.Components.ProductSearchIndex;
+import com.example.demo.Entities.Product;
+import com.example.demo.POJO.ProductChangedEvent;
+import com.example.demo.Repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск по товарам (/api/products, /api/catalog) через ProductSearchIndex вместо LIKE '%term%'.
+ * Индекс строится потоковым чтением product при старте и точечно обновляется после коммита
+ * изменений товаров (ProductChangedEvent). Из БД читаются только товары найденной страницы — по PK.
+ */
+@Service
+public class ProductSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchService.class);
+    private static final int REFRESH_CHUNK_SIZE = 1000;
+    private static final String SELECT_DOCS = "SELECT p.id, p.name, p.description, p.price, p.status, p.sales_count, " +
+            "EXISTS (SELECT 1 FROM catalog c WHERE c.product_id = p.id) AS in_catalog FROM product p";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private volatile ProductSearchIndex index;
+    // Изменения, пришедшие во время построения индекса, применяются после его публикации
+    private final Set<String> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    public ProductSearchService(DataSource dataSource, NamedParameterJdbcTemplate jdbcTemplate) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long started = System.currentTimeMillis();
+        building = true;
+        ProductSearchIndex built = new ProductSearchIndex();
+        try {
+            streamingJdbcTemplate.query(SELECT_DOCS, rs -> {
+                built.upsert(mapDoc(rs));
+            });
+            index = built;
+        } finally {
+            building = false;
+        }
+        refresh(new ArrayList<>(changedDuringBuild));
+        changedDuringBuild.clear();
+        logger.info("Product search index built: {} products in {} ms", built.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        if (event.getProductIds() == null || event.getProductIds().isEmpty()) {
+            return;
+        }
+        if (building) {
+            changedDuringBuild.addAll(event.getProductIds());
+        }
+        refresh(new ArrayList<>(event.getProductIds()));
+    }
+
+    // Страница товаров в порядке индекса и общее число совпадений — в той же форме, что и прежний ответ
+    public Map<String, Object> search(ProductSearchIndex.Query query) {
+        ProductSearchIndex.Result result = index.search(query);
+        Map<String, Product> products = productRepository.findAllById(result.getProductIds()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> content = result.getProductIds().stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        int size = Math.max(1, query.getLimit());
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", content);
+        response.put("totalPages", (int) ((result.getTotal() + size - 1) / size));
+        response.put("totalElements", result.getTotal());
+        return response;
+    }
+
+    private void refresh(List<String> productIds) {
+        ProductSearchIndex current = index;
+        if (current == null || productIds.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < productIds.size(); from += REFRESH_CHUNK_SIZE) {
+            List<String> chunk = productIds.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, productIds.size()));
+            Set<String> missing = new HashSet<>(chunk);
+            jdbcTemplate.query(SELECT_DOCS + " WHERE p.id IN (:ids)", new MapSqlParameterSource("ids", chunk), rs -> {
+                ProductSearchIndex.Doc doc = mapDoc(rs);
+                missing.remove(doc.getProductId());
+                current.upsert(doc);
+            });
+            // Товара больше нет в product — удалён
+            missing.forEach(current::remove);
+        }
+    }
+
+    private static ProductSearchIndex.Doc mapDoc(ResultSet rs) throws SQLException {
+        float price = rs.getFloat("price");
+        Float priceValue = rs.wasNull() ? null : price;
+        int sales = rs.getInt("sales_count");
+        Integer salesValue = rs.wasNull() ? null : sales;
+        return new ProductSearchIndex.Doc(rs.getString("id"), rs.getString("name"), rs.getString("description"),
+                priceValue, salesValue, "VERIFIED".equals(rs.getString("status")), rs.getBoolean("in_catalog"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.demo.Services;
+
+import com.example.demo.Components.ProductSimilarityIndex;
+import com.example.demo.DTO.SimilarProductDTO;
+import com.example.demo.Entities.Product;
+import com.example.demo.POJO.ProductChangedEvent;
+import com.example.demo.Repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Похожие товары (/api/products/similar/{id}) через ProductSimilarityIndex вместо LIKE-запроса
+ * на каждое слово названия. Индекс строится потоковым чтением product при старте и обновляется
+ * после коммита изменений товаров по тому же ProductChangedEvent, что и поисковый индекс.
+ */
+@Service
+public class ProductSimilarityService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductSimilarityService.class);
+    private static final int REFRESH_CHUNK_SIZE = 1000;
+    private static final String SELECT_NAMES = "SELECT p.id, p.name, p.status FROM product p";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private volatile ProductSimilarityIndex index;
+    private final Set<String> changedDuringBuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean building;
+
+    public ProductSimilarityService(DataSource dataSource, NamedParameterJdbcTemplate jdbcTemplate) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long started = System.currentTimeMillis();
+        building = true;
+        ProductSimilarityIndex built = new ProductSimilarityIndex();
+        try {
+            streamingJdbcTemplate.query(SELECT_NAMES, rs -> {
+                built.upsert(rs.getString("id"), rs.getString("name"), "VERIFIED".equals(rs.getString("status")));
+            });
+            index = built;
+        } finally {
+            building = false;
+        }
+        refresh(new ArrayList<>(changedDuringBuild));
+        changedDuringBuild.clear();
+        logger.info("Product similarity index built: {} products in {} ms", built.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductsChanged(ProductChangedEvent event) {
+        if (event.getProductIds() == null || event.getProductIds().isEmpty()) {
+            return;
+        }
+        if (building) {
+            changedDuringBuild.addAll(event.getProductIds());
+        }
+        refresh(new ArrayList<>(event.getProductIds()));
+    }
+
+    // Похожие проверенные товары по убыванию сходства; из БД читаются только они — по PK
+    public List<SimilarProductDTO> findSimilar(Product product, int limit) {
+        List<ProductSimilarityIndex.Match> matches = index.similar(product.getId(), product.getName(), limit);
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Product> products = productRepository.findAllById(matches.stream()
+                        .map(ProductSimilarityIndex.Match::getProductId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return matches.stream()
+                .filter(match -> products.containsKey(match.getProductId()))
+                .map(match -> new SimilarProductDTO(products.get(match.getProductId()), match.getSimilarity()))
+                .collect(Collectors.toList());
+    }
+
+    private void refresh(List<String> productIds) {
+        ProductSimilarityIndex current = index;
+        if (current == null || productIds.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < productIds.size(); from += REFRESH_CHUNK_SIZE) {
+            List<String> chunk = productIds.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, productIds.size()));
+            Set<String> missing = new HashSet<>(chunk);
+            jdbcTemplate.query(SELECT_NAMES + " WHERE p.id IN (:ids)", new MapSqlParameterSource("ids", chunk), rs -> {
+                String id = rs.getString("id");
+                missing.remove(id);
+                current.upsert(id, rs.getString("name"), "VERIFIED".equals(rs.getString("status")));
+            });
+            missing.forEach(current::remove);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.Services;
+
+import com.example.demo.Entities.BatchCargo;
+import com.example.demo.Entities.Order;
+import com.example.demo.Repositories.BatchCargoRepository;
+import com.example.demo.Repositories.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Счётчики выкупа: pending_item_count у заказа и unprocessed_order_count у сборного груза.
+ * Отметка позиции уменьшает их атомарным UPDATE (строка заказа/груза остаётся заблокированной до коммита),
+ * поэтому переходы PROCESSED / FINISHED определяются за O(1) без чтения всех позиций и заказов груза.
+ */
+@Service
+public class PurchaseProgressService {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private BatchCargoRepository batchCargoRepository;
+
+    // Полный пересчёт после назначения заказов в груз; возвращает число незавершённых заказов
+    @Transactional
+    public int recountBatch(Long batchId) {
+        orderRepository.recountPendingItemsInBatchCargo(batchId);
+        batchCargoRepository.recountUnprocessedOrders(batchId);
+        Integer remaining = batchCargoRepository.findUnprocessedOrderCount(batchId);
+        return remaining != null ? remaining : 0;
+    }
+
+    // Состав или статусы позиций заказа изменены не через отметку выкупа
+    @Transactional
+    public void resync(Order order) {
+        orderRepository.flush();
+        orderRepository.recountPendingItems(order.getId());
+        if (order.getBatchCargo() != null) {
+            batchCargoRepository.recountUnprocessedOrders(order.getBatchCargo().getId());
+        }
+    }
+
+    /**
+     * Позиция заказа перешла из ожидания в PURCHASED / NOT_PURCHASED (изменение уже сохранено и сброшено в БД).
+     * Возвращает true, если это была последняя позиция и заказ только что стал выкупленным.
+     */
+    @Transactional
+    public boolean onItemCompleted(Order order) {
+        Integer remaining;
+        if (orderRepository.decrementPendingItems(order.getId()) == 1) {
+            remaining = orderRepository.findPendingItemCount(order.getId());
+        } else {
+            // Счётчик ещё не заведён (заказ из груза, собранного до появления счётчиков) — считаем по позициям
+            orderRepository.recountPendingItems(order.getId());
+            remaining = orderRepository.findPendingItemCount(order.getId());
+        }
+        return remaining != null && remaining == 0 && !"PROCESSED".equals(order.getStatus());
+    }
+
+    /**
+     * Заказ груза стал PROCESSED (статус уже сброшен в БД).
+     * Возвращает true, если это был последний незавершённый заказ груза.
+     */
+    @Transactional
+    public boolean onOrderProcessed(BatchCargo batch) {
+        Integer remaining;
+        if (batchCargoRepository.decrementUnprocessedOrders(batch.getId()) == 1) {
+            remaining = batchCargoRepository.findUnprocessedOrderCount(batch.getId());
+        } else {
+            batchCargoRepository.recountUnprocessedOrders(batch.getId());
+            remaining = batchCargoRepository.findUnprocessedOrderCount(batch.getId());
+        }
+        return remaining != null && remaining == 0;
+    }
+}
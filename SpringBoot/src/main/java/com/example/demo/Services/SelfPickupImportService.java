@@ -0,0 +1,148 @@
+package com.example.demo.Services;
+
+import com.example.demo.Entities.Order;
+import com.example.demo.Entities.OrderItem;
+import com.example.demo.Entities.Product;
+import com.example.demo.Entities.User;
+import com.example.demo.POJO.OrderChangedEvent;
+import com.example.demo.Repositories.OrderRepository;
+import com.example.demo.Repositories.UserRepository;
+import jakarta.persistence.EntityManager;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Заказы на самовывоз по трек-номерам. Все позиции ссылаются на один общий товар-заглушку,
+ * вставка позиций идёт пачками JDBC (hibernate.jdbc.batch_size), трек-номера, уже занятые
+ * открытыми позициями, отбрасываются запросом по idx_order_items_tracking.
+ */
+@Service
+public class SelfPickupImportService {
+    public static final int MAX_TRACKING_NUMBERS = 5000;
+    // Фиксированный id: заглушка создаётся один раз на всю базу, а не на каждый трек-номер
+    public static final String PLACEHOLDER_PRODUCT_ID =
+            UUID.nameUUIDFromBytes("self-pickup-placeholder".getBytes()).toString();
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public ImportResult importOrder(String userEmail, List<String> trackingNumbers, String deliveryAddress) {
+        ImportResult result = new ImportResult();
+
+        // Дубликаты внутри файла: сравнение без учёта регистра и пробелов по краям
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String raw : trackingNumbers) {
+            String key = TrackingIndexService.normalize(raw);
+            if (key == null || key.isEmpty()) {
+                continue;
+            }
+            if (unique.putIfAbsent(key, raw.trim()) != null) {
+                result.getDuplicates().add(raw.trim());
+            }
+        }
+
+        for (String open : findOpenTrackingNumbers(unique.values())) {
+            String key = TrackingIndexService.normalize(open);
+            String requested = unique.remove(key);
+            if (requested != null) {
+                result.getAlreadyOpen().add(requested);
+            }
+        }
+        if (unique.isEmpty()) {
+            return result;
+        }
+
+        User user = userRepository.findByEmail(userEmail)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+        Product placeholder = getPlaceholderProduct();
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setOrderNumber(UUID.randomUUID().toString());
+        order.setDateCreated(new Timestamp(System.currentTimeMillis()));
+        order.setStatus("PENDING");
+        order.setTotalClientPrice(0.0f);
+        order.setDeliveryAddress(deliveryAddress);
+
+        List<OrderItem> items = new ArrayList<>(unique.size());
+        for (String trackingNumber : unique.values()) {
+            items.add(newItem(order, placeholder, trackingNumber));
+        }
+        order.setItems(items);
+        orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.changed(order.getId()));
+
+        result.setOrderId(order.getId());
+        result.setOrderNumber(order.getOrderNumber());
+        result.setImported(items.size());
+        return result;
+    }
+
+    public static OrderItem newItem(Order order, Product placeholder, String trackingNumber) {
+        OrderItem orderItem = new OrderItem();
+        orderItem.setOrder(order);
+        orderItem.setTrackingNumber(trackingNumber);
+        orderItem.setPurchaseStatus("PENDING");
+        orderItem.setQuantity(1); // По умолчанию 1, так как товар неизвестен
+        orderItem.setPriceAtTime(0.0f); // Цена неизвестна
+        orderItem.setProduct(placeholder);
+        return orderItem;
+    }
+
+    // INSERT IGNORE: параллельные импорты не споткнутся о первичный ключ заглушки
+    public Product getPlaceholderProduct() {
+        jdbcTemplate.update("INSERT IGNORE INTO product (id, name, price, image_url, description, total_review_summ, review_quantity) " +
+                        "VALUES (:id, 'Self-Pickup Item', 0, 'https://placehold.co/128x128?text=Pending', " +
+                        "'Placeholder product for self-pickup orders', 0, 0)",
+                new MapSqlParameterSource("id", PLACEHOLDER_PRODUCT_ID));
+        return entityManager.getReference(Product.class, PLACEHOLDER_PRODUCT_ID);
+    }
+
+    // Открытые позиции — те, что ещё не перенесены в историю и чей заказ не завершён
+    private List<String> findOpenTrackingNumbers(Collection<String> trackingNumbers) {
+        List<String> values = new ArrayList<>(trackingNumbers);
+        List<String> open = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += LOOKUP_CHUNK_SIZE) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("tracking", values.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, values.size())))
+                    .addValue("finished", OrderArchiveService.FINISHED_STATUSES);
+            open.addAll(jdbcTemplate.queryForList("SELECT DISTINCT i.tracking_number FROM order_items i " +
+                    "JOIN orders o ON o.id = i.order_id " +
+                    "WHERE i.tracking_number IN (:tracking) AND o.status NOT IN (:finished)", params, String.class));
+        }
+        return open;
+    }
+
+    @Data
+    public static class ImportResult {
+        private Long orderId;
+        private String orderNumber;
+        private int imported;
+        // Повторы внутри самого запроса
+        private List<String> duplicates = new ArrayList<>();
+        // Трек-номера, которые уже числятся в незавершённых заказах
+        private List<String> alreadyOpen = new ArrayList<>();
+    }
+}
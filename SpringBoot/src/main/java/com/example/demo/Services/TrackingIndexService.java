@@ -0,0 +1,207 @@
+package com.example.demo.Services;
+
+import com.example.demo.POJO.BatchCargoOrdersChangedEvent;
+import com.example.demo.POJO.OrderChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс трек-номеров в памяти для режима сканирования на складе: трек-номер -> позиция, заказ, груз, клиент.
+ * Заполняется при старте по всем заказам таблицы orders в любом статусе — архивные заказы из неё уже
+ * перенесены и в индекс не попадают; затем обновляется после коммита изменений заказа или состава груза.
+ * Промах читается из БД по индексированным столбцам и кладётся в индекс.
+ */
+@Service
+public class TrackingIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(TrackingIndexService.class);
+
+    private static final String SELECT_ITEMS = "SELECT i.id AS item_id, o.id AS order_id, o.order_number, " +
+            "o.batch_cargo_id, o.user_email, i.tracking_number, 'ITEM' AS source " +
+            "FROM order_items i JOIN orders o ON o.id = i.order_id WHERE i.tracking_number IS NOT NULL";
+    private static final String SELECT_ORDERS = "SELECT NULL AS item_id, o.id AS order_id, o.order_number, " +
+            "o.batch_cargo_id, o.user_email, o.tracking_number, 'ORDER' AS source " +
+            "FROM orders o WHERE o.tracking_number IS NOT NULL";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Map<String, List<TrackingEntry>> byTracking = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> keysByOrder = new ConcurrentHashMap<>();
+    private volatile boolean warmed;
+
+    public TrackingIndexService(DataSource dataSource, NamedParameterJdbcTemplate jdbcTemplate) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static String normalize(String trackingNumber) {
+        return trackingNumber == null ? null : trackingNumber.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public List<TrackingEntry> lookup(String trackingNumber) {
+        String key = normalize(trackingNumber);
+        if (key == null || key.isEmpty()) {
+            return List.of();
+        }
+        List<TrackingEntry> entries = byTracking.get(key);
+        if (entries != null) {
+            return entries;
+        }
+        // Промах: трек-номер мог появиться до прогрева или в другом экземпляре приложения
+        List<TrackingEntry> loaded = new ArrayList<>();
+        MapSqlParameterSource params = new MapSqlParameterSource("tracking", trackingNumber.trim());
+        jdbcTemplate.query(SELECT_ITEMS + " AND i.tracking_number = :tracking UNION ALL " +
+                SELECT_ORDERS + " AND o.tracking_number = :tracking", params, rs -> {
+            loaded.add(mapEntry(rs));
+        });
+        synchronized (this) {
+            loaded.forEach(this::put);
+        }
+        return loaded;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long started = System.currentTimeMillis();
+        int[] rows = {0};
+        synchronized (this) {
+            streamingJdbcTemplate.query(SELECT_ITEMS + " UNION ALL " + SELECT_ORDERS, rs -> {
+                put(mapEntry(rs));
+                rows[0]++;
+            });
+            warmed = true;
+        }
+        logger.info("Tracking index warmed: {} tracking numbers from {} rows in {} ms",
+                byTracking.size(), rows[0], System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getOrderId() == null) {
+            return;
+        }
+        if (event.isRemoved()) {
+            evictOrders(List.of(event.getOrderId()));
+        } else {
+            reload("o.id = :id", new MapSqlParameterSource("id", event.getOrderId()), List.of(event.getOrderId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBatchCargoOrdersChanged(BatchCargoOrdersChangedEvent event) {
+        MapSqlParameterSource params = new MapSqlParameterSource("batchId", event.getBatchId());
+        List<Long> orderIds = jdbcTemplate.queryForList(
+                "SELECT id FROM orders WHERE batch_cargo_id = :batchId", params, Long.class);
+        reload("o.batch_cargo_id = :batchId", params, orderIds);
+    }
+
+    // Заказы удаляются из orders (архив) — записи убираются после коммита, чтобы промах не прочитал старые строки
+    public void evictOrdersAfterCommit(List<Long> orderIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Long> ids = List.copyOf(orderIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictOrders(ids);
+                }
+            });
+        } else {
+            evictOrders(orderIds);
+        }
+    }
+
+    public boolean isWarmed() {
+        return warmed;
+    }
+
+    public int size() {
+        return byTracking.size();
+    }
+
+    private synchronized void reload(String condition, MapSqlParameterSource params, Collection<Long> orderIds) {
+        evictOrders(orderIds);
+        jdbcTemplate.query(SELECT_ITEMS + " AND " + condition + " UNION ALL " + SELECT_ORDERS + " AND " + condition,
+                params, rs -> {
+                    put(mapEntry(rs));
+                });
+    }
+
+    private synchronized void evictOrders(Collection<Long> orderIds) {
+        for (Long orderId : orderIds) {
+            Set<String> keys = keysByOrder.remove(orderId);
+            if (keys == null) {
+                continue;
+            }
+            for (String key : keys) {
+                byTracking.computeIfPresent(key, (k, entries) -> {
+                    List<TrackingEntry> rest = entries.stream()
+                            .filter(entry -> !orderId.equals(entry.getOrderId()))
+                            .toList();
+                    return rest.isEmpty() ? null : rest;
+                });
+            }
+        }
+    }
+
+    // Вызывается под блокировкой this; списки неизменяемые, поэтому чтение в lookup идёт без блокировки
+    private void put(TrackingEntry entry) {
+        String key = normalize(entry.getTrackingNumber());
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        byTracking.compute(key, (k, entries) -> {
+            if (entries == null) {
+                return List.of(entry);
+            }
+            if (entries.contains(entry)) {
+                return entries;
+            }
+            List<TrackingEntry> merged = new ArrayList<>(entries.size() + 1);
+            merged.addAll(entries);
+            merged.add(entry);
+            return List.copyOf(merged);
+        });
+        keysByOrder.computeIfAbsent(entry.getOrderId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private static TrackingEntry mapEntry(ResultSet rs) throws SQLException {
+        long itemId = rs.getLong("item_id");
+        Long item = rs.wasNull() ? null : itemId;
+        long batchId = rs.getLong("batch_cargo_id");
+        Long batch = rs.wasNull() ? null : batchId;
+        return new TrackingEntry(rs.getString("tracking_number"), rs.getString("source"), item,
+                rs.getLong("order_id"), rs.getString("order_number"), batch, rs.getString("user_email"));
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class TrackingEntry {
+        private String trackingNumber;
+        // ITEM — трек-номер позиции (посылка из Китая), ORDER — трек-номер заказа
+        private String source;
+        private Long itemId;
+        private Long orderId;
+        private String orderNumber;
+        private Long batchCargoId;
+        private String userEmail;
+    }
+}
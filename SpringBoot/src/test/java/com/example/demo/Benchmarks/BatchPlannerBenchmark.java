@@ -0,0 +1,54 @@
+package com.example.demo.Benchmarks;
+
+import com.example.demo.Components.BatchPlanner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Раскладка очереди заказов по грузам: время полного плана для типичного и пикового размера очереди
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchPlannerBenchmark {
+
+    @Param({"5000", "50000"})
+    private int orders;
+
+    // 500 кг и 20 000.00 на груз
+    private static final long MAX_WEIGHT = 500_000;
+    private static final long MAX_PRICE = 2_000_000;
+
+    private final BatchPlanner planner = new BatchPlanner();
+    private List<BatchPlanner.Candidate> candidates;
+
+    @Setup
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        candidates = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            // Большинство посылок лёгкие, изредка встречаются тяжёлые
+            long weight = random.nextInt(10) == 0 ? random.nextLong(20_000, 120_000) : random.nextLong(200, 8_000);
+            candidates.add(new BatchPlanner.Candidate(i + 1, weight, random.nextLong(500, 60_000)));
+        }
+    }
+
+    @Benchmark
+    public BatchPlanner.Plan plan() {
+        return planner.plan(candidates, MAX_WEIGHT, MAX_PRICE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BatchPlannerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.demo.Benchmarks;
+
+import com.example.demo.Components.CartMerger;
+import com.example.demo.Controllers.CartController;
+import com.example.demo.Entities.Order;
+import com.example.demo.Entities.Product;
+import com.example.demo.Repositories.OrderRepository;
+import com.example.demo.Repositories.ProductRepository;
+import com.example.demo.Services.CartStoreService;
+import com.example.demo.Services.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+/**
+ * Массовое добавление 1000 товаров в корзину из 500 позиций через настоящий CartController.addBulkToCart
+ * (Spring-прокси с @Transactional, Spring Data, Hibernate с батчингом из application.yml). Половина
+ * пачки — уже сохранённые товары, у пятой части которых в каждом вызове меняется цена; четверть пачки
+ * уже лежит в корзине. perProductSave — прежняя реализация на тех же репозиториях: save на каждый товар
+ * (SELECT + INSERT/UPDATE) и putIfAbsent в корзину. Redis в обоих вариантах заменён корзиной в памяти,
+ * которая каждый вызов начинается с одного и того же состояния. H2 в памяти занижает стоимость round-trip,
+ * на MySQL разница больше.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CartBulkAddBenchmark {
+    private static final int PRODUCTS = 1000;
+    private static final int CART_ITEMS = 500;
+    private static final int STORED_PRODUCTS = 500;
+    private static final int CHANGED_PRODUCTS = 100;
+    private static final String USER_EMAIL = "buyer@example.com";
+
+    private AnnotationConfigApplicationContext context;
+    private CartController cartController;
+    private ProductRepository productRepository;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private Map<String, CartStoreService.CartLine> initialCart;
+    private long cartVersion;
+    private long round;
+
+    // Только JPA-слой приложения и сам контроллер; корзина и текущий пользователь — заглушки.
+    // @TestConfiguration: сканирование приложения (DemoApplicationTests) её пропускает
+    @TestConfiguration
+    @EnableTransactionManagement
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    static class BenchConfig {
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:cartbench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPassword("");
+            return dataSource;
+        }
+
+        @Bean
+        public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setPackagesToScan(Order.class.getPackageName());
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+            properties.put("hibernate.hbm2ddl.auto", "create-drop");
+            // Как в application.yml
+            properties.put("hibernate.jdbc.batch_size", "50");
+            properties.put("hibernate.order_inserts", "true");
+            properties.put("hibernate.order_updates", "true");
+            properties.put("hibernate.default_batch_fetch_size", "50");
+            factory.setJpaPropertyMap(properties);
+            return factory;
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+
+        @Bean
+        public CartMerger cartMerger() {
+            return new CartMerger();
+        }
+
+        @Bean
+        public CartController cartController() {
+            return new CartController();
+        }
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        // Заглушки регистрируются готовыми объектами: иначе Spring стал бы внедрять их собственные @Autowired-поля
+        CartStoreService cartStore = Mockito.mock(CartStoreService.class);
+        Mockito.when(cartStore.apply(eq(USER_EMAIL), isNull(), any()))
+                .thenAnswer(invocation -> applyToCart(invocation.getArgument(2, Consumer.class)));
+        Mockito.when(cartStore.update(eq(USER_EMAIL), any()))
+                .thenAnswer(invocation -> applyToCart(invocation.getArgument(1, Consumer.class)).getLines());
+        UserService userService = Mockito.mock(UserService.class);
+        Mockito.when(userService.getCurrentUserEmail()).thenReturn(USER_EMAIL);
+
+        context = new AnnotationConfigApplicationContext();
+        context.register(BenchConfig.class);
+        context.getBeanFactory().registerSingleton("cartStoreService", cartStore);
+        context.getBeanFactory().registerSingleton("userService", userService);
+        context.refresh();
+        cartController = context.getBean(CartController.class);
+        productRepository = context.getBean(ProductRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+
+        // Товары пачки, которые уже сохранены; первые CART_ITEMS / 2 из них лежат и в корзине
+        List<Product> stored = new ArrayList<>(STORED_PRODUCTS + CART_ITEMS / 2);
+        for (int i = 0; i < STORED_PRODUCTS + CART_ITEMS / 2; i++) {
+            Product product = product("stored-" + i, i, 0);
+            product.setStatus("VERIFIED");
+            stored.add(product);
+        }
+        transactionTemplate.executeWithoutResult(status -> productRepository.saveAll(stored));
+
+        initialCart = new LinkedHashMap<>();
+        for (int i = 0; i < CART_ITEMS / 2; i++) {
+            initialCart.put(stored.get(i).getId(), CartStoreService.toLine(stored.get(i), 1));
+        }
+        for (int i = 0; i < CART_ITEMS / 2; i++) {
+            Product other = stored.get(STORED_PRODUCTS + i);
+            initialCart.put(other.getId(), CartStoreService.toLine(other, 1));
+        }
+    }
+
+    // Новые товары убираются, чтобы таблица не росла от итерации к итерации
+    @TearDown(Level.Iteration)
+    public void removeCreatedProducts() {
+        jdbcTemplate.update("DELETE FROM product WHERE id LIKE 'new-%'");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object controllerBulkAdd() {
+        return cartController.addBulkToCart(incoming()).getBody();
+    }
+
+    // Реализация addBulkToCart до перехода на один findAllById и пачечную вставку
+    @Benchmark
+    public List<CartStoreService.CartLine> perProductSave() {
+        List<Product> products = incoming();
+        return transactionTemplate.execute(status -> {
+            List<Product> savedProducts = new ArrayList<>(products.size());
+            for (Product product : products) {
+                product.setStatus("PENDING");
+                product.setLastUpdated(new Timestamp(System.currentTimeMillis()));
+                savedProducts.add(productRepository.save(product));
+            }
+            return applyToCart(cart -> {
+                for (Product product : savedProducts) {
+                    cart.putIfAbsent(product.getId(), CartStoreService.toLine(product, 1));
+                }
+            }).getLines();
+        });
+    }
+
+    private CartStoreService.CartState applyToCart(Consumer<Map<String, CartStoreService.CartLine>> change) {
+        Map<String, CartStoreService.CartLine> lines = new LinkedHashMap<>(initialCart.size() * 2);
+        initialCart.forEach((productId, line) -> lines.put(productId, copy(line)));
+        change.accept(lines);
+        return new CartStoreService.CartState(++cartVersion, new ArrayList<>(lines.values()));
+    }
+
+    // Как тело запроса после Jackson: новые объекты в каждом вызове. Половина пачки — сохранённые товары
+    // (у первых CHANGED_PRODUCTS новая цена), половина — новые, с уникальными id в каждом вызове
+    private List<Product> incoming() {
+        round++;
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < STORED_PRODUCTS; i++) {
+            products.add(product("stored-" + i, i, i < CHANGED_PRODUCTS ? round : 0));
+        }
+        for (int i = 0; products.size() < PRODUCTS; i++) {
+            products.add(product("new-" + round + "-" + i, i, 0));
+        }
+        return products;
+    }
+
+    private static Product product(String id, int i, long priceShift) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Товар " + i);
+        product.setUrl("https://item.example.com/" + i);
+        product.setPrice(10.0f + i % 500 + priceShift % 1000);
+        product.setImageUrl("https://img.example.com/" + i + ".jpg");
+        return product;
+    }
+
+    private static CartStoreService.CartLine copy(CartStoreService.CartLine line) {
+        CartStoreService.CartLine copy = new CartStoreService.CartLine();
+        copy.setProductId(line.getProductId());
+        copy.setProductName(line.getProductName());
+        copy.setPrice(line.getPrice());
+        copy.setImageUrl(line.getImageUrl());
+        copy.setQuantity(line.getQuantity());
+        copy.setAddedAt(line.getAddedAt());
+        return copy;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CartBulkAddBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
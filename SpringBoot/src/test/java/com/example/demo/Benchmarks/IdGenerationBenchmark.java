@@ -0,0 +1,169 @@
+package com.example.demo.Benchmarks;
+
+import com.example.demo.Entities.*;
+import jakarta.persistence.Entity;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.mapping.SimpleValue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+import java.lang.reflect.Field;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сохранение заказа с 50 позициями и 10k уведомлений через Hibernate на настоящих сущностях
+ * и с настройками батчинга из application.yml. pooled — маппинг как в коде (@TableGenerator, 50 id
+ * на обращение к id_generator, INSERT пачками); identity — те же сущности, у которых в метаданных
+ * генерация id заменена на IDENTITY, как было раньше: Hibernate вынужден вставлять по строке.
+ * H2 в памяти занижает сетевую задержку, на MySQL разница больше.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IdGenerationBenchmark {
+    private static final int ORDER_ITEMS = 50;
+    private static final int NOTIFICATIONS = 10_000;
+    private static final String USER_EMAIL = "buyer@example.com";
+    private static final String PRODUCT_ID = "bench-product";
+    private static final List<Class<?>> SWITCHED_ENTITIES = List.of(Order.class, OrderItem.class, Notification.class);
+
+    @Param({"pooled", "identity"})
+    private String idStrategy;
+
+    private SessionFactory sessionFactory;
+    private long round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("hibernate.connection.url", "jdbc:h2:mem:idbench-" + idStrategy + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        settings.put("hibernate.connection.username", "sa");
+        settings.put("hibernate.connection.password", "");
+        settings.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        settings.put("hibernate.hbm2ddl.auto", "create-drop");
+        // Как в application.yml
+        settings.put("hibernate.jdbc.batch_size", "50");
+        settings.put("hibernate.order_inserts", "true");
+        settings.put("hibernate.order_updates", "true");
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(settings).build();
+
+        MetadataSources sources = new MetadataSources(registry);
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+        for (BeanDefinition definition : scanner.findCandidateComponents(Order.class.getPackageName())) {
+            sources.addAnnotatedClassName(definition.getBeanClassName());
+        }
+        Metadata metadata = sources.buildMetadata();
+        if (idStrategy.equals("identity")) {
+            // Генерация id, как до перехода на @TableGenerator; остальной маппинг тот же.
+            // Hibernate кэширует генератор уже при сборке метаданных, поэтому кэш сбрасывается
+            Field cachedGenerator = SimpleValue.class.getDeclaredField("generator");
+            cachedGenerator.setAccessible(true);
+            for (Class<?> entity : SWITCHED_ENTITIES) {
+                SimpleValue id = (SimpleValue) metadata.getEntityBinding(entity.getName()).getIdentifier();
+                id.setCustomIdGeneratorCreator(null);
+                id.setIdentifierGeneratorStrategy("identity");
+                cachedGenerator.set(id, null);
+            }
+        }
+        sessionFactory = metadata.buildSessionFactory();
+
+        sessionFactory.inTransaction(session -> {
+            User user = new User();
+            user.setEmail(USER_EMAIL);
+            user.setUsername("buyer");
+            user.setPassword("secret");
+            user.setRole("USER");
+            session.persist(user);
+
+            Product product = new Product();
+            product.setId(PRODUCT_ID);
+            product.setName("Товар");
+            product.setPrice(9.99f);
+            session.persist(product);
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        sessionFactory.inTransaction(session -> {
+            session.createNativeMutationQuery("DELETE FROM order_items").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM orders").executeUpdate();
+            session.createNativeMutationQuery("DELETE FROM notifications").executeUpdate();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    // Как OrderController.doCreateOrder: заказ и позиции сохраняются каскадом
+    @Benchmark
+    public Long orderWithItems() {
+        return sessionFactory.fromTransaction(session -> {
+            Product product = session.getReference(Product.class, PRODUCT_ID);
+            Order order = new Order();
+            order.setUser(session.getReference(User.class, USER_EMAIL));
+            order.setOrderNumber("ORD-" + idStrategy + "-" + round++);
+            order.setDateCreated(new Timestamp(System.currentTimeMillis()));
+            order.setStatus("PENDING");
+            order.setTotalClientPrice(9.99f * ORDER_ITEMS);
+            List<OrderItem> items = new ArrayList<>(ORDER_ITEMS);
+            for (int i = 0; i < ORDER_ITEMS; i++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1);
+                item.setPriceAtTime(9.99f);
+                item.setPurchaseStatus("PENDING");
+                items.add(item);
+            }
+            order.setItems(items);
+            session.persist(order);
+            return order.getId();
+        });
+    }
+
+    // Как BatchNotificationDispatcher.insertNotifications: ссылки на пользователя без SELECT
+    @Benchmark
+    public int notifications() {
+        return sessionFactory.fromTransaction(session -> {
+            User user = session.getReference(User.class, USER_EMAIL);
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < NOTIFICATIONS; i++) {
+                Notification notification = new Notification();
+                notification.setUser(user);
+                notification.setMessage("Заказ обновлён");
+                notification.setTimestamp(now);
+                notification.setCategory("ORDER");
+                session.persist(notification);
+            }
+            return NOTIFICATIONS;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdGenerationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
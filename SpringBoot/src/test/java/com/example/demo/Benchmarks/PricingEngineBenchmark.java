@@ -0,0 +1,79 @@
+package com.example.demo.Benchmarks;
+
+import com.example.demo.Components.PricingEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Пакетный расчёт цен: переиспользуемые вход/результат против нового объекта на каждый расчёт
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingEngineBenchmark {
+
+    @Param({"3", "20"})
+    private int itemsPerQuote;
+
+    private static final int QUOTES = 500;
+
+    private final PricingEngine engine = new PricingEngine();
+    private long[][] prices;
+    private int[][] quantities;
+    private PricingEngine.PricingInput input;
+    private PricingEngine.PricingResult result;
+
+    @Setup
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        prices = new long[QUOTES][itemsPerQuote];
+        quantities = new int[QUOTES][itemsPerQuote];
+        for (int q = 0; q < QUOTES; q++) {
+            for (int i = 0; i < itemsPerQuote; i++) {
+                prices[q][i] = random.nextLong(100, 500_000);
+                quantities[q][i] = random.nextInt(1, 5);
+            }
+        }
+        input = new PricingEngine.PricingInput(itemsPerQuote);
+        result = new PricingEngine.PricingResult();
+    }
+
+    @Benchmark
+    public void reusedInputAndResult(Blackhole blackhole) {
+        for (int q = 0; q < QUOTES; q++) {
+            input.reset().userDiscountBps(750).insurance(q % 2 == 0)
+                    .promo(PricingEngine.PROMO_PERCENTAGE, 1_000, true);
+            for (int i = 0; i < itemsPerQuote; i++) {
+                input.addItem(prices[q][i], quantities[q][i]);
+            }
+            engine.price(input, result);
+            blackhole.consume(result.getTotal());
+        }
+    }
+
+    @Benchmark
+    public void freshInputAndResult(Blackhole blackhole) {
+        for (int q = 0; q < QUOTES; q++) {
+            PricingEngine.PricingInput fresh = new PricingEngine.PricingInput(itemsPerQuote)
+                    .userDiscountBps(750).insurance(q % 2 == 0)
+                    .promo(PricingEngine.PROMO_PERCENTAGE, 1_000, true);
+            for (int i = 0; i < itemsPerQuote; i++) {
+                fresh.addItem(prices[q][i], quantities[q][i]);
+            }
+            blackhole.consume(engine.price(fresh).getTotal());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PricingEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
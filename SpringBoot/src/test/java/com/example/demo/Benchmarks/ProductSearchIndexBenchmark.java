@@ -0,0 +1,70 @@
+package com.example.demo.Benchmarks;
+
+import com.example.demo.Components.ProductSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по индексу из 1M товаров: частые слова (до 20% товаров на слово), фильтр по цене и сортировка
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ProductSearchIndexBenchmark {
+    private static final int PRODUCTS = 1_000_000;
+    private static final String[] WORDS = {
+            "кроссовки", "куртка", "зимняя", "летняя", "женские", "мужские", "nike", "adidas", "shoes", "jacket",
+            "футболка", "платье", "сумка", "кожаная", "черный", "белый", "красный", "спортивные", "детские", "iphone"
+    };
+
+    @Param({"кроссовки nike", "черная сумка", "model123", ""})
+    private String text;
+
+    @Param({"relevance", "price_asc"})
+    private String sort;
+
+    private ProductSearchIndex index;
+    private ProductSearchIndex.Query query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new ProductSearchIndex();
+        for (int i = 0; i < PRODUCTS; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = 0; w < 4; w++) {
+                name.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            name.append("model").append(random.nextInt(50_000));
+            index.upsert(new ProductSearchIndex.Doc("product-" + i, name.toString(),
+                    "описание товара " + WORDS[random.nextInt(WORDS.length)],
+                    random.nextInt(10_000) / 10f, random.nextInt(1000), random.nextInt(10) < 8, random.nextBoolean()));
+        }
+
+        query = new ProductSearchIndex.Query();
+        query.setText(text);
+        query.setSort(sort.equals("relevance") ? null : sort);
+        query.setVerifiedOnly(true);
+        query.setMinPrice(10f);
+        query.setMaxPrice(500f);
+        query.setOffset(40);
+        query.setLimit(20);
+    }
+
+    @Benchmark
+    public ProductSearchIndex.Result search() {
+        return index.search(query);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductSearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
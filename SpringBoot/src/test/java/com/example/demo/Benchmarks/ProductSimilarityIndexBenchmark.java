@@ -0,0 +1,61 @@
+package com.example.demo.Benchmarks;
+
+import com.example.demo.Components.ProductSimilarityIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Похожие товары в индексе из 1M названий, собранных из 20 слов: бакеты LSH заведомо переполнены
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ProductSimilarityIndexBenchmark {
+    private static final int PRODUCTS = 1_000_000;
+    private static final String[] WORDS = {
+            "кроссовки", "куртка", "зимняя", "летняя", "женские", "мужские", "nike", "adidas", "shoes", "jacket",
+            "футболка", "платье", "сумка", "кожаная", "черный", "белый", "красный", "спортивные", "детские", "iphone"
+    };
+
+    private ProductSimilarityIndex index;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new ProductSimilarityIndex();
+        names = new String[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int w = 0; w < 4; w++) {
+                name.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            names[i] = name.append("model").append(random.nextInt(50_000)).toString();
+            index.upsert("product-" + i, names[i], random.nextInt(10) < 8);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public List<ProductSimilarityIndex.Match> similar(Cursor cursor) {
+        int i = cursor.next++ % PRODUCTS;
+        return index.similar("product-" + i, names[i], 4);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductSimilarityIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.Components;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchPlannerTest {
+
+    private final BatchPlanner planner = new BatchPlanner();
+
+    @Test
+    void bestFitPutsEachOrderIntoTightestBin() {
+        List<BatchPlanner.Candidate> candidates = List.of(
+                candidate(1, 6, 0), candidate(2, 5, 0), candidate(3, 4, 0), candidate(4, 3, 0), candidate(5, 2, 0));
+
+        BatchPlanner.Plan plan = planner.plan(candidates, 10, Long.MAX_VALUE);
+
+        // 6 -> A, 5 -> B, 4 -> A (остаток 4 точнее, чем 5), 3 и 2 -> B
+        assertThat(plan.getBins()).extracting(BatchPlanner.Bin::getWeight).containsExactly(10L, 10L);
+        assertThat(orderIds(plan.getBins().get(0))).containsExactly(1L, 3L);
+        assertThat(orderIds(plan.getBins().get(1))).containsExactly(2L, 4L, 5L);
+        assertThat(plan.getOversized()).isEmpty();
+    }
+
+    @Test
+    void priceCapOpensNewBinEvenWhenWeightFits() {
+        List<BatchPlanner.Candidate> candidates = List.of(
+                candidate(1, 1, 60), candidate(2, 1, 60), candidate(3, 1, 40));
+
+        BatchPlanner.Plan plan = planner.plan(candidates, 100, 100);
+
+        assertThat(plan.getBins()).hasSize(2);
+        assertThat(plan.getBins()).allSatisfy(bin -> assertThat(bin.getPrice()).isLessThanOrEqualTo(100));
+        assertThat(plan.getBins()).extracting(BatchPlanner.Bin::getPrice).containsExactlyInAnyOrder(100L, 60L);
+    }
+
+    @Test
+    void ordersExceedingEitherCapAreReportedAsOversized() {
+        List<BatchPlanner.Candidate> candidates = List.of(
+                candidate(1, 11, 1), candidate(2, 1, 101), candidate(3, 10, 100));
+
+        BatchPlanner.Plan plan = planner.plan(candidates, 10, 100);
+
+        assertThat(plan.getOversized()).containsExactly(1L, 2L);
+        assertThat(plan.getBins()).hasSize(1);
+        assertThat(orderIds(plan.getBins().get(0))).containsExactly(3L);
+    }
+
+    @Test
+    void shardedPlanKeepsEveryOrderOnceAndRespectsCaps() {
+        long maxWeight = 30_000;
+        long maxPrice = 5_000_000;
+        List<BatchPlanner.Candidate> candidates = randomCandidates(BatchPlanner.SHARD_SIZE * 3 + 17, maxWeight, maxPrice);
+
+        BatchPlanner.Plan plan = planner.plan(candidates, maxWeight, maxPrice);
+
+        Set<Long> placed = new HashSet<>(plan.getOversized());
+        long totalWeight = 0;
+        for (BatchPlanner.Bin bin : plan.getBins()) {
+            assertThat(bin.getCandidates()).isNotEmpty();
+            assertThat(bin.getWeight()).isLessThanOrEqualTo(maxWeight);
+            assertThat(bin.getPrice()).isLessThanOrEqualTo(maxPrice);
+            assertThat(bin.getWeight()).isEqualTo(bin.getCandidates().stream().mapToLong(BatchPlanner.Candidate::getWeight).sum());
+            assertThat(bin.getPrice()).isEqualTo(bin.getCandidates().stream().mapToLong(BatchPlanner.Candidate::getPrice).sum());
+            for (BatchPlanner.Candidate candidate : bin.getCandidates()) {
+                assertThat(placed.add(candidate.getOrderId())).as("order %d placed twice", candidate.getOrderId()).isTrue();
+            }
+            totalWeight += bin.getWeight();
+        }
+        assertThat(placed).hasSize(candidates.size());
+
+        // Грузы отсортированы по убыванию веса, и доупаковка шардов не плодит полупустые грузы
+        assertThat(plan.getBins()).isSortedAccordingTo(Comparator.comparingLong(BatchPlanner.Bin::getWeight).reversed());
+        long lowerBound = (totalWeight + maxWeight - 1) / maxWeight;
+        assertThat((long) plan.getBins().size()).isLessThanOrEqualTo(lowerBound + lowerBound / 10 + 1);
+    }
+
+    @Test
+    void planIsDeterministicDespiteParallelShards() {
+        List<BatchPlanner.Candidate> candidates = randomCandidates(BatchPlanner.SHARD_SIZE * 2 + 5, 30_000, 5_000_000);
+
+        List<List<Long>> first = layout(planner.plan(candidates, 30_000, 5_000_000));
+        List<List<Long>> second = layout(planner.plan(new ArrayList<>(candidates), 30_000, 5_000_000));
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    private static List<BatchPlanner.Candidate> randomCandidates(int count, long maxWeight, long maxPrice) {
+        Random random = new Random(42);
+        List<BatchPlanner.Candidate> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            candidates.add(candidate(i + 1, 100 + random.nextInt((int) (maxWeight * 11 / 20)),
+                    1_000 + random.nextInt((int) (maxPrice / 4))));
+        }
+        return candidates;
+    }
+
+    private static List<List<Long>> layout(BatchPlanner.Plan plan) {
+        List<List<Long>> layout = new ArrayList<>();
+        for (BatchPlanner.Bin bin : plan.getBins()) {
+            layout.add(orderIds(bin));
+        }
+        layout.add(plan.getOversized());
+        return layout;
+    }
+
+    private static List<Long> orderIds(BatchPlanner.Bin bin) {
+        return bin.getCandidates().stream().map(BatchPlanner.Candidate::getOrderId).toList();
+    }
+
+    private static BatchPlanner.Candidate candidate(long orderId, long weight, long price) {
+        return new BatchPlanner.Candidate(orderId, weight, price);
+    }
+}
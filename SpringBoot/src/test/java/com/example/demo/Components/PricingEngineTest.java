@@ -0,0 +1,126 @@
+package com.example.demo.Components;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PricingEngineTest {
+
+    private final PricingEngine engine = new PricingEngine();
+
+    @Test
+    void percentRoundsHalfUpSymmetricallyAroundZero() {
+        // 50% от 3 копеек = 1.5 -> 2, от 1 копейки = 0.5 -> 1
+        assertThat(PricingEngine.percentOf(3, 5_000)).isEqualTo(2);
+        assertThat(PricingEngine.percentOf(1, 5_000)).isEqualTo(1);
+        assertThat(PricingEngine.percentOf(1, 4_999)).isEqualTo(0);
+        assertThat(PricingEngine.percentOf(-3, 5_000)).isEqualTo(-2);
+        assertThat(PricingEngine.percentOf(-1, 4_999)).isEqualTo(0);
+        assertThat(PricingEngine.percentOf(0, 10_000)).isEqualTo(0);
+    }
+
+    @Test
+    void conversionsRoundToNearestMinorUnit() {
+        assertThat(PricingEngine.toMinor(19.99f)).isEqualTo(1999);
+        assertThat(PricingEngine.toMinor(0.1f + 0.2f)).isEqualTo(30);
+        assertThat(PricingEngine.toMinor(null)).isEqualTo(0);
+        assertThat(PricingEngine.toBps(12.5f)).isEqualTo(1250);
+        assertThat(PricingEngine.fromMinor(1999)).isEqualTo(19.99f);
+    }
+
+    @Test
+    void subtotalMultipliesQuantitiesAndGrowsPastInitialCapacity() {
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(1)
+                .addItem(1000, 2)
+                .addItem(333, 3)
+                .addItem(1, 1);
+
+        PricingEngine.PricingResult result = engine.price(input);
+
+        assertThat(result.getSubtotal()).isEqualTo(3000);
+        assertThat(result.getTotal()).isEqualTo(3000);
+    }
+
+    @Test
+    void discountsAndInsuranceAreAllTakenFromSubtotalNotCompounded() {
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(1)
+                .addItem(10_000, 1)
+                .userDiscountBps(1_000)
+                .promo(PricingEngine.PROMO_PERCENTAGE, 1_000, true)
+                .insurance(true);
+
+        PricingEngine.PricingResult result = engine.price(input);
+
+        assertThat(result.getUserDiscount()).isEqualTo(1_000);
+        assertThat(result.getPromoDiscount()).isEqualTo(1_000);
+        assertThat(result.getInsuranceCost()).isEqualTo(500);
+        assertThat(result.getTotal()).isEqualTo(10_000 - 2_000 + 500);
+        assertThat(result.isUserDiscountRecalculated()).isTrue();
+        assertThat(result.isPromoExpired()).isFalse();
+    }
+
+    @Test
+    void rulesThatDoNotFireKeepAmountsStoredOnOrder() {
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(1)
+                .addItem(10_000, 1)
+                .currentAmounts(700, 300, 250);
+
+        PricingEngine.PricingResult result = engine.price(input);
+
+        assertThat(result.getUserDiscount()).isEqualTo(700);
+        assertThat(result.getPromoDiscount()).isEqualTo(300);
+        assertThat(result.getInsuranceCost()).isEqualTo(250);
+        assertThat(result.getTotal()).isEqualTo(10_000 - 1_000 + 250);
+        assertThat(result.isUserDiscountRecalculated()).isFalse();
+    }
+
+    @Test
+    void expiredPromoDropsStoredPromoDiscount() {
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(1)
+                .addItem(10_000, 1)
+                .promo(PricingEngine.PROMO_FIXED, 2_000, false)
+                .currentAmounts(0, 2_000, 0);
+
+        PricingEngine.PricingResult result = engine.price(input);
+
+        assertThat(result.isPromoExpired()).isTrue();
+        assertThat(result.getPromoDiscount()).isZero();
+        assertThat(result.getTotal()).isEqualTo(10_000);
+    }
+
+    @Test
+    void fixedPromoLargerThanOrderMakesTotalNegative() {
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(1)
+                .addItem(500, 1)
+                .promo(PricingEngine.PROMO_FIXED, 1_000, true)
+                .insurance(true);
+
+        PricingEngine.PricingResult result = engine.price(input);
+
+        // Страховка 5% от 500 = 25; скидка не ограничивается суммой — отказ решает вызывающий код
+        assertThat(result.getTotal()).isEqualTo(500 - 1_000 + 25);
+        assertThat(result.isNegative()).isTrue();
+    }
+
+    @Test
+    void resetInputAndReusedResultDoNotLeakPreviousCall() {
+        PricingEngine.PricingInput input = new PricingEngine.PricingInput(2)
+                .addItem(10_000, 1)
+                .userDiscountBps(1_000)
+                .promo(PricingEngine.PROMO_FIXED, 500, false)
+                .insurance(true)
+                .currentAmounts(1, 2, 3);
+        PricingEngine.PricingResult result = new PricingEngine.PricingResult();
+        engine.price(input, result);
+
+        engine.price(input.reset().addItem(200, 1), result);
+
+        assertThat(result.getSubtotal()).isEqualTo(200);
+        assertThat(result.getUserDiscount()).isZero();
+        assertThat(result.getPromoDiscount()).isZero();
+        assertThat(result.getInsuranceCost()).isZero();
+        assertThat(result.getTotal()).isEqualTo(200);
+        assertThat(result.isUserDiscountRecalculated()).isFalse();
+        assertThat(result.isPromoExpired()).isFalse();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.demo.Components;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSimilarityIndexTest {
+
+    private final ProductSimilarityIndex index = new ProductSimilarityIndex();
+
+    @Test
+    void upsertedProductIsFoundAndRemoveDropsIt() {
+        index.upsert("p1", "Кроссовки Nike Air Max 90", true);
+        index.upsert("p2", "Чайник электрический Xiaomi", true);
+
+        assertThat(productIds(index.similar("query", "Кроссовки Nike Air Max 95", 5))).containsExactly("p1");
+        assertThat(index.size()).isEqualTo(2);
+
+        index.remove("p1");
+        index.remove("missing");
+
+        assertThat(index.similar("query", "Кроссовки Nike Air Max 95", 5)).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void productItselfIsNotReturnedAndScoresAreSorted() {
+        index.upsert("p1", "Кроссовки Nike Air Max 90", true);
+        index.upsert("p2", "Кроссовки Nike Air Max 95", true);
+        index.upsert("p3", "Кроссовки Nike", true);
+
+        List<ProductSimilarityIndex.Match> matches = index.similar("p1", "Кроссовки Nike Air Max 90", 5);
+
+        assertThat(productIds(matches)).doesNotContain("p1").startsWith("p2");
+        assertThat(matches).extracting(ProductSimilarityIndex.Match::getSimilarity)
+                .isSortedAccordingTo(Comparator.reverseOrder())
+                .allSatisfy(score -> assertThat(score).isGreaterThanOrEqualTo(ProductSimilarityIndex.MIN_SIMILARITY));
+    }
+
+    @Test
+    void renameReplacesSignatureOfSameProduct() {
+        index.upsert("p1", "Кроссовки Nike Air Max 90", true);
+
+        index.upsert("p1", "Чайник электрический Xiaomi", true);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.similar("query", "Кроссовки Nike Air Max 90", 5)).isEmpty();
+        assertThat(productIds(index.similar("query", "Чайник электрический Xiaomi", 5))).containsExactly("p1");
+    }
+
+    @Test
+    void renameIsNotMistakenForUnchangedNameOnHashCollision() {
+        // "Aa" и "BB" дают одинаковый String.hashCode, поэтому и названия целиком совпадают по хэшу
+        assertThat("Кроссовки Aa".hashCode()).isEqualTo("Кроссовки BB".hashCode());
+        index.upsert("p1", "Кроссовки Aa", true);
+
+        index.upsert("p1", "Кроссовки BB", true);
+
+        assertThat(index.similar("query", "Кроссовки BB", 1))
+                .singleElement()
+                .satisfies(match -> assertThat(match.getSimilarity()).isEqualTo(1f));
+    }
+
+    @Test
+    void sameNormalizedNameOnlyUpdatesStatus() {
+        index.upsert("p1", "Кроссовки Nike Air", true);
+        index.upsert("p1", "КРОССОВКИ, nike-air!", false);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.similar("query", "Кроссовки Nike Air", 5)).isEmpty();
+
+        index.upsert("p1", "кроссовки nike air", true);
+
+        assertThat(productIds(index.similar("query", "Кроссовки Nike Air", 5))).containsExactly("p1");
+    }
+
+    @Test
+    void unverifiedProductsAreExcludedFromResults() {
+        index.upsert("verified", "Рюкзак городской черный", true);
+        index.upsert("pending", "Рюкзак городской черный 20л", false);
+
+        assertThat(productIds(index.similar("query", "Рюкзак городской чёрный", 5))).containsExactly("verified");
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void nameWithoutLettersOrDigitsIsNotIndexed() {
+        index.upsert("p1", "!!! ---", true);
+
+        assertThat(index.size()).isZero();
+        assertThat(index.similar("query", "!!! ---", 5)).isEmpty();
+    }
+
+    @Test
+    void indexGrowsPastInitialCapacityAndReusesFreedSlots() {
+        int products = 1500;
+        List<String> names = randomNames(products);
+        for (int i = 0; i < products; i++) {
+            index.upsert("p" + i, names.get(i), true);
+        }
+        // Освобождённые места занимают новые товары, а удалённые больше не находятся
+        for (int i = 0; i < 100; i++) {
+            index.remove("p" + i);
+        }
+        List<String> extra = randomNames(products + 50).subList(products, products + 50);
+        for (int i = 0; i < extra.size(); i++) {
+            index.upsert("extra" + i, extra.get(i), true);
+        }
+
+        assertThat(index.size()).isEqualTo(products - 100 + extra.size());
+        for (int i = 0; i < products; i++) {
+            List<String> found = productIds(index.similar("query", names.get(i), 1));
+            if (i < 100) {
+                assertThat(found).doesNotContain("p" + i);
+            } else {
+                assertThat(found).as("product %d", i).containsExactly("p" + i);
+            }
+        }
+        for (int i = 0; i < extra.size(); i++) {
+            assertThat(productIds(index.similar("query", extra.get(i), 1))).containsExactly("extra" + i);
+        }
+    }
+
+    // Случайные названия из трёх «слов»: пересечения по триграммам между ними малы
+    private static List<String> randomNames(int count) {
+        Random random = new Random(42);
+        String alphabet = "абвгдежзиклмнопрстуфхцчшэюя";
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int word = 0; word < 3; word++) {
+                if (word > 0) {
+                    name.append(' ');
+                }
+                for (int c = 0; c < 7; c++) {
+                    name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    private static List<String> productIds(List<ProductSimilarityIndex.Match> matches) {
+        return matches.stream().map(ProductSimilarityIndex.Match::getProductId).toList();
+    }
+}
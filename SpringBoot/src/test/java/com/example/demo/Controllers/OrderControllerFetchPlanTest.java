@@ -0,0 +1,193 @@
+package com.example.demo.Controllers;
+
+import com.example.demo.Components.PricingEngine;
+import com.example.demo.Entities.*;
+import com.example.demo.Repositories.OrderRepository;
+import com.example.demo.Services.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Число SQL-запросов на чтении заказов через OrderController — так, как его вызывает Spring MVC
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:orderfetchplan;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderControllerFetchPlanTest {
+
+    private static final int ORDERS = 10;
+    private static final int ITEMS_PER_ORDER = 3;
+    private static final String BUYER = "buyer@example.com";
+
+    // Только JPA и сам контроллер; остальные его зависимости на чтении не участвуют
+    @Configuration
+    @EntityScan(basePackageClasses = Order.class)
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    @Import(OrderController.class)
+    static class ControllerSliceConfig {
+    }
+
+    @MockBean
+    private NotificationService notificationService;
+    @MockBean
+    private IdempotencyService idempotencyService;
+    @MockBean
+    private PricingEngine pricingEngine;
+    @MockBean
+    private PricingService pricingService;
+    @MockBean
+    private OutboxService outboxService;
+    @MockBean
+    private PurchaseProgressService purchaseProgressService;
+    @MockBean
+    private BatchCargoStatsService batchCargoStatsService;
+    @MockBean
+    private SelfPickupImportService selfPickupImportService;
+    @MockBean
+    private CartStoreService cartStoreService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderController orderController;
+
+    private Statistics statistics;
+    private Long firstOrderId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail(BUYER);
+        user.setUsername("buyer");
+        user.setPassword("secret");
+        user.setRole("USER");
+        entityManager.persist(user);
+
+        Promocode promocode = new Promocode();
+        promocode.setCode("SPRING10");
+        promocode.setDiscountType(DiscountType.PERCENTAGE);
+        promocode.setDiscountValue(10.0f);
+        promocode.setValidFrom(LocalDateTime.now().minusDays(1));
+        promocode.setValidUntil(LocalDateTime.now().plusDays(1));
+        promocode.setIsActive(true);
+        entityManager.persist(promocode);
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setOrderNumber("ORDER-" + o);
+            order.setDateCreated(new Timestamp(System.currentTimeMillis() - o * 1000L));
+            order.setStatus("PENDING");
+            order.setTotalClientPrice(100.0f);
+            order.setPromocode(promocode);
+            List<OrderItem> items = new ArrayList<>();
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                Product product = new Product();
+                product.setId("product-" + o + "-" + i);
+                product.setName("Product " + o + "-" + i);
+                product.setPrice(10.0f);
+                entityManager.persist(product);
+
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1);
+                item.setPriceAtTime(10.0f);
+                items.add(item);
+            }
+            order.setItems(items);
+            entityManager.persist(order);
+            if (firstOrderId == null) {
+                firstOrderId = order.getId();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                BUYER, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void orderPageIsMappedInFixedNumberOfStatements() {
+        ResponseEntity<?> response = orderController.getOrders(0, ORDERS, "dateCreated,desc", null, null);
+
+        OrderController.PagedResponse<?> body = (OrderController.PagedResponse<?>) response.getBody();
+        assertThat(body).isNotNull();
+        assertThat(body.getContent()).hasSize(ORDERS);
+        assertItemsMapped(body.getContent());
+        // страница + count + items/products, не зависит от числа заказов и позиций
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void cursorPageIsMappedInFixedNumberOfStatements() {
+        ResponseEntity<?> response = orderController.getOrders(0, ORDERS, "dateCreated,desc", null, "");
+
+        OrderController.CursorPagedResponse<?> body = (OrderController.CursorPagedResponse<?>) response.getBody();
+        assertThat(body).isNotNull();
+        assertThat(body.getContent()).hasSize(ORDERS);
+        assertItemsMapped(body.getContent());
+        // страница без count + items/products
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void orderDetailIsMappedInOneStatement() {
+        ResponseEntity<OrderController.OrderDTO> response = orderController.getOrderById(firstOrderId);
+
+        assertThat(response.getBody()).isNotNull();
+        assertItemsMapped(List.of(response.getBody()));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private void assertItemsMapped(List<?> orders) {
+        for (Object element : orders) {
+            OrderController.OrderDTO order = (OrderController.OrderDTO) element;
+            assertThat(order.getUserEmail()).isEqualTo(BUYER);
+            assertThat(order.getPromocode()).isEqualTo("SPRING10");
+            assertThat(order.getItems()).hasSize(ITEMS_PER_ORDER);
+            assertThat(order.getItems()).allSatisfy(item -> assertThat(item.getProductName()).startsWith("Product "));
+        }
+    }
+}
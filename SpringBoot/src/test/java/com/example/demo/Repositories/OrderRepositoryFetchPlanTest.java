@@ -0,0 +1,149 @@
+package com.example.demo.Repositories;
+
+import com.example.demo.Entities.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fetchplan;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderRepositoryFetchPlanTest {
+
+    // DemoApplication сканирует весь com.example.demo, и срез @DataJpaTest тянул бы Redis, Kafka и сервисы —
+    // здесь поднимаются только сущности и репозитории
+    @Configuration
+    @EntityScan(basePackageClasses = Order.class)
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    static class JpaSliceConfig {
+    }
+
+    private static final int ORDERS = 10;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("buyer@example.com");
+        user.setUsername("buyer");
+        user.setPassword("secret");
+        user.setRole("USER");
+        entityManager.persist(user);
+
+        Promocode promocode = new Promocode();
+        promocode.setCode("SPRING10");
+        promocode.setDiscountType(DiscountType.PERCENTAGE);
+        promocode.setDiscountValue(10.0f);
+        promocode.setValidFrom(LocalDateTime.now().minusDays(1));
+        promocode.setValidUntil(LocalDateTime.now().plusDays(1));
+        promocode.setIsActive(true);
+        entityManager.persist(promocode);
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setOrderNumber("ORDER-" + o);
+            order.setDateCreated(new Timestamp(System.currentTimeMillis() - o * 1000L));
+            order.setStatus("PENDING");
+            order.setTotalClientPrice(100.0f);
+            order.setPromocode(promocode);
+            List<OrderItem> items = new ArrayList<>();
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                Product product = new Product();
+                product.setId("product-" + o + "-" + i);
+                product.setName("Product " + o + "-" + i);
+                product.setPrice(10.0f);
+                entityManager.persist(product);
+
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1);
+                item.setPriceAtTime(10.0f);
+                items.add(item);
+            }
+            order.setItems(items);
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void orderPageLoadsItemsProductsAndPromocodesInFixedNumberOfStatements() {
+        Page<Order> page = orderRepository.findByStatusNotInAndUserEmail(
+                List.of("REFUSED", "RECEIVED"), "buyer@example.com",
+                PageRequest.of(0, ORDERS, Sort.by(Sort.Direction.DESC, "dateCreated")));
+        orderRepository.fetchItemsWithProducts(page.getContent().stream().map(Order::getId).collect(Collectors.toList()));
+
+        touchLikeOrderDTO(page.getContent());
+
+        assertThat(page.getContent()).hasSize(ORDERS);
+        // страница + count + items/products
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void orderDetailLoadsWholeGraphInOneStatement() {
+        Long id = orderRepository.findAll().get(0).getId();
+        entityManager.clear();
+        statistics.clear();
+
+        Order order = orderRepository.findDetailedById(id).orElseThrow();
+        touchLikeOrderDTO(List.of(order));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private void touchLikeOrderDTO(List<Order> orders) {
+        for (Order order : orders) {
+            assertThat(order.getUser().getEmail()).isNotNull();
+            assertThat(order.getPromocode().getCode()).isEqualTo("SPRING10");
+            assertThat(order.getItems()).hasSize(ITEMS_PER_ORDER);
+            for (OrderItem item : order.getItems()) {
+                assertThat(item.getProduct().getName()).isNotNull();
+                assertThat(item.getProduct().getImageUrl()).isNull();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.demo.Repositories;
+
+import com.example.demo.Entities.BatchCargo;
+import com.example.demo.Entities.Order;
+import com.example.demo.Entities.UserBatchMembership;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Сортировки экрана отправок (BatchCargoController.getDeparture) по полям груза и по таблице членства
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:departure;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class UserBatchMembershipRepositoryTest {
+
+    @Configuration
+    @EntityScan(basePackageClasses = Order.class)
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    static class JpaSliceConfig {
+    }
+
+    private static final String BUYER = "buyer@example.com";
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserBatchMembershipRepository membershipRepository;
+
+    @BeforeEach
+    void setUp() {
+        String[] statuses = {"UNFINISHED", "FINISHED", "COMPLETED"};
+        for (int i = 0; i < statuses.length; i++) {
+            BatchCargo batch = new BatchCargo();
+            batch.setStatus(statuses[i]);
+            batch.setCreationDate(new Timestamp(1_000_000L * (i + 1)));
+            batch.setPurchaseDate(new Timestamp(1_000_000L * (3 - i)));
+            entityManager.persist(batch);
+
+            UserBatchMembership membership = new UserBatchMembership();
+            membership.setUserEmail(BUYER);
+            membership.setBatchId(batch.getId());
+            membership.setCreationDate(batch.getCreationDate());
+            entityManager.persist(membership);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void sortsByBatchCargoField() {
+        Page<BatchCargo> page = membershipRepository.findBatchCargosByUserEmail(BUYER,
+                PageRequest.of(0, 10, JpaSort.unsafe(Sort.Direction.ASC, "b.status", "b.id")));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(BatchCargo::getStatus).containsExactly("COMPLETED", "FINISHED", "UNFINISHED");
+    }
+
+    @Test
+    void sortsByMembershipCreationDate() {
+        Page<BatchCargo> page = membershipRepository.findBatchCargosByUserEmail(BUYER,
+                PageRequest.of(0, 2, JpaSort.unsafe(Sort.Direction.DESC, "m.creationDate", "m.batchId")));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(BatchCargo::getStatus).containsExactly("COMPLETED", "FINISHED");
+    }
+}